@@ -0,0 +1,21 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks given on the command line, all of them by default, always with
+ * the GC profiler so that {@code gc.alloc.rate.norm} reports the bytes allocated per
+ * operation next to the throughput. Takes the usual JMH options, e.g.
+ * {@code java -jar target/benchmarks.jar Render -p regions=8192}.
+ */
+public class Benchmarks {
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        new Runner(new OptionsBuilder().parent(cmd).addProfiler(GCProfiler.class).build()).run();
+    }
+
+}
@@ -0,0 +1,73 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.util.BitSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Decoding of region data words and matrix rows, one operation covers all regions.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DecodeBenchmark {
+
+    static final int MATRIX_STRIDE = 16;
+    static final int MATRIX_REFS = 8;
+
+    @Param({"2048", "8192", "32768"})
+    int regions;
+
+    long[] words;
+    String[] matrix;
+    RegionStat view;
+    BitSet bits;
+
+    @Setup
+    public void setUp() {
+        words = SyntheticRegions.words(regions, 1);
+        matrix = SyntheticRegions.matrix(regions, MATRIX_STRIDE, MATRIX_REFS, 2);
+        view = new RegionStat();
+        bits = new BitSet(regions);
+    }
+
+    @Benchmark
+    public void construct(Blackhole bh) {
+        for (int i = 0; i < regions; i++) {
+            bh.consume(new RegionStat(words[i], matrix[i]));
+        }
+    }
+
+    /**
+     * The reused view handed out by {@link Snapshot#get(int)}.
+     */
+    @Benchmark
+    public void wrap(Blackhole bh) {
+        for (int i = 0; i < regions; i++) {
+            bh.consume(view.wrap(words[i], matrix[i]).used());
+        }
+    }
+
+    @Benchmark
+    public void decodeMatrix(Blackhole bh) {
+        for (int i = 0; i < regions; i += MATRIX_STRIDE) {
+            bh.consume(RegionStat.decodeMatrix(matrix[i], bits).cardinality());
+        }
+    }
+
+}
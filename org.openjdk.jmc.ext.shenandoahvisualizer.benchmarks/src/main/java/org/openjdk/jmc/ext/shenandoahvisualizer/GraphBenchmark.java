@@ -0,0 +1,77 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Painting a full timeline history onto an offscreen surface, from raw samples when
+ * zoomed in and from pyramid buckets when zoomed out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GraphBenchmark {
+
+    static final int WIDTH = 1000;
+    static final int HEIGHT = 200;
+    static final int SAMPLE_INTERVAL = 5;
+    // As many samples as 30 minutes at 10 Hz
+    static final int SAMPLES = 30 * 60 * 10;
+
+    @Param({"2048", "8192", "32768"})
+    int regions;
+
+    // Below and above the finest pyramid level
+    @Param({"10", "1000"})
+    double millisPerPixel;
+
+    TimelineHistory history;
+    TimelinePyramid pyramid;
+    RasterSurface surface;
+    long total;
+
+    @Setup
+    public void setUp() {
+        history = new TimelineHistory();
+        pyramid = new TimelinePyramid();
+        long[] words = SyntheticRegions.words(regions, 1);
+        SnapshotBuilder builder = new SnapshotBuilder(regions);
+        Random r = new Random(4);
+        Snapshot s = null;
+        for (int i = 0; i < SAMPLES; i++) {
+            for (int k = 0; k < regions / 100; k++) {
+                words[r.nextInt(regions)] = SyntheticRegions.randomWord(r);
+            }
+            // Cycles of idle, mark, evacuate and update references
+            int status = (i / 50) % 2 == 0 ? 0 : 1 << ((i / 20) % 3);
+            s = SyntheticRegions.snapshot(builder, words, null, i * SAMPLE_INTERVAL, status);
+            history.add(s);
+            pyramid.add(s);
+            builder.release(s);
+        }
+        total = s.total();
+        surface = new RasterSurface(WIDTH, HEIGHT);
+    }
+
+    @Benchmark
+    public RasterSurface render() {
+        TimelineGraph.render(surface, history, pyramid, total, millisPerPixel, WIDTH, HEIGHT);
+        return surface;
+    }
+
+}
@@ -0,0 +1,97 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Painting the region map and the reference overlay offscreen: through a
+ * {@link Surface} like the vector path, straight into pixels, and for a frame where only
+ * a few regions changed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RenderBenchmark {
+
+    static final int WIDTH = 1000;
+    static final int HEIGHT = 700;
+    static final int CHANGED_PERCENT = 5;
+
+    @Param({"2048", "8192", "32768"})
+    int regions;
+
+    Snapshot snapshot;
+    RasterSurface surface;
+    RegionPixels pixels;
+    ReferenceOverlay references;
+    long[] changed;
+    long[] pending;
+    int pitch;
+
+    @Setup
+    public void setUp() {
+        long[] words = SyntheticRegions.words(regions, 1);
+        String[] matrix = SyntheticRegions.matrix(regions, DecodeBenchmark.MATRIX_STRIDE, DecodeBenchmark.MATRIX_REFS, 2);
+        snapshot = SyntheticRegions.snapshot(new SnapshotBuilder(regions), words, matrix, 1, 0);
+        surface = new RasterSurface(WIDTH, HEIGHT);
+        int bytesPerLine = (WIDTH * 3 + 3) & ~3;
+        pixels = new RegionPixels(new byte[bytesPerLine * HEIGHT], bytesPerLine, WIDTH, HEIGHT);
+        references = new ReferenceOverlay();
+        pitch = RegionMap.pitch(WIDTH, HEIGHT, regions);
+
+        changed = new long[(regions + 63) >>> 6];
+        pending = new long[changed.length];
+        Random r = new Random(3);
+        for (int i = 0; i < regions * CHANGED_PERCENT / 100; i++) {
+            int c = r.nextInt(regions);
+            changed[c >>> 6] |= 1L << c;
+        }
+    }
+
+    @Benchmark
+    public RasterSurface regions() {
+        RegionMap.render(surface, snapshot, WIDTH, HEIGHT);
+        return surface;
+    }
+
+    @Benchmark
+    public RasterSurface changedRegions() {
+        System.arraycopy(changed, 0, pending, 0, changed.length);
+        RegionMap.render(surface, snapshot, WIDTH, HEIGHT, pending);
+        return surface;
+    }
+
+    @Benchmark
+    public RegionPixels pixels() {
+        pixels.render(snapshot);
+        return pixels;
+    }
+
+    @Benchmark
+    public int changedPixels() {
+        System.arraycopy(changed, 0, pending, 0, changed.length);
+        return pixels.render(snapshot, pending);
+    }
+
+    @Benchmark
+    public int references() {
+        references.render(surface, snapshot, RegionMap.columns(WIDTH, pitch), pitch);
+        return references.lastDrawnCount();
+    }
+
+}
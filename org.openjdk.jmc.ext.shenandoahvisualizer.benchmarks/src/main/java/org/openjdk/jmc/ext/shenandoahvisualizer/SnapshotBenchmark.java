@@ -0,0 +1,85 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Building snapshots from region words, reading their aggregates and taking views.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBenchmark {
+
+    // Share of regions that differ between the two alternating samples
+    static final int CHANGED_PERCENT = 5;
+
+    @Param({"2048", "8192", "32768"})
+    int regions;
+
+    long[][] samples;
+    SnapshotBuilder builder;
+    Snapshot snapshot;
+    int next;
+
+    @Setup
+    public void setUp() {
+        long[] a = SyntheticRegions.words(regions, 1);
+        long[] b = a.clone();
+        Random r = new Random(3);
+        for (int i = 0; i < regions * CHANGED_PERCENT / 100; i++) {
+            b[r.nextInt(regions)] = SyntheticRegions.randomWord(r);
+        }
+        samples = new long[][] {a, b};
+        builder = new SnapshotBuilder(regions);
+        snapshot = SyntheticRegions.snapshot(new SnapshotBuilder(regions), a, null, 1, 0);
+    }
+
+    /**
+     * One sample through the builder: change detection, states and totals.
+     */
+    @Benchmark
+    public Snapshot build() {
+        Snapshot s = builder.acquire();
+        System.arraycopy(samples[next ^= 1], 0, s.data, 0, regions);
+        s = builder.finish(s, next, next, 1024, 0);
+        builder.release(s);
+        return s;
+    }
+
+    @Benchmark
+    public void aggregates(Blackhole bh) {
+        bh.consume(snapshot.total());
+        bh.consume(snapshot.used());
+        bh.consume(snapshot.live());
+        bh.consume(snapshot.committed());
+        bh.consume(snapshot.trash());
+        bh.consume(snapshot.collectionSet());
+        bh.consume(snapshot.humongous());
+        bh.consume(snapshot.tlabAllocated());
+        bh.consume(snapshot.gclabAllocated());
+        bh.consume(snapshot.sharedAllocated());
+    }
+
+    @Benchmark
+    public SnapshotView view() {
+        return new SnapshotView(snapshot);
+    }
+
+}
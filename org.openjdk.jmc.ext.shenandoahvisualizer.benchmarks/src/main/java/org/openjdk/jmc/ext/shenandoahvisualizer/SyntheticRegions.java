@@ -0,0 +1,93 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Reproducible region data for the benchmarks: data words with a heap-like mix of
+ * states and levels, and encoded matrix rows for a fraction of the regions.
+ */
+final class SyntheticRegions {
+
+    // Raw state codes as published by the VM, see RegionState.fromOrdinal
+    private static final int EMPTY_UNCOMMITTED = 0;
+    private static final int EMPTY_COMMITTED = 1;
+    private static final int REGULAR = 2;
+    private static final int HUMONGOUS = 3;
+    private static final int CSET = 5;
+    private static final int PINNED = 6;
+    private static final int TRASH = 7;
+
+    private SyntheticRegions() {
+    }
+
+    static long word(int state, int used, int live, int tlab, int gclab, int shared) {
+        return ((long) state << 58) | ((long) shared << 28) | ((long) gclab << 21) | ((long) tlab << 14)
+                | ((long) live << 7) | used;
+    }
+
+    /**
+     * Mostly regular regions, with some empty, humongous, collection set and trash ones.
+     */
+    static long[] words(int regions, long seed) {
+        Random r = new Random(seed);
+        long[] words = new long[regions];
+        for (int i = 0; i < regions; i++) {
+            words[i] = randomWord(r);
+        }
+        return words;
+    }
+
+    static long randomWord(Random r) {
+        int p = r.nextInt(100);
+        int used = r.nextInt(101);
+        int live = r.nextInt(used + 1);
+        if (p < 10) {
+            return word(EMPTY_UNCOMMITTED, 0, 0, 0, 0, 0);
+        } else if (p < 25) {
+            return word(EMPTY_COMMITTED, 0, 0, 0, 0, 0);
+        } else if (p < 75) {
+            int tlab = r.nextInt(used + 1);
+            int gclab = r.nextInt(used - tlab + 1);
+            return word(REGULAR, used, live, tlab, gclab, used - tlab - gclab);
+        } else if (p < 82) {
+            return word(HUMONGOUS, used, live, 0, 0, used);
+        } else if (p < 92) {
+            return word(CSET, used, live, 0, 0, 0);
+        } else if (p < 94) {
+            return word(PINNED, used, live, 0, 0, 0);
+        }
+        return word(TRASH, used, 0, 0, 0, 0);
+    }
+
+    /**
+     * Matrix rows for every {@code stride}-th region, each with {@code refs} random
+     * incoming references. The other rows are null, like regions without references.
+     */
+    static String[] matrix(int regions, int stride, int refs, long seed) {
+        Random r = new Random(seed);
+        String[] matrix = new String[regions];
+        BitSet bits = new BitSet(regions);
+        for (int i = 0; i < regions; i += stride) {
+            bits.clear();
+            for (int k = 0; k < refs; k++) {
+                bits.set(r.nextInt(regions));
+            }
+            matrix[i] = RegionStat.encodeMatrix(bits, regions);
+        }
+        return matrix;
+    }
+
+    /**
+     * Builds a snapshot of {@code words} and {@code matrix} with {@code builder}.
+     */
+    static Snapshot snapshot(SnapshotBuilder builder, long[] words, String[] matrix, long time, int status) {
+        Snapshot s = builder.acquire();
+        System.arraycopy(words, 0, s.data, 0, words.length);
+        if (matrix != null) {
+            System.arraycopy(matrix, 0, s.matrix, 0, matrix.length);
+        }
+        return builder.finish(s, time, time, 1024, status);
+    }
+
+}
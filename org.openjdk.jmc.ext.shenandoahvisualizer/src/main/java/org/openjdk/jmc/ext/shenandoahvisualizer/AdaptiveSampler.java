@@ -0,0 +1,87 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+/**
+ * Picks the delay before the next sample. Sampling runs at the fastest rate while a
+ * GC cycle is in progress or a large part of the heap changed since the previous
+ * sample, and backs off exponentially towards the slowest rate while the heap is quiet.
+ * A status the VM reports but that is not understood counts as quiet, so that only the
+ * changes in the heap keep sampling fast.
+ * Updated from the sampling thread, bounds may be changed from any thread.
+ */
+public class AdaptiveSampler {
+
+    public static final long DEFAULT_MIN_INTERVAL = 5;
+    public static final long DEFAULT_MAX_INTERVAL = 2_000;
+
+    // Changing at least one in this many regions in one sample counts as busy, i.e. 1%
+    private static final int BUSY_REGION_DIVISOR = 100;
+
+    private volatile long minInterval;
+    private volatile long maxInterval;
+    private volatile long interval;
+
+    public AdaptiveSampler() {
+        this(DEFAULT_MIN_INTERVAL, DEFAULT_MAX_INTERVAL);
+    }
+
+    public AdaptiveSampler(long minInterval, long maxInterval) {
+        setBounds(minInterval, maxInterval);
+        this.interval = this.minInterval;
+    }
+
+    public void setBounds(long minInterval, long maxInterval) {
+        this.minInterval = Math.max(1, minInterval);
+        this.maxInterval = Math.max(this.minInterval, maxInterval);
+        this.interval = clamp(interval);
+    }
+
+    /**
+     * Folds in the outcome of a sample and returns the delay before the next one, in ms.
+     */
+    public long update(Phase phase, int changed, int regionCount) {
+        long next;
+        boolean cycle = phase != Phase.IDLE && phase != Phase.UNKNOWN;
+        if (cycle || changed * BUSY_REGION_DIVISOR >= regionCount) {
+            next = minInterval;
+        } else if (changed > 0) {
+            next = interval / 2;
+        } else {
+            next = interval * 2;
+        }
+        interval = clamp(next);
+        return interval;
+    }
+
+    /**
+     * Same as {@link #update} for a sample that was skipped because the VM did not
+     * publish new data, {@code phase} being the last known one.
+     */
+    public long unchanged(Phase phase) {
+        return update(phase == null ? Phase.IDLE : phase, 0, 1);
+    }
+
+    /**
+     * Slows down after a failed sample, so that a VM that went away is not polled at full speed.
+     */
+    public long backOff() {
+        interval = clamp(interval * 2);
+        return interval;
+    }
+
+    private long clamp(long value) {
+        return Math.max(minInterval, Math.min(maxInterval, value));
+    }
+
+    public long interval() {
+        return interval;
+    }
+
+    public long minInterval() {
+        return minInterval;
+    }
+
+    public long maxInterval() {
+        return maxInterval;
+    }
+
+}
@@ -0,0 +1,91 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+/**
+ * Turns the allocation counters of successive snapshots into smoothed TLAB, GCLAB and
+ * shared allocation rates, and projects when the free part of the heap runs out at the
+ * current mutator rate. Rates are in the units of {@link Snapshot#used()} per second.
+ * Accessed from the UI thread only.
+ */
+public class AllocationAnalyzer {
+
+    // Rates follow changes within about a second
+    static final double TIME_CONSTANT = 1000;
+
+    private long lastTime = -1;
+    private long lastTlab;
+    private long lastGclab;
+    private long lastShared;
+
+    private double tlabRate;
+    private double gclabRate;
+    private double sharedRate;
+    private long free;
+
+    public void add(Snapshot s) {
+        long time = s.vmTime();
+        long tlab = s.tlabAllocated();
+        long gclab = s.gclabAllocated();
+        long shared = s.sharedAllocated();
+        if (lastTime >= 0 && time > lastTime) {
+            double dt = time - lastTime;
+            double alpha = 1 - Math.exp(-dt / TIME_CONSTANT);
+            tlabRate += alpha * ((tlab - lastTlab) * 1000 / dt - tlabRate);
+            gclabRate += alpha * ((gclab - lastGclab) * 1000 / dt - gclabRate);
+            sharedRate += alpha * ((shared - lastShared) * 1000 / dt - sharedRate);
+        }
+        if (time >= lastTime) {
+            lastTime = time;
+            lastTlab = tlab;
+            lastGclab = gclab;
+            lastShared = shared;
+        }
+        free = s.total() - s.used();
+    }
+
+    public void clear() {
+        lastTime = -1;
+        tlabRate = 0;
+        gclabRate = 0;
+        sharedRate = 0;
+    }
+
+    public long tlabRate() {
+        return (long) tlabRate;
+    }
+
+    public long gclabRate() {
+        return (long) gclabRate;
+    }
+
+    public long sharedRate() {
+        return (long) sharedRate;
+    }
+
+    /**
+     * Rate at which the application allocates, in TLABs and shared. GCLAB allocation is
+     * the GC copying evacuated objects, which it pays for with the collection set it
+     * frees, so it is left out.
+     */
+    public long allocationRate() {
+        return (long) (tlabRate + sharedRate);
+    }
+
+    /**
+     * Milliseconds until the free part of the heap is used up at the current rate,
+     * or {@code Long.MAX_VALUE} when nothing is being allocated.
+     */
+    public long timeToExhaustion() {
+        long rate = allocationRate();
+        return rate <= 0 ? Long.MAX_VALUE : Math.max(0, free) * 1000 / rate;
+    }
+
+    /**
+     * Whether the heap is projected to run out before a GC cycle needing another
+     * {@code remainingCycleTime} ms can finish, i.e. an allocation failure followed by
+     * a degenerated or full GC is to be expected.
+     */
+    public boolean atRisk(long remainingCycleTime) {
+        return remainingCycleTime > 0 && timeToExhaustion() < remainingCycleTime;
+    }
+
+}
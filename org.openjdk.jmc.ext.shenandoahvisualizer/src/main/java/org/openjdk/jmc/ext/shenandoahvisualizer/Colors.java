@@ -1,37 +1,43 @@
 package org.openjdk.jmc.ext.shenandoahvisualizer;
 
-import org.eclipse.swt.widgets.Display;
-import org.eclipse.swt.graphics.Color;
-
+/**
+ * Palette as 0xRRGGBB ints, see {@link Surface}. {@link SwtSurface#color(int)} turns
+ * them into SWT colors.
+ */
 public class Colors {
-	
-	static Display device;
-    static final Color TIMELINE_IDLE        = new Color(device, 0, 0, 0);
-    static final Color TIMELINE_MARK        = new Color(device, 100, 100, 0);
-    static final Color TIMELINE_EVACUATING  = new Color(device, 100, 0, 0);
-    static final Color TIMELINE_UPDATEREFS  = new Color(device, 0, 100, 100);
-    static final Color TIMELINE_TRAVERSAL   = TIMELINE_EVACUATING;
 
-    static final Color SHARED_ALLOC           = new Color(device, 0, 250, 250);
-    static final Color SHARED_ALLOC_BORDER    = new Color(device, 0, 191, 190);
-    static final Color TLAB_ALLOC           = new Color(device, 0, 200, 0);
-    static final Color TLAB_ALLOC_BORDER    = new Color(device, 0, 100, 0);
-    static final Color GCLAB_ALLOC          = new Color(device, 185, 0, 250);
-    static final Color GCLAB_ALLOC_BORDER   = new Color(device, 118, 0, 160);
+    static final int TIMELINE_IDLE        = 0x000000;
+    static final int TIMELINE_MARK        = 0x646400;
+    static final int TIMELINE_EVACUATING  = 0x640000;
+    static final int TIMELINE_UPDATEREFS  = 0x006464;
+    static final int TIMELINE_TRAVERSAL   = TIMELINE_EVACUATING;
+    static final int TIMELINE_FREE        = 0x5A82FF;
+    static final int TIMELINE_FRAGMENTATION = 0xFF50C8;
+
+    static final int SHARED_ALLOC           = 0x00FAFA;
+    static final int SHARED_ALLOC_BORDER    = 0x00BFBE;
+    static final int TLAB_ALLOC           = 0x00C800;
+    static final int TLAB_ALLOC_BORDER    = 0x006400;
+    static final int GCLAB_ALLOC          = 0xB900FA;
+    static final int GCLAB_ALLOC_BORDER   = 0x7600A0;
+
+    static final int USED                 = 0xDCDCDC;
+    static final int DEFAULT              = 0xFFFFFF;
+    static final int LIVE_COMMITTED       = 0x969696;
+    static final int LIVE_REGULAR         = 0x00C800;
+    static final int LIVE_HUMONGOUS       = 0xFA6400;
+    static final int LIVE_PINNED_HUMONGOUS = 0xFF0000;
+    static final int LIVE_CSET            = 0xFAFA00;
+    static final int LIVE_TRASH           = 0x646464;
+    static final int LIVE_PINNED          = 0xFF0000;
+    static final int LIVE_PINNED_CSET     = 0xFF7800;
+    static final int LIVE_EMPTY           = 0xFFFFFF;
+
+    static final int LIVE_BORDER          = 0x006400;
+    static final int BORDER               = 0x969696;
+    static final int REFERENCE            = 0x000000;
 
-    static final Color USED                 = new Color(device, 220, 220, 220);
-    static final Color DEFAULT				= new Color(device, 255, 255, 255);
-    static final Color LIVE_COMMITTED       = new Color(device, 150, 150, 150);
-    static final Color LIVE_REGULAR         = new Color(device, 0, 200, 0);
-    static final Color LIVE_HUMONGOUS       = new Color(device, 250, 100, 0);
-    static final Color LIVE_PINNED_HUMONGOUS = new Color(device, 255, 0, 0);
-    static final Color LIVE_CSET            = new Color(device, 250, 250, 0);
-    static final Color LIVE_TRASH           = new Color(device, 100, 100, 100);
-    static final Color LIVE_PINNED          = new Color(device, 255, 0, 0);
-    static final Color LIVE_PINNED_CSET     = new Color(device, 255, 120, 0);
-    static final Color LIVE_EMPTY           = new Color(device, 255, 255, 255);
+    static final int WHITE                = 0xFFFFFF;
+    static final int BLACK                = 0x000000;
 
-    static final Color LIVE_BORDER          = new Color(device, 0, 100, 0);
-    static final Color BORDER               = new Color(device, 150, 150, 150);
-    
 }
@@ -0,0 +1,31 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+/**
+ * Raw Shenandoah region counters as the VM publishes them, read by a
+ * {@link RegionStatsAgent} next to the target JVM.
+ */
+public interface CounterSource {
+
+    int maxRegions();
+
+    long regionSize();
+
+    /**
+     * Ticks of the VM's high resolution timer per second, 0 when unknown.
+     */
+    long frequency();
+
+    /**
+     * Timer ticks at which the VM last published the counters.
+     */
+    long timestamp();
+
+    long status();
+
+    /**
+     * Copies all region data words into {@code dst}, which must hold at least
+     * {@link #maxRegions()} elements.
+     */
+    void read(long[] dst);
+
+}
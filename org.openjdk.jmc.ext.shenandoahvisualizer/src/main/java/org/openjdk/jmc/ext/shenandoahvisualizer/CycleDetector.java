@@ -0,0 +1,297 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+/**
+ * Detects Shenandoah cycles in a stream of snapshots and keeps statistics for the
+ * most recent ones. A cycle starts when the phase moves to {@link Phase#MARKING} and
+ * ends when it is back at {@link Phase#IDLE} for at least {@link #IDLE_SETTLE} ms, or
+ * when the next cycle starts marking; the VM may briefly report idle between two
+ * phases of one cycle. Only cycles whose start was seen are recorded. Time between two
+ * samples is attributed to the phase of the earlier one. Completed cycles are kept in a
+ * fixed-size ring, one primitive array per statistic; index 0 is the oldest. Accessed
+ * from the UI thread only.
+ */
+public class CycleDetector {
+
+    public static final int DEFAULT_CAPACITY = 1000;
+
+    // Idle for shorter than this within a cycle is taken for a gap between two phases
+    public static final long IDLE_SETTLE = 100;
+
+    private final int capacity;
+    private int head;
+    private int size;
+    private long completed;
+
+    private final long[] start;
+    private final long[] end;
+    private final long[] markTime;
+    private final long[] evacTime;
+    private final long[] updateRefsTime;
+    private final int[] csetRegions;
+    private final long[] reclaimed;
+    private final int[] humongousDelta;
+    private final long[] allocated;
+    private final long[] concurrentTime;
+
+    // Cycle in progress
+    private boolean inCycle;
+    private long curStart;
+    private long curMark;
+    private long curEvac;
+    private long curUpdateRefs;
+    private int curCset;
+    private long startTrash;
+    private long maxTrash;
+    private int startHumongous;
+    private long curAllocated;
+    // Time and humongous regions of the first idle sample of the cycle in progress, -1 while busy
+    private long idleSince = -1;
+    private int idleHumongous;
+
+    private long lastTime;
+    private long lastUsed;
+    private Phase lastPhase;
+
+    public CycleDetector() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CycleDetector(int capacity) {
+        this.capacity = Math.max(1, capacity);
+        start = new long[this.capacity];
+        end = new long[this.capacity];
+        markTime = new long[this.capacity];
+        evacTime = new long[this.capacity];
+        updateRefsTime = new long[this.capacity];
+        csetRegions = new int[this.capacity];
+        reclaimed = new long[this.capacity];
+        humongousDelta = new int[this.capacity];
+        allocated = new long[this.capacity];
+        concurrentTime = new long[this.capacity];
+    }
+
+    /**
+     * Folds in the next snapshot. Returns true if it completed a cycle.
+     */
+    public boolean add(Snapshot s) {
+        long time = s.vmTime();
+        Phase phase = s.phase();
+        long used = s.used();
+        boolean done = false;
+
+        if (inCycle && lastPhase != null) {
+            long dt = Math.max(0, time - lastTime);
+            switch (lastPhase) {
+                case MARKING:
+                    curMark += dt;
+                    break;
+                case EVACUATING:
+                    curEvac += dt;
+                    break;
+                case UPDATE_REFS:
+                    curUpdateRefs += dt;
+                    break;
+                default:
+                    break;
+            }
+            // Usage only grows through allocation, drops are reclamation. Allocation
+            // while idle is left out like the idle time the rate is taken over.
+            if (used > lastUsed && lastPhase != Phase.IDLE) {
+                curAllocated += used - lastUsed;
+            }
+        }
+
+        boolean starts = phase == Phase.MARKING && lastPhase != null && lastPhase != Phase.MARKING;
+        if (inCycle && (starts || idleSince >= 0 && time - idleSince >= IDLE_SETTLE)) {
+            // The cycle ended when it went idle, or right here if the next one followed without a break
+            inCycle = false;
+            if (idleSince >= 0) {
+                append(idleSince, idleHumongous);
+            } else {
+                append(time, humongousRegions(s));
+            }
+            done = true;
+        }
+
+        if (!inCycle && starts) {
+            inCycle = true;
+            curStart = time;
+            curMark = 0;
+            curEvac = 0;
+            curUpdateRefs = 0;
+            curCset = 0;
+            startTrash = s.trash();
+            maxTrash = startTrash;
+            startHumongous = humongousRegions(s);
+            curAllocated = 0;
+            idleSince = -1;
+        }
+
+        if (inCycle) {
+            if (phase != Phase.IDLE) {
+                idleSince = -1;
+            } else if (idleSince < 0) {
+                idleSince = time;
+                idleHumongous = humongousRegions(s);
+            }
+            curCset = Math.max(curCset, s.stateCount(RegionState.CSET) + s.stateCount(RegionState.PINNED_CSET));
+            maxTrash = Math.max(maxTrash, s.trash());
+        }
+        lastTime = time;
+        lastUsed = used;
+        lastPhase = phase;
+        return done;
+    }
+
+    private static int humongousRegions(Snapshot s) {
+        return s.stateCount(RegionState.HUMONGOUS) + s.stateCount(RegionState.PINNED_HUMONGOUS);
+    }
+
+    private void append(long time, int humongous) {
+        int slot = (head + size) % capacity;
+        if (size == capacity) {
+            head = (head + 1) % capacity;
+        } else {
+            size++;
+        }
+        start[slot] = curStart;
+        end[slot] = time;
+        markTime[slot] = curMark;
+        evacTime[slot] = curEvac;
+        updateRefsTime[slot] = curUpdateRefs;
+        csetRegions[slot] = curCset;
+        reclaimed[slot] = maxTrash - startTrash;
+        humongousDelta[slot] = humongous - startHumongous;
+        allocated[slot] = curAllocated;
+        concurrentTime[slot] = curMark + curEvac + curUpdateRefs;
+        completed++;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+        completed = 0;
+        inCycle = false;
+        idleSince = -1;
+        lastPhase = null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Number of cycles completed since the last {@link #clear()}, including the ones
+     * that dropped out of the ring.
+     */
+    public long completed() {
+        return completed;
+    }
+
+    /**
+     * True from the start of marking until the cycle is known to have ended, which is
+     * up to {@link #IDLE_SETTLE} ms after it went idle.
+     */
+    public boolean inCycle() {
+        return inCycle;
+    }
+
+    /**
+     * Start of the cycle in progress, only meaningful while {@link #inCycle()}.
+     */
+    public long cycleStart() {
+        return curStart;
+    }
+
+    /**
+     * Mean duration of the last {@code last} completed cycles, 0 if there are none.
+     */
+    public long averageDuration(int last) {
+        int n = Math.min(last, size);
+        if (n == 0) {
+            return 0;
+        }
+        long sum = 0;
+        for (int i = size - n; i < size; i++) {
+            sum += duration(i);
+        }
+        return sum / n;
+    }
+
+    /**
+     * Time the GC still needs before memory is reclaimed, at {@code now}: what is left of the
+     * cycle in progress, or a whole cycle if none is running. Estimated from the last cycles,
+     * 0 when there is no history yet.
+     */
+    public long remainingCycleTime(long now) {
+        long expected = averageDuration(10);
+        if (expected == 0) {
+            return 0;
+        }
+        return inCycle ? Math.max(0, expected - (now - curStart)) : expected;
+    }
+
+    private int slot(int i) {
+        int s = head + i;
+        return s >= capacity ? s - capacity : s;
+    }
+
+    public long start(int i) {
+        return start[slot(i)];
+    }
+
+    public long end(int i) {
+        return end[slot(i)];
+    }
+
+    public long duration(int i) {
+        return end[slot(i)] - start[slot(i)];
+    }
+
+    public long markTime(int i) {
+        return markTime[slot(i)];
+    }
+
+    public long evacTime(int i) {
+        return evacTime[slot(i)];
+    }
+
+    public long updateRefsTime(int i) {
+        return updateRefsTime[slot(i)];
+    }
+
+    /**
+     * Largest number of collection set regions seen during the cycle.
+     */
+    public int csetRegions(int i) {
+        return csetRegions[slot(i)];
+    }
+
+    /**
+     * Growth of trash during the cycle, in the units of {@link Snapshot#trash()}.
+     */
+    public long reclaimed(int i) {
+        return reclaimed[slot(i)];
+    }
+
+    /**
+     * Change in the number of humongous regions from the start to the end of the cycle.
+     */
+    public int humongousDelta(int i) {
+        return humongousDelta[slot(i)];
+    }
+
+    /**
+     * Allocation rate while the GC ran concurrently, in units of {@link Snapshot#used()}
+     * per second, estimated from the growth of usage between samples.
+     */
+    public long allocationRate(int i) {
+        int s = slot(i);
+        return concurrentTime[s] == 0 ? 0 : allocated[s] * 1000 / concurrentTime[s];
+    }
+
+}
@@ -1,58 +1,46 @@
 package org.openjdk.jmc.ext.shenandoahvisualizer;
 
-import sun.jvmstat.monitor.*;
-
-import java.util.ArrayList;
-import java.util.List;
-
-public class DataProvider {
-
-    private final int maxRegions;
-    private final long maxSize;
-    private final LongMonitor[] data;
-    private final StringMonitor[] matrix;
-    private final LongMonitor timestamp;
-    private final LongMonitor status;
-
-    public DataProvider(String id) throws Exception {
-        MonitoredHost host = MonitoredHost.getMonitoredHost(id);
-        MonitoredVm vm = host.getMonitoredVm(new VmIdentifier(id));
-        timestamp = (LongMonitor) vm.findByName("sun.gc.shenandoah.regions.timestamp");
-        LongMonitor max_regions_mon = (LongMonitor) vm.findByName("sun.gc.shenandoah.regions.max_regions");
-        maxRegions = (int) max_regions_mon.longValue();
-        LongMonitor max_size_mon = (LongMonitor) vm.findByName("sun.gc.shenandoah.regions.region_size");
-        maxSize = max_size_mon.longValue();
-        status = (LongMonitor) vm.findByName("sun.gc.shenandoah.regions.status");
-
-        data = new LongMonitor[maxRegions];
-        matrix = new StringMonitor[maxRegions];
-        for (int i = 0; i < maxRegions; i++) {
-            LongMonitor mon = (LongMonitor) vm.findByName("sun.gc.shenandoah.regions.region." + i + ".data");
-            if (mon != null) {
-                data[i] = mon;
-            } else {
-                throw new IllegalStateException("Insufficient shared memory for all region counters. " +
-                        "Try -XX:PerfDataMemorySize=512K or higher when running the monitored program.");
-            }
-
-            StringMonitor mtrx = (StringMonitor) vm.findByName("sun.gc.shenandoah.regions.region." + i + ".matrix");
-            if (mtrx != null) {
-                matrix[i] = mtrx;
-            }
+/**
+ * Anything the renderer can pull region snapshots from: a local JVM through jvmstat,
+ * a remote one through a {@link RegionStatsAgent}, a simulated heap or a recording.
+ */
+public interface DataProvider {
+
+    /**
+     * Opens a provider for {@code id}. {@code remote://host:port} connects to a
+     * {@link RegionStatsAgent}, {@code synthetic://...} simulates a heap as described in
+     * {@link SyntheticCounterSource#parse}, anything else is a jvmstat VM id such as
+     * {@code local://1234}.
+     */
+    static DataProvider open(String id) throws Exception {
+        if (id.startsWith(RemoteDataProvider.PREFIX)) {
+            return new RemoteDataProvider(id);
         }
+        if (id.startsWith(SyntheticCounterSource.PREFIX)) {
+            return new SyntheticDataProvider(id);
+        }
+        return new PerfDataProvider(id);
     }
 
-    public Snapshot snapshot() {
-        List<RegionStat> stats = new ArrayList<>();
-        for (int c = 0; c < maxRegions; c++) {
-            StringMonitor mtrx = matrix[c];
-            stats.add(new RegionStat(data[c].longValue(), (mtrx == null ? "" : mtrx.stringValue())));
-        }
+    /**
+     * Takes the next snapshot, or returns null when the source knows that nothing was
+     * published since the previous one. Called from the sampling thread only.
+     */
+    Snapshot snapshot();
 
-        // Cannot use timestamp value from the dataset itself, because statistics
-        // is not reported continuously
-        long time = System.currentTimeMillis();
-        return new Snapshot(time, maxSize, stats, (int) status.longValue());
-    }
+    /**
+     * Hands a snapshot that is no longer referenced back to this source, so that
+     * its arrays can be reused for a later sample.
+     */
+    void release(Snapshot s);
+
+    boolean hasMatrix();
+
+    void setMatrixEnabled(boolean enabled);
+
+    /**
+     * Releases the connection to the VM. The provider must not be sampled afterwards.
+     */
+    void close();
 
 }
@@ -0,0 +1,94 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compact encoding of region data words, shared by recordings and anything else
+ * that ships samples around. A keyframe holds every word as is. A delta frame holds
+ * only the regions that changed since the previous frame: the gap to the previous
+ * changed index and the XOR with the old word, both as unsigned LEB128 varints, so
+ * a typical small change costs a few bytes per region.
+ */
+final class FrameCodec {
+
+    static final byte KEYFRAME = 0;
+    static final byte DELTA = 1;
+
+    private FrameCodec() {
+    }
+
+    /**
+     * Writes all {@code count} words of {@code words} and makes {@code previous} a copy of them.
+     */
+    static void writeKeyframe(DataOutput out, long[] words, long[] previous, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            out.writeLong(words[i]);
+        }
+        System.arraycopy(words, 0, previous, 0, count);
+    }
+
+    /**
+     * Writes the words whose bit is set in {@code changed} as a delta against
+     * {@code previous}, and brings {@code previous} up to date.
+     */
+    static void writeDelta(DataOutput out, long[] words, long[] previous, long[] changed) throws IOException {
+        int count = 0;
+        for (long bits : changed) {
+            count += Long.bitCount(bits);
+        }
+        writeVarLong(out, count);
+
+        int last = -1;
+        for (int w = 0; w < changed.length; w++) {
+            long bits = changed[w];
+            while (bits != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                writeVarLong(out, i - last - 1);
+                writeVarLong(out, words[i] ^ previous[i]);
+                previous[i] = words[i];
+                last = i;
+            }
+        }
+    }
+
+    static void readKeyframe(ByteBuffer in, long[] words, int count) {
+        for (int i = 0; i < count; i++) {
+            words[i] = in.getLong();
+        }
+    }
+
+    /**
+     * Applies a delta frame to {@code words}, which must hold the words of the previous frame.
+     */
+    static void readDelta(ByteBuffer in, long[] words) {
+        int count = (int) readVarLong(in);
+        int idx = -1;
+        for (int k = 0; k < count; k++) {
+            idx += (int) readVarLong(in) + 1;
+            words[idx] ^= readVarLong(in);
+        }
+    }
+
+    static void writeVarLong(DataOutput out, long v) throws IOException {
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    static long readVarLong(ByteBuffer in) {
+        long v = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return v;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Renders the region map of a recording to PNG files at fixed intervals, without a
+ * display:
+ *
+ * <pre>
+ * java -cp shenandoahvisualizer.jar org.openjdk.jmc.ext.shenandoahvisualizer.HeapSnapshotExporter &lt;recording&gt; &lt;dir&gt; [interval ms] [width] [height]
+ * </pre>
+ */
+public class HeapSnapshotExporter {
+
+    public static final long DEFAULT_INTERVAL = 1000;
+    public static final int DEFAULT_SIZE = 1000;
+
+    private final RecordingReader reader;
+    private final SnapshotBuilder builder;
+    private final RasterSurface raster;
+
+    public HeapSnapshotExporter(RecordingReader reader, int width, int height) {
+        this.reader = reader;
+        this.builder = new SnapshotBuilder(reader.regionCount());
+        this.raster = new RasterSurface(width, height);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: HeapSnapshotExporter <recording> <dir> [interval ms] [width] [height]");
+            System.exit(1);
+        }
+        File dir = new File(args[1]);
+        long interval = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_INTERVAL;
+        int width = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_SIZE;
+        int height = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_SIZE;
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        int count = new HeapSnapshotExporter(new RecordingReader(new File(args[0])), width, height).export(dir, interval);
+        System.out.println("Wrote " + count + " images to " + dir);
+    }
+
+    /**
+     * Writes one image per {@code interval} ms of recording time into {@code dir},
+     * named after the time. Returns the number of images.
+     */
+    public int export(File dir, long interval) throws IOException {
+        int count = 0;
+        reader.rewind();
+        for (long t = reader.firstTime(); t <= reader.lastTime(); t += Math.max(1, interval)) {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(new File(dir, "heap-" + t + ".png")))) {
+                render(t).writePng(out);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Renders the heap as of {@code time}, which must not be before the previous call.
+     */
+    public RasterSurface render(long time) {
+        while (reader.peekTime() <= time) {
+            reader.next();
+        }
+        Snapshot s = builder.acquire();
+        System.arraycopy(reader.words(), 0, s.data, 0, reader.regionCount());
+        Arrays.fill(s.matrix, null);
+        builder.finish(s, reader.time(), reader.time(), reader.regionSize(), reader.status());
+
+        raster.clear(Colors.WHITE);
+        RegionMap.render(raster, s, raster.width(), raster.height());
+        builder.release(s);
+        return raster;
+    }
+
+}
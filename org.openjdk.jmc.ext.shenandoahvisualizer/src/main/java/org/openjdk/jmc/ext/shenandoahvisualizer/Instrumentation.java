@@ -0,0 +1,150 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Measures the visualizer itself: a latency histogram per {@link Probe}, the sampling
+ * rate and the bytes the sampling thread allocates per sample, so that it can be checked
+ * against budgets such as "sample in under 2 ms at 16K regions".
+ */
+public class Instrumentation {
+
+    public enum Probe {
+        SNAPSHOT("Snapshot"),
+        SAMPLE("Sample"),
+        REGIONS("Region paint"),
+        GRAPH("Graph paint"),
+        STATS("Stats paint"),
+        ;
+
+        private final String label;
+
+        Probe(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    // Samples per second are computed over windows of at least this length
+    private static final long RATE_WINDOW = 1_000_000_000L;
+
+    private final Map<Probe, Histogram> latencies = new EnumMap<>(Probe.class);
+    private final Histogram allocations = new Histogram();
+    private final com.sun.management.ThreadMXBean threads;
+
+    private long windowStart = System.nanoTime();
+    private long windowCount;
+    private volatile double samplesPerSecond;
+
+    public Instrumentation() {
+        for (Probe p : Probe.values()) {
+            latencies.put(p, new Histogram());
+        }
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean
+                && ((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            threads = (com.sun.management.ThreadMXBean) bean;
+        } else {
+            threads = null;
+        }
+    }
+
+    /**
+     * Records the time since {@code start}, a {@link System#nanoTime()} value.
+     */
+    public void stop(Probe probe, long start) {
+        latencies.get(probe).record(System.nanoTime() - start);
+    }
+
+    public Histogram latency(Probe probe) {
+        return latencies.get(probe);
+    }
+
+    /**
+     * Bytes allocated by the calling thread so far, -1 if the JVM cannot tell.
+     */
+    public long allocatedBytes() {
+        return threads != null ? threads.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+    }
+
+    /**
+     * Records what the calling thread allocated since {@link #allocatedBytes()} returned
+     * {@code before}.
+     */
+    public void recordAllocation(long before) {
+        if (before >= 0) {
+            allocations.record(allocatedBytes() - before);
+        }
+    }
+
+    public Histogram allocations() {
+        return allocations;
+    }
+
+    /**
+     * Samples per second over the last complete window, updated from the sample count.
+     */
+    public double samplesPerSecond() {
+        long now = System.nanoTime();
+        long samples = latencies.get(Probe.SAMPLE).count();
+        synchronized (this) {
+            if (now - windowStart >= RATE_WINDOW) {
+                samplesPerSecond = (samples - windowCount) * 1e9 / (now - windowStart);
+                windowStart = now;
+                windowCount = samples;
+            }
+        }
+        return samplesPerSecond;
+    }
+
+    public void reset() {
+        for (Histogram h : latencies.values()) {
+            h.reset();
+        }
+        allocations.reset();
+        synchronized (this) {
+            windowStart = System.nanoTime();
+            windowCount = 0;
+        }
+    }
+
+    /**
+     * One line per probe for the stats panel.
+     */
+    public String summary(Probe probe) {
+        Histogram h = latencies.get(probe);
+        return probe.label() + ": p50 " + millis(h.percentile(50)) + ", p99 " + millis(h.percentile(99)) + ", max "
+                + millis(h.max()) + " ms (" + h.count() + ")";
+    }
+
+    /**
+     * Writes all histograms as CSV, latencies in microseconds and allocations in bytes.
+     */
+    public void export(Appendable out) throws IOException {
+        out.append("metric,unit,count,mean,p50,p90,p99,p99.9,max\n");
+        for (Probe p : Probe.values()) {
+            write(out, p.label(), "us", latencies.get(p), 1000);
+        }
+        write(out, "Allocation per sample", "bytes", allocations, 1);
+    }
+
+    private static void write(Appendable out, String name, String unit, Histogram h, long scale) throws IOException {
+        out.append(name).append(',').append(unit).append(',').append(Long.toString(h.count()));
+        for (long v : new long[] {h.mean(), h.percentile(50), h.percentile(90), h.percentile(99), h.percentile(99.9), h.max()}) {
+            out.append(',').append(Long.toString(v / scale));
+        }
+        out.append('\n');
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2f", nanos / 1e6);
+    }
+
+}
@@ -0,0 +1,275 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the Shenandoah region counters straight out of the target JVM's
+ * memory-mapped hsperfdata file. All offsets are resolved once at connect
+ * time, so a sample is a single bulk copy instead of one monitor call per region.
+ * Matrix rows are compared in place and only turned into strings when they change.
+ */
+public class MappedRegionCounters implements CounterSource {
+
+    private static final int MAGIC = 0xcafec0c0;
+    private static final int SUPPORTED_MAJOR = 2;
+
+    private static final int PROLOGUE_BYTE_ORDER    = 4;
+    private static final int PROLOGUE_MAJOR         = 5;
+    private static final int PROLOGUE_USED          = 8;
+    private static final int PROLOGUE_ENTRY_OFFSET  = 24;
+    private static final int PROLOGUE_NUM_ENTRIES   = 28;
+
+    private static final int ENTRY_LENGTH      = 0;
+    private static final int ENTRY_NAME_OFFSET = 4;
+    private static final int ENTRY_VECTOR_LEN  = 8;
+    private static final int ENTRY_DATA_TYPE   = 12;
+    private static final int ENTRY_DATA_OFFSET = 16;
+
+    private static final String PREFIX = "sun.gc.shenandoah.regions.";
+    private static final String FREQUENCY = "sun.os.hrt.frequency";
+    private static final String MATRIX = ".matrix";
+
+    private final ByteBuffer buf;
+    private final int maxRegions;
+    private final long regionSize;
+    private final long frequency;
+    private final int timestampOffset;
+    private final int statusOffset;
+    private final int[] dataOffsets;
+
+    // The VM allocates the region counters one after another, so their words are usually
+    // a fixed stride apart; 0 when they are not and we have to go through dataOffsets
+    private final int stride;
+
+    // Non-null when the region words are laid out back-to-back and can be copied in one go
+    private final LongBuffer contiguous;
+
+    // Offsets and capacities of the matrix rows, null when the VM publishes none
+    private final int[] matrixOffsets;
+    private final int[] matrixLengths;
+    // Bytes and string of every row as of the last read
+    private final byte[][] matrixBytes;
+    private final String[] matrixRows;
+
+    public MappedRegionCounters(File file) throws IOException {
+        MappedByteBuffer mapped;
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            mapped = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+        buf = mapped;
+
+        buf.order(ByteOrder.BIG_ENDIAN);
+        if (buf.getInt(0) != MAGIC) {
+            throw new IOException("Not a hsperfdata file: " + file);
+        }
+        if (buf.get(PROLOGUE_MAJOR) != SUPPORTED_MAJOR) {
+            throw new IOException("Unsupported hsperfdata version: " + buf.get(PROLOGUE_MAJOR));
+        }
+        buf.order(buf.get(PROLOGUE_BYTE_ORDER) == 0 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+
+        Map<String, Integer> longs = new HashMap<>();
+        Map<String, int[]> strings = new HashMap<>();
+        scanEntries(longs, strings);
+
+        timestampOffset = require(longs, PREFIX + "timestamp");
+        statusOffset = require(longs, PREFIX + "status");
+        maxRegions = (int) buf.getLong(require(longs, PREFIX + "max_regions"));
+        regionSize = buf.getLong(require(longs, PREFIX + "region_size"));
+        Integer frequencyOffset = longs.get(FREQUENCY);
+        frequency = frequencyOffset != null ? buf.getLong(frequencyOffset) : 0;
+
+        dataOffsets = new int[maxRegions];
+        int s = maxRegions > 1 ? -1 : 0;
+        for (int i = 0; i < maxRegions; i++) {
+            dataOffsets[i] = require(longs, PREFIX + "region." + i + ".data");
+            if (i == 1) {
+                s = dataOffsets[1] - dataOffsets[0];
+            } else if (i > 1 && dataOffsets[i] - dataOffsets[i - 1] != s) {
+                s = 0;
+            }
+        }
+        stride = Math.max(s, 0);
+
+        if (stride == 8) {
+            ByteBuffer dup = buf.duplicate();
+            ((Buffer) dup).position(dataOffsets[0]);
+            ByteBuffer slice = dup.slice();
+            slice.order(buf.order());
+            contiguous = slice.asLongBuffer();
+        } else {
+            contiguous = null;
+        }
+
+        if (strings.containsKey(PREFIX + "region.0" + MATRIX)) {
+            matrixOffsets = new int[maxRegions];
+            matrixLengths = new int[maxRegions];
+            matrixBytes = new byte[maxRegions][];
+            matrixRows = new String[maxRegions];
+            for (int i = 0; i < maxRegions; i++) {
+                int[] entry = strings.get(PREFIX + "region." + i + MATRIX);
+                if (entry != null) {
+                    matrixOffsets[i] = entry[0];
+                    matrixLengths[i] = entry[1];
+                }
+                matrixBytes[i] = new byte[matrixLengths[i]];
+                matrixRows[i] = "";
+            }
+        } else {
+            matrixOffsets = null;
+            matrixLengths = null;
+            matrixBytes = null;
+            matrixRows = null;
+        }
+    }
+
+    /**
+     * Locates the hsperfdata file for a local JVM, or returns null when there is none
+     * visible to this process.
+     */
+    public static File find(int pid) {
+        File tmp = new File(System.getProperty("java.io.tmpdir"));
+        File[] dirs = tmp.listFiles((dir, name) -> name.startsWith("hsperfdata_"));
+        if (dirs == null) {
+            return null;
+        }
+        for (File d : dirs) {
+            File f = new File(d, String.valueOf(pid));
+            if (f.isFile() && f.canRead()) {
+                return f;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Collects the data offsets of the scalar long counters we need, and the offsets and
+     * capacities of the matrix strings.
+     */
+    private void scanEntries(Map<String, Integer> longs, Map<String, int[]> strings) throws IOException {
+        int used = buf.getInt(PROLOGUE_USED);
+        int entry = buf.getInt(PROLOGUE_ENTRY_OFFSET);
+        int count = buf.getInt(PROLOGUE_NUM_ENTRIES);
+
+        StringBuilder sb = new StringBuilder();
+        for (int e = 0; e < count; e++) {
+            if (entry <= 0 || entry >= used) {
+                throw new IOException("Corrupt hsperfdata entry table at " + entry);
+            }
+            int length = buf.getInt(entry + ENTRY_LENGTH);
+            if (length <= 0) {
+                throw new IOException("Corrupt hsperfdata entry length at " + entry);
+            }
+            byte type = buf.get(entry + ENTRY_DATA_TYPE);
+            int vectorLength = buf.getInt(entry + ENTRY_VECTOR_LEN);
+            if ((type == 'J' && vectorLength == 0) || (type == 'B' && vectorLength > 0)) {
+                sb.setLength(0);
+                for (int p = entry + buf.getInt(entry + ENTRY_NAME_OFFSET); buf.get(p) != 0; p++) {
+                    sb.append((char) buf.get(p));
+                }
+                int data = entry + buf.getInt(entry + ENTRY_DATA_OFFSET);
+                if (type == 'J' && (sb.indexOf(PREFIX) == 0 || FREQUENCY.contentEquals(sb))) {
+                    longs.put(sb.toString(), data);
+                } else if (type == 'B' && sb.indexOf(PREFIX) == 0 && sb.lastIndexOf(MATRIX) == sb.length() - MATRIX.length()) {
+                    strings.put(sb.toString(), new int[] {data, vectorLength});
+                }
+            }
+            entry += length;
+        }
+    }
+
+    private static int require(Map<String, Integer> longs, String name) throws IOException {
+        Integer off = longs.get(name);
+        if (off == null) {
+            throw new IOException("Counter not found in hsperfdata: " + name);
+        }
+        return off;
+    }
+
+    @Override
+    public int maxRegions() {
+        return maxRegions;
+    }
+
+    @Override
+    public long regionSize() {
+        return regionSize;
+    }
+
+    @Override
+    public long frequency() {
+        return frequency;
+    }
+
+    public boolean hasMatrix() {
+        return matrixOffsets != null;
+    }
+
+    /**
+     * Returns the matrix row of region {@code i}, the same instance as last time unless
+     * the bytes in the file changed, so unchanged rows cost a comparison and no
+     * allocation. Must only be called if {@link #hasMatrix()}. Not thread-safe.
+     */
+    public String matrix(int i) {
+        byte[] last = matrixBytes[i];
+        int off = matrixOffsets[i];
+        int len = 0;
+        boolean same = true;
+        while (len < last.length) {
+            byte b = buf.get(off + len);
+            if (b != last[len]) {
+                same = false;
+                last[len] = b;
+            }
+            if (b == 0) {
+                break;
+            }
+            len++;
+        }
+        if (!same) {
+            matrixRows[i] = new String(last, 0, len, StandardCharsets.US_ASCII);
+        }
+        return matrixRows[i];
+    }
+
+    @Override
+    public long timestamp() {
+        return buf.getLong(timestampOffset);
+    }
+
+    @Override
+    public long status() {
+        return buf.getLong(statusOffset);
+    }
+
+    /**
+     * Copies all region data words into {@code dst}, which must hold at least
+     * {@link #maxRegions()} elements. Not thread-safe.
+     */
+    @Override
+    public void read(long[] dst) {
+        if (contiguous != null) {
+            ((Buffer) contiguous).clear();
+            contiguous.get(dst, 0, maxRegions);
+        } else if (stride > 0) {
+            for (int i = 0, off = dataOffsets[0]; i < maxRegions; i++, off += stride) {
+                dst[i] = buf.getLong(off);
+            }
+        } else {
+            for (int i = 0; i < maxRegions; i++) {
+                dst[i] = buf.getLong(dataOffsets[i]);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,33 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.util.BitSet;
+
+/**
+ * Decoded incoming-reference rows, one slot per region. A row is only decoded again
+ * when the encoded string for its region differs from the one decoded last time.
+ * Used from the rendering thread only.
+ */
+final class MatrixCache {
+
+    private final String[] sources;
+    private final BitSet[] rows;
+
+    MatrixCache(int regionCount) {
+        this.sources = new String[regionCount];
+        this.rows = new BitSet[regionCount];
+    }
+
+    BitSet row(int region, String encoded) {
+        if (encoded == null || encoded.isEmpty()) {
+            return null;
+        }
+        String src = sources[region];
+        if (src != encoded && !encoded.equals(src)) {
+            BitSet row = rows[region];
+            rows[region] = RegionStat.decodeMatrix(encoded, row == null ? new BitSet() : row);
+            sources[region] = encoded;
+        }
+        return rows[region];
+    }
+
+}
@@ -0,0 +1,166 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import sun.jvmstat.monitor.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+public class PerfDataProvider implements DataProvider {
+
+    static final String LOCAL_PREFIX = "local://";
+
+    private final int maxRegions;
+    private final long maxSize;
+    private final LongMonitor[] data;
+    private final StringMonitor[] matrix;
+    private final LongMonitor timestamp;
+    private final LongMonitor status;
+    private final MonitoredHost host;
+    private final MonitoredVm vm;
+
+    // Fast path for local JVMs, null when the hsperfdata file cannot be mapped
+    private final MappedRegionCounters mapped;
+
+    private final SnapshotBuilder builder;
+    private final boolean hasMatrix;
+    private volatile boolean matrixEnabled = true;
+
+    // Null when the VM does not publish its timer frequency, every sample then reads the regions
+    private final VmClock clock;
+    private long lastTimestamp;
+    private int lastStatus;
+    private boolean settled;
+    private volatile boolean forceRead = true;
+
+    public PerfDataProvider(String id) throws Exception {
+        host = MonitoredHost.getMonitoredHost(id);
+        vm = host.getMonitoredVm(new VmIdentifier(id));
+        timestamp = (LongMonitor) vm.findByName("sun.gc.shenandoah.regions.timestamp");
+        LongMonitor max_regions_mon = (LongMonitor) vm.findByName("sun.gc.shenandoah.regions.max_regions");
+        maxRegions = (int) max_regions_mon.longValue();
+        LongMonitor max_size_mon = (LongMonitor) vm.findByName("sun.gc.shenandoah.regions.region_size");
+        maxSize = max_size_mon.longValue();
+        status = (LongMonitor) vm.findByName("sun.gc.shenandoah.regions.status");
+        LongMonitor frequency = (LongMonitor) vm.findByName("sun.os.hrt.frequency");
+        clock = frequency != null && frequency.longValue() > 0 ? new VmClock(frequency.longValue()) : null;
+
+        mapped = mapLocal(id, maxRegions);
+        builder = new SnapshotBuilder(maxRegions);
+
+        data = new LongMonitor[maxRegions];
+        matrix = new StringMonitor[maxRegions];
+        boolean anyMatrix = false;
+        for (int i = 0; i < maxRegions; i++) {
+            if (mapped == null) {
+                LongMonitor mon = (LongMonitor) vm.findByName("sun.gc.shenandoah.regions.region." + i + ".data");
+                if (mon != null) {
+                    data[i] = mon;
+                } else {
+                    throw new IllegalStateException("Insufficient shared memory for all region counters. " +
+                            "Try -XX:PerfDataMemorySize=512K or higher when running the monitored program.");
+                }
+            }
+
+            StringMonitor mtrx = (StringMonitor) vm.findByName("sun.gc.shenandoah.regions.region." + i + ".matrix");
+            if (mtrx != null) {
+                matrix[i] = mtrx;
+                anyMatrix = true;
+            }
+        }
+        hasMatrix = anyMatrix;
+    }
+
+    private static MappedRegionCounters mapLocal(String id, int maxRegions) {
+        if (!id.startsWith(LOCAL_PREFIX)) {
+            return null;
+        }
+        try {
+            File file = MappedRegionCounters.find(Integer.parseInt(id.substring(LOCAL_PREFIX.length())));
+            if (file == null) {
+                return null;
+            }
+            MappedRegionCounters counters = new MappedRegionCounters(file);
+            return counters.maxRegions() == maxRegions ? counters : null;
+        } catch (IOException | NumberFormatException e) {
+            // Fall back to the monitor-based path
+            return null;
+        }
+    }
+
+    @Override
+    public Snapshot snapshot() {
+        long now = System.currentTimeMillis();
+        long ts = mapped != null ? mapped.timestamp() : timestamp.longValue();
+        int st = (int) (mapped != null ? mapped.status() : status.longValue());
+
+        // The VM bumps the timestamp before it writes the region words, so the words read
+        // right after a bump may be half updated. Read once more on the next poll, after
+        // that nothing changes until the timestamp moves again.
+        boolean same = clock != null && ts == lastTimestamp && st == lastStatus;
+        if (same && settled && !forceRead) {
+            return null;
+        }
+        settled = same;
+        forceRead = false;
+        lastTimestamp = ts;
+        lastStatus = st;
+
+        Snapshot s = builder.acquire();
+        long[] words = s.data;
+        if (mapped != null) {
+            mapped.read(words);
+        } else {
+            for (int c = 0; c < maxRegions; c++) {
+                words[c] = data[c].longValue();
+            }
+        }
+
+        // The matrix is only read while somebody is going to draw it. The monitors hand out
+        // a new string per row and read, the mapped file only when a row changed.
+        if (hasMatrix && matrixEnabled && mapped != null && mapped.hasMatrix()) {
+            for (int c = 0; c < maxRegions; c++) {
+                s.matrix[c] = mapped.matrix(c);
+            }
+        } else if (hasMatrix && matrixEnabled) {
+            for (int c = 0; c < maxRegions; c++) {
+                StringMonitor mtrx = matrix[c];
+                s.matrix[c] = (mtrx == null ? "" : mtrx.stringValue());
+            }
+        } else {
+            Arrays.fill(s.matrix, null);
+        }
+
+        long vmTime = clock != null ? clock.toWallClock(ts, now) : now;
+        return builder.finish(s, now, vmTime, maxSize, st);
+    }
+
+    @Override
+    public void release(Snapshot s) {
+        builder.release(s);
+    }
+
+    @Override
+    public boolean hasMatrix() {
+        return hasMatrix;
+    }
+
+    @Override
+    public void setMatrixEnabled(boolean enabled) {
+        this.matrixEnabled = enabled;
+        if (enabled) {
+            // The latest snapshot was taken without the matrix
+            forceRead = true;
+        }
+    }
+
+    @Override
+    public void close() {
+        try {
+            host.detach(vm);
+        } catch (MonitorException e) {
+            // Nothing left to clean up on our side
+        }
+    }
+
+}
@@ -0,0 +1,217 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Offscreen {@link Surface} drawing into an {@code int[]} of ARGB pixels, for tests,
+ * benchmarks and batch exports without a display. Text is not drawn.
+ */
+public class RasterSurface implements Surface {
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    private int foreground;
+    private int background = 0xFFFFFF;
+    private int alpha = 255;
+    private int lineWidth = 1;
+
+    public RasterSurface(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.pixels = new int[width * height];
+        clear(0xFFFFFF);
+    }
+
+    public int width() {
+        return width;
+    }
+
+    public int height() {
+        return height;
+    }
+
+    /**
+     * Row-major ARGB pixels, {@code width() * height()} of them.
+     */
+    public int[] pixels() {
+        return pixels;
+    }
+
+    public int pixel(int x, int y) {
+        return pixels[y * width + x];
+    }
+
+    public void clear(int rgb) {
+        Arrays.fill(pixels, 0xFF000000 | rgb);
+    }
+
+    @Override
+    public void setForeground(int rgb) {
+        foreground = rgb;
+    }
+
+    @Override
+    public void setBackground(int rgb) {
+        background = rgb;
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        this.alpha = Math.max(0, Math.min(255, alpha));
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int w, int h) {
+        int x0 = Math.max(0, x);
+        int y0 = Math.max(0, y);
+        int x1 = Math.min(width, x + w);
+        int y1 = Math.min(height, y + h);
+        for (int py = y0; py < y1; py++) {
+            int row = py * width;
+            for (int px = x0; px < x1; px++) {
+                blend(row + px, background);
+            }
+        }
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int w, int h) {
+        drawLine(x, y, x + w, y);
+        drawLine(x, y + h, x + w, y + h);
+        if (h > 1) {
+            drawLine(x, y + 1, x, y + h - 1);
+            drawLine(x + w, y + 1, x + w, y + h - 1);
+        }
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        int dx = Math.abs(x2 - x1);
+        int dy = -Math.abs(y2 - y1);
+        int sx = x1 < x2 ? 1 : -1;
+        int sy = y1 < y2 ? 1 : -1;
+        int err = dx + dy;
+        while (true) {
+            plot(x1, y1);
+            if (x1 == x2 && y1 == y2) {
+                return;
+            }
+            int e2 = 2 * err;
+            if (e2 >= dy) {
+                err += dy;
+                x1 += sx;
+            }
+            if (e2 <= dx) {
+                err += dx;
+                y1 += sy;
+            }
+        }
+    }
+
+    @Override
+    public void setLineWidth(int width) {
+        lineWidth = Math.max(1, width);
+    }
+
+    @Override
+    public void drawLines(float[] points, int count) {
+        for (int i = 0; i < count * 4; i += 4) {
+            drawLine(Math.round(points[i]), Math.round(points[i + 1]), Math.round(points[i + 2]), Math.round(points[i + 3]));
+        }
+    }
+
+    @Override
+    public void drawString(String text, int x, int y) {
+    }
+
+    private void plot(int x, int y) {
+        if (lineWidth == 1) {
+            if (x >= 0 && x < width && y >= 0 && y < height) {
+                blend(y * width + x, foreground);
+            }
+            return;
+        }
+        // Wide lines are stamped with a square pen, overlapping stamps blend more than once
+        int from = -(lineWidth / 2);
+        for (int py = Math.max(0, y + from); py < Math.min(height, y + from + lineWidth); py++) {
+            for (int px = Math.max(0, x + from); px < Math.min(width, x + from + lineWidth); px++) {
+                blend(py * width + px, foreground);
+            }
+        }
+    }
+
+    private void blend(int i, int rgb) {
+        if (alpha == 255) {
+            pixels[i] = 0xFF000000 | rgb;
+            return;
+        }
+        int dst = pixels[i];
+        int r = mix((rgb >> 16) & 0xFF, (dst >> 16) & 0xFF);
+        int g = mix((rgb >> 8) & 0xFF, (dst >> 8) & 0xFF);
+        int b = mix(rgb & 0xFF, dst & 0xFF);
+        pixels[i] = 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    private int mix(int src, int dst) {
+        return (src * alpha + dst * (255 - alpha) + 127) / 255;
+    }
+
+    /**
+     * Writes the pixels as an RGB PNG.
+     */
+    public void writePng(OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.write(PNG_SIGNATURE);
+
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream h = new DataOutputStream(header);
+        h.writeInt(width);
+        h.writeInt(height);
+        h.writeByte(8); // bit depth
+        h.writeByte(2); // truecolor
+        h.writeByte(0); // deflate
+        h.writeByte(0); // adaptive filtering
+        h.writeByte(0); // no interlace
+        writeChunk(data, "IHDR", header.toByteArray());
+
+        ByteArrayOutputStream image = new ByteArrayOutputStream();
+        try (DeflaterOutputStream z = new DeflaterOutputStream(image)) {
+            byte[] row = new byte[1 + width * 3];
+            for (int y = 0; y < height; y++) {
+                int p = 1;
+                for (int x = 0; x < width; x++) {
+                    int c = pixels[y * width + x];
+                    row[p++] = (byte) (c >> 16);
+                    row[p++] = (byte) (c >> 8);
+                    row[p++] = (byte) c;
+                }
+                z.write(row);
+            }
+        }
+        writeChunk(data, "IDAT", image.toByteArray());
+        writeChunk(data, "IEND", new byte[0]);
+        data.flush();
+    }
+
+    private static void writeChunk(DataOutputStream out, String type, byte[] body) throws IOException {
+        byte[] name = type.getBytes("US-ASCII");
+        CRC32 crc = new CRC32();
+        crc.update(name);
+        crc.update(body);
+        out.writeInt(body.length);
+        out.write(name);
+        out.write(body);
+        out.writeInt((int) crc.getValue());
+    }
+
+}
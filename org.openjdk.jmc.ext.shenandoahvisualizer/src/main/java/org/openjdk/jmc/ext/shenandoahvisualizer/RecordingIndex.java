@@ -0,0 +1,227 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Sparse index over a recording: the file offset and time of every keyframe, and
+ * every record where the GC phase changed. All lookups are binary searches, so
+ * seeking and cycle navigation cost O(log n) no matter how long the recording is.
+ * <p>
+ * The index is built while writing and appended to the file when the recording is
+ * closed; if it is missing, the reader rebuilds it from the record headers.
+ */
+public class RecordingIndex {
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private long[] keyTimes = new long[64];
+    private long[] keyOffsets = new long[64];
+    private int keyCount;
+
+    private long[] transitionTimes = new long[64];
+    private long[] transitionOffsets = new long[64];
+    private byte[] transitionPhases = new byte[64];
+    private int transitionCount;
+
+    // Positions into the transition arrays, per phase entered
+    private final int[][] byPhase = new int[PHASES.length][16];
+    private final int[] byPhaseCount = new int[PHASES.length];
+
+    private Phase lastPhase;
+    private long firstTime = -1;
+    private long lastTime = -1;
+
+    void addKeyframe(long time, long offset) {
+        if (keyCount == keyTimes.length) {
+            keyTimes = Arrays.copyOf(keyTimes, keyCount * 2);
+            keyOffsets = Arrays.copyOf(keyOffsets, keyCount * 2);
+        }
+        keyTimes[keyCount] = time;
+        keyOffsets[keyCount] = offset;
+        keyCount++;
+    }
+
+    /**
+     * Notes the phase of a record, remembering it if it differs from the previous one.
+     */
+    void addRecord(long time, long offset, Phase phase) {
+        if (firstTime < 0) {
+            firstTime = time;
+        }
+        lastTime = time;
+        if (phase == lastPhase) {
+            return;
+        }
+        lastPhase = phase;
+        if (transitionCount == transitionTimes.length) {
+            transitionTimes = Arrays.copyOf(transitionTimes, transitionCount * 2);
+            transitionOffsets = Arrays.copyOf(transitionOffsets, transitionCount * 2);
+            transitionPhases = Arrays.copyOf(transitionPhases, transitionCount * 2);
+        }
+        transitionTimes[transitionCount] = time;
+        transitionOffsets[transitionCount] = offset;
+        transitionPhases[transitionCount] = (byte) phase.ordinal();
+
+        int p = phase.ordinal();
+        if (byPhaseCount[p] == byPhase[p].length) {
+            byPhase[p] = Arrays.copyOf(byPhase[p], byPhaseCount[p] * 2);
+        }
+        byPhase[p][byPhaseCount[p]++] = transitionCount;
+        transitionCount++;
+    }
+
+    /**
+     * Time of the first record, or -1 for an empty recording.
+     */
+    public long firstTime() {
+        return firstTime;
+    }
+
+    /**
+     * Time of the last record, or -1 for an empty recording.
+     */
+    public long lastTime() {
+        return lastTime;
+    }
+
+    public int keyframeCount() {
+        return keyCount;
+    }
+
+    public int transitionCount() {
+        return transitionCount;
+    }
+
+    /**
+     * Returns the offset of the last keyframe at or before {@code time}, or of the
+     * first keyframe if {@code time} precedes the recording, or -1 if there is none.
+     */
+    public long keyframeBefore(long time) {
+        if (keyCount == 0) {
+            return -1;
+        }
+        int i = lastAtOrBefore(keyTimes, keyCount, time);
+        return keyOffsets[Math.max(i, 0)];
+    }
+
+    public long transitionTime(int i) {
+        return transitionTimes[i];
+    }
+
+    public long transitionOffset(int i) {
+        return transitionOffsets[i];
+    }
+
+    public Phase transitionPhase(int i) {
+        return PHASES[transitionPhases[i]];
+    }
+
+    /**
+     * Returns the index of the {@code nth} (1-based) transition into {@code phase}
+     * strictly after {@code time}, or -1 if the recording has fewer.
+     */
+    public int nthTransition(Phase phase, long time, int nth) {
+        int p = phase.ordinal();
+        int[] positions = byPhase[p];
+        int count = byPhaseCount[p];
+        // Binary search over the transition times of this phase
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (transitionTimes[positions[mid]] <= time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        int k = lo + nth - 1;
+        return nth > 0 && k < count ? positions[k] : -1;
+    }
+
+    /**
+     * Returns the index of the last transition into {@code phase} strictly before
+     * {@code time}, or -1 if there is none.
+     */
+    public int previousTransition(Phase phase, long time) {
+        int p = phase.ordinal();
+        int[] positions = byPhase[p];
+        int lo = 0, hi = byPhaseCount[p];
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (transitionTimes[positions[mid]] < time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo > 0 ? positions[lo - 1] : -1;
+    }
+
+    /**
+     * Start time of the first GC cycle (marking entered) after {@code time}, or -1.
+     */
+    public long nextCycle(long time) {
+        int i = nthTransition(Phase.MARKING, time, 1);
+        return i < 0 ? -1 : transitionTimes[i];
+    }
+
+    /**
+     * Start time of the last GC cycle (marking entered) before {@code time}, or -1.
+     */
+    public long previousCycle(long time) {
+        int i = previousTransition(Phase.MARKING, time);
+        return i < 0 ? -1 : transitionTimes[i];
+    }
+
+    private static int lastAtOrBefore(long[] times, int count, long time) {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (times[mid] <= time) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo - 1;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeLong(firstTime);
+        out.writeLong(lastTime);
+        out.writeInt(keyCount);
+        for (int i = 0; i < keyCount; i++) {
+            out.writeLong(keyTimes[i]);
+            out.writeLong(keyOffsets[i]);
+        }
+        out.writeInt(transitionCount);
+        for (int i = 0; i < transitionCount; i++) {
+            out.writeLong(transitionTimes[i]);
+            out.writeLong(transitionOffsets[i]);
+            out.writeByte(transitionPhases[i]);
+        }
+    }
+
+    static RecordingIndex read(ByteBuffer in) {
+        RecordingIndex index = new RecordingIndex();
+        long first = in.getLong();
+        long last = in.getLong();
+        int keys = in.getInt();
+        for (int i = 0; i < keys; i++) {
+            index.addKeyframe(in.getLong(), in.getLong());
+        }
+        int transitions = in.getInt();
+        for (int i = 0; i < transitions; i++) {
+            long time = in.getLong();
+            long offset = in.getLong();
+            index.addRecord(time, offset, PHASES[in.get()]);
+        }
+        index.firstTime = first;
+        index.lastTime = last;
+        return index;
+    }
+
+}
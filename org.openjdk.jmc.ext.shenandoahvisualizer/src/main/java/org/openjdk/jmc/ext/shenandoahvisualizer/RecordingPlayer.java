@@ -0,0 +1,146 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.util.Arrays;
+
+/**
+ * Replays a recording as if it was a live JVM. Recording time advances with wall
+ * clock time multiplied by the playback speed; each call to {@link #snapshot()}
+ * returns the last recorded sample at or before the current playback position.
+ */
+public class RecordingPlayer implements DataProvider {
+
+    private final RecordingReader reader;
+    private final SnapshotBuilder builder;
+    private final long startTime;
+    private final long endTime;
+
+    private double speed = 1;
+    // Playback position is anchorTime at wall clock anchorWall
+    private long anchorTime;
+    private long anchorWall;
+
+    public RecordingPlayer(RecordingReader reader) {
+        this.reader = reader;
+        this.builder = new SnapshotBuilder(reader.regionCount());
+        this.startTime = reader.firstTime();
+        this.endTime = reader.lastTime();
+        this.anchorTime = startTime;
+        this.anchorWall = System.currentTimeMillis();
+        reader.rewind();
+        reader.next();
+    }
+
+    public RecordingReader reader() {
+        return reader;
+    }
+
+    public long startTime() {
+        return startTime;
+    }
+
+    public long endTime() {
+        return endTime;
+    }
+
+    public synchronized double speed() {
+        return speed;
+    }
+
+    /**
+     * Changes the playback speed, keeping the current position. A speed of 0 pauses.
+     */
+    public synchronized void setSpeed(double speed) {
+        long now = System.currentTimeMillis();
+        anchorTime = position(now);
+        anchorWall = now;
+        this.speed = Math.max(0, speed);
+    }
+
+    public synchronized void seek(long time) {
+        anchorTime = Math.max(startTime, Math.min(endTime, time));
+        anchorWall = System.currentTimeMillis();
+        reader.seek(anchorTime);
+    }
+
+    /**
+     * Jumps to the {@code nth} transition into {@code phase} after {@code time}, e.g. the
+     * third evacuation after a given wall clock time. Returns false if there is no such one.
+     */
+    public synchronized boolean seekToTransition(Phase phase, long time, int nth) {
+        RecordingIndex index = reader.index();
+        int i = index.nthTransition(phase, time, nth);
+        if (i < 0) {
+            return false;
+        }
+        seek(index.transitionTime(i));
+        return true;
+    }
+
+    /**
+     * Jumps to the start of the next GC cycle after the current position.
+     */
+    public synchronized boolean nextCycle() {
+        long t = reader.index().nextCycle(position());
+        if (t < 0) {
+            return false;
+        }
+        seek(t);
+        return true;
+    }
+
+    /**
+     * Jumps to the start of the GC cycle before the one at the current position.
+     */
+    public synchronized boolean previousCycle() {
+        RecordingIndex index = reader.index();
+        long current = index.previousCycle(position() + 1);
+        long t = current < 0 ? -1 : index.previousCycle(current);
+        if (t < 0) {
+            return false;
+        }
+        seek(t);
+        return true;
+    }
+
+    public synchronized long position() {
+        return position(System.currentTimeMillis());
+    }
+
+    private long position(long now) {
+        return Math.min(endTime, anchorTime + (long) ((now - anchorWall) * speed));
+    }
+
+    @Override
+    public synchronized Snapshot snapshot() {
+        long target = position(System.currentTimeMillis());
+        while (reader.peekTime() <= target) {
+            reader.next();
+        }
+
+        Snapshot s = builder.acquire();
+        System.arraycopy(reader.words(), 0, s.data, 0, reader.regionCount());
+        Arrays.fill(s.matrix, null);
+        return builder.finish(s, reader.time(), reader.time(), reader.regionSize(), reader.status());
+    }
+
+    @Override
+    public void release(Snapshot s) {
+        builder.release(s);
+    }
+
+    @Override
+    public boolean hasMatrix() {
+        // The matrix is not recorded
+        return false;
+    }
+
+    @Override
+    public void setMatrixEnabled(boolean enabled) {
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release, the recording is only mapped
+    }
+
+}
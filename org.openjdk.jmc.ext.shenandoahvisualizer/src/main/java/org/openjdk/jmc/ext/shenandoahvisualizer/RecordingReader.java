@@ -0,0 +1,271 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Memory-maps a file written by {@link RecordingWriter} and decodes it record by
+ * record. A record that was only partially written, e.g. because the visualizer was
+ * killed while recording, ends the recording. Not thread-safe.
+ * <p>
+ * Recordings have no size limit, so the records are mapped one window at a time.
+ * Consecutive windows overlap by the largest record the region count allows, so
+ * every record can be decoded from the window it starts in.
+ */
+public class RecordingReader {
+
+    static final long DEFAULT_WINDOW = 1L << 30;
+
+    private final File file;
+    private final long window;
+    private final int regionCount;
+    private final long regionSize;
+    private final int keyframeInterval;
+    private final long recordsEnd;
+    private final long overlap;
+    private final RecordingIndex index;
+
+    // Mapped part of the file, starting at file offset base
+    private ByteBuffer buf;
+    private long base = -1;
+    private long pos;
+
+    // Words as of the last decoded record
+    private final long[] words;
+    private long time;
+    private int status;
+    private boolean valid;
+
+    public RecordingReader(File file) throws IOException {
+        this(file, DEFAULT_WINDOW);
+    }
+
+    RecordingReader(File file, long window) throws IOException {
+        this.file = file;
+        this.window = window;
+        long size;
+        ByteBuffer header;
+        ByteBuffer footer = null;
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            size = ch.size();
+            if (size < RecordingWriter.HEADER_SIZE) {
+                throw new IOException("Not a region recording: " + file);
+            }
+            header = read(ch, 0, RecordingWriter.HEADER_SIZE);
+            if (size >= RecordingWriter.HEADER_SIZE + RecordingWriter.FOOTER_SIZE) {
+                footer = read(ch, size - RecordingWriter.FOOTER_SIZE, RecordingWriter.FOOTER_SIZE);
+            }
+            if (header.getInt(0) != RecordingWriter.MAGIC) {
+                throw new IOException("Not a region recording: " + file);
+            }
+            if (header.getInt(4) != RecordingWriter.VERSION) {
+                throw new IOException("Unsupported recording version: " + header.getInt(4));
+            }
+            regionCount = header.getInt(8);
+            regionSize = header.getLong(12);
+            keyframeInterval = header.getInt(20);
+            words = new long[regionCount];
+            overlap = maxRecordSize(regionCount);
+
+            int indexLength = footer != null && footer.getLong(4) == RecordingWriter.INDEX_MAGIC ? footer.getInt(0) : -1;
+            if (indexLength >= 0 && indexLength <= size - RecordingWriter.HEADER_SIZE - RecordingWriter.FOOTER_SIZE) {
+                recordsEnd = size - RecordingWriter.FOOTER_SIZE - indexLength;
+                index = RecordingIndex.read(read(ch, recordsEnd, indexLength));
+            } else {
+                // Not closed properly, rebuild the index from the record headers
+                recordsEnd = size;
+                index = scan();
+            }
+        }
+        rewind();
+    }
+
+    private static ByteBuffer read(FileChannel ch, long position, int length) throws IOException {
+        ByteBuffer in = ByteBuffer.allocate(length);
+        while (in.hasRemaining()) {
+            if (ch.read(in, position + in.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+        ((Buffer) in).flip();
+        return in;
+    }
+
+    /**
+     * Upper bound of a record holding {@code regionCount} regions: a keyframe, or a
+     * delta with every region changed and the widest varints.
+     */
+    static long maxRecordSize(int regionCount) {
+        return RecordingWriter.RECORD_HEADER_SIZE + RecordingWriter.PAYLOAD_PREFIX_SIZE + 10 + 15L * regionCount;
+    }
+
+    /**
+     * Maps the window holding {@code position} unless it is mapped already, and returns
+     * the buffer positioned there.
+     */
+    private ByteBuffer at(long position) {
+        if (base < 0 || position < base || position >= base + window) {
+            long start = position - position % window;
+            long length = Math.min(recordsEnd - start, window + overlap);
+            try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                buf = ch.map(FileChannel.MapMode.READ_ONLY, start, length);
+            } catch (IOException e) {
+                throw new IllegalStateException("Mapping " + file + " at " + start + " failed", e);
+            }
+            base = start;
+        }
+        ((Buffer) buf).position((int) (position - base));
+        return buf;
+    }
+
+    public File file() {
+        return file;
+    }
+
+    public int regionCount() {
+        return regionCount;
+    }
+
+    public long regionSize() {
+        return regionSize;
+    }
+
+    public int keyframeInterval() {
+        return keyframeInterval;
+    }
+
+    private RecordingIndex scan() {
+        RecordingIndex result = new RecordingIndex();
+        long p = RecordingWriter.HEADER_SIZE;
+        int length;
+        while ((length = recordLength(p)) >= 0) {
+            ByteBuffer in = at(p);
+            byte type = in.get();
+            ((Buffer) in).position(in.position() + 4);
+            long t = in.getLong();
+            int st = in.getInt();
+            if (type == FrameCodec.KEYFRAME) {
+                result.addKeyframe(t, p);
+            }
+            result.addRecord(t, p, Snapshot.toPhase(st));
+            p += RecordingWriter.RECORD_HEADER_SIZE + length;
+        }
+        return result;
+    }
+
+    public RecordingIndex index() {
+        return index;
+    }
+
+    /**
+     * Positions the reader before the first record.
+     */
+    public void rewind() {
+        pos = RecordingWriter.HEADER_SIZE;
+        valid = false;
+    }
+
+    public long position() {
+        return pos;
+    }
+
+    /**
+     * Decodes the next record. Returns false, leaving the current words untouched,
+     * when there is none.
+     */
+    public boolean next() {
+        int length = recordLength(pos);
+        if (length < 0) {
+            return false;
+        }
+        ByteBuffer in = at(pos);
+        byte type = in.get();
+        if (type == FrameCodec.DELTA && !valid) {
+            // Can only happen after seeking to an arbitrary position
+            throw new IllegalStateException("Delta record without preceding keyframe at " + pos);
+        }
+        ((Buffer) in).position(in.position() + 4);
+        time = in.getLong();
+        status = in.getInt();
+        if (type == FrameCodec.KEYFRAME) {
+            FrameCodec.readKeyframe(in, words, regionCount);
+        } else {
+            FrameCodec.readDelta(in, words);
+        }
+        pos += RecordingWriter.RECORD_HEADER_SIZE + length;
+        valid = true;
+        return true;
+    }
+
+    /**
+     * Returns the time of the record {@link #next()} would decode, or
+     * {@link Long#MAX_VALUE} at the end of the recording.
+     */
+    public long peekTime() {
+        if (recordLength(pos) < 0) {
+            return Long.MAX_VALUE;
+        }
+        ByteBuffer in = at(pos);
+        return in.getLong(in.position() + RecordingWriter.RECORD_HEADER_SIZE);
+    }
+
+    /**
+     * Decodes the recording up to the last record at or before {@code target}, starting
+     * from the closest keyframe found through the index.
+     */
+    public void seek(long target) {
+        long key = index.keyframeBefore(target);
+        seekFrom(key < 0 ? RecordingWriter.HEADER_SIZE : key, target);
+    }
+
+    void seekFrom(long keyframe, long target) {
+        pos = keyframe;
+        valid = false;
+        next();
+        // peekTime() is Long.MAX_VALUE past the last record, which a target may be too
+        while (peekTime() <= target && next()) {
+        }
+    }
+
+    /**
+     * Payload length of the record at {@code position}, or -1 if there is no complete record.
+     */
+    int recordLength(long position) {
+        if (position + RecordingWriter.RECORD_HEADER_SIZE + RecordingWriter.PAYLOAD_PREFIX_SIZE > recordsEnd) {
+            return -1;
+        }
+        ByteBuffer in = at(position);
+        int length = in.getInt(in.position() + 1);
+        if (length < RecordingWriter.PAYLOAD_PREFIX_SIZE || length > overlap
+                || position + RecordingWriter.RECORD_HEADER_SIZE + length > recordsEnd) {
+            return -1;
+        }
+        return length;
+    }
+
+    public long firstTime() {
+        return Math.max(0, index.firstTime());
+    }
+
+    public long lastTime() {
+        return Math.max(0, index.lastTime());
+    }
+
+    public long time() {
+        return time;
+    }
+
+    public int status() {
+        return status;
+    }
+
+    public long[] words() {
+        return words;
+    }
+
+}
@@ -0,0 +1,151 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Streams every sample into an append-only recording file.
+ * <p>
+ * The file starts with a header (magic, version, region count, region size,
+ * keyframe interval), followed by one record per sample: a type byte, the payload
+ * length, then the payload itself, which always starts with the time the VM
+ * published the sample and the raw GC status so that both can be read without
+ * decoding the region words.
+ * Every {@code keyframeInterval} records the full set of words is written,
+ * in between only the deltas, see {@link FrameCodec}. Closing the writer appends
+ * the {@link RecordingIndex}, followed by its length and {@link #INDEX_MAGIC}.
+ */
+public class RecordingWriter {
+
+    static final int MAGIC = 0x53485256; // "SHRV"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    static final long INDEX_MAGIC = 0x5348525649445800L; // "SHRVIDX\0"
+    // index length + index magic
+    static final int FOOTER_SIZE = 12;
+
+    // type byte + payload length
+    static final int RECORD_HEADER_SIZE = 5;
+    // time + status, at the start of every payload
+    static final int PAYLOAD_PREFIX_SIZE = 12;
+
+    public static final int DEFAULT_KEYFRAME_INTERVAL = 100;
+
+    private final File file;
+    private final DataOutputStream out;
+    private final int regionCount;
+    private final int keyframeInterval;
+    private final long[] previous;
+
+    private final ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+    private final DataOutputStream payload = new DataOutputStream(payloadBytes);
+
+    private final RecordingIndex index = new RecordingIndex();
+    private long offset;
+
+    private int sinceKeyframe;
+    private long records;
+    private boolean closed;
+
+    public RecordingWriter(File file, int regionCount, long regionSize) throws IOException {
+        this(file, regionCount, regionSize, DEFAULT_KEYFRAME_INTERVAL);
+    }
+
+    public RecordingWriter(File file, int regionCount, long regionSize, int keyframeInterval) throws IOException {
+        this.file = file;
+        this.regionCount = regionCount;
+        this.keyframeInterval = Math.max(1, keyframeInterval);
+        this.previous = new long[regionCount];
+        this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(regionCount);
+        out.writeLong(regionSize);
+        out.writeInt(this.keyframeInterval);
+        offset = HEADER_SIZE;
+    }
+
+    public File file() {
+        return file;
+    }
+
+    public synchronized long records() {
+        return records;
+    }
+
+    /**
+     * Appends a sample. The first sample and every {@code keyframeInterval}-th
+     * one after it are written as keyframes. Samples arriving after {@link #close()}
+     * are ignored.
+     */
+    public synchronized void write(Snapshot s) throws IOException {
+        if (closed) {
+            return;
+        }
+        if (s.regionCount() != regionCount) {
+            throw new IOException("Region count changed from " + regionCount + " to " + s.regionCount());
+        }
+
+        boolean key = records == 0 || sinceKeyframe >= keyframeInterval;
+
+        payloadBytes.reset();
+        payload.writeLong(s.vmTime());
+        payload.writeInt(statusOf(s.phase()));
+        if (key) {
+            FrameCodec.writeKeyframe(payload, s.data, previous, regionCount);
+            sinceKeyframe = 1;
+        } else {
+            FrameCodec.writeDelta(payload, s.data, previous, s.changed);
+            sinceKeyframe++;
+        }
+
+        if (key) {
+            index.addKeyframe(s.vmTime(), offset);
+        }
+        index.addRecord(s.vmTime(), offset, s.phase());
+
+        out.writeByte(key ? FrameCodec.KEYFRAME : FrameCodec.DELTA);
+        out.writeInt(payloadBytes.size());
+        payloadBytes.writeTo(out);
+        offset += RECORD_HEADER_SIZE + payloadBytes.size();
+        records++;
+    }
+
+    static int statusOf(Phase phase) {
+        switch (phase) {
+            case IDLE:
+                return 0x0;
+            case MARKING:
+                return 0x1;
+            case EVACUATING:
+                return 0x2;
+            case UPDATE_REFS:
+                return 0x4;
+            case TRAVERSAL:
+                return 0x8;
+            default:
+                return -1;
+        }
+    }
+
+    public synchronized void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            try {
+                payloadBytes.reset();
+                index.write(payload);
+                payloadBytes.writeTo(out);
+                out.writeInt(payloadBytes.size());
+                out.writeLong(INDEX_MAGIC);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+}
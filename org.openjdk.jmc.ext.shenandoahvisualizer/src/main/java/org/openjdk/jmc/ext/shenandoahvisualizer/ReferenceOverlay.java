@@ -0,0 +1,206 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Draws the incoming-reference edges between regions on top of the region map.
+ * Only set bits of the matrix rows are visited. Small edge sets are drawn as
+ * individual lines batched into a single draw call; larger ones are collapsed into
+ * bundles between blocks of neighbouring regions, drawn thicker the more edges
+ * they carry.
+ */
+public class ReferenceOverlay {
+
+    public static final int DEFAULT_EDGE_BUDGET = 10_000;
+    public static final int DEFAULT_BUNDLE_THRESHOLD = 2_000;
+
+    // Upper bound on blocks per side of the bundle matrix
+    private static final int MAX_BLOCKS = 64;
+    private static final int MAX_LINE_WIDTH = 8;
+    private static final int BUNDLE_ALPHA = 160;
+
+    private int edgeBudget = DEFAULT_EDGE_BUDGET;
+    private int bundleThreshold = DEFAULT_BUNDLE_THRESHOLD;
+
+    private int[] weights = new int[0];
+    // Line end points, batched per line width and reused from frame to frame
+    private final float[][] lines = new float[MAX_LINE_WIDTH][64];
+
+    private int lastEdges;
+    private int lastDrawn;
+    private boolean lastBundled;
+
+    public int edgeBudget() {
+        return edgeBudget;
+    }
+
+    /**
+     * Sets the maximum number of lines (edges or bundles) drawn per frame.
+     */
+    public void setEdgeBudget(int edgeBudget) {
+        this.edgeBudget = Math.max(1, edgeBudget);
+    }
+
+    public int bundleThreshold() {
+        return bundleThreshold;
+    }
+
+    /**
+     * Sets the number of edges above which edges are drawn as block-to-block bundles.
+     */
+    public void setBundleThreshold(int bundleThreshold) {
+        this.bundleThreshold = Math.max(0, bundleThreshold);
+    }
+
+    public int lastEdgeCount() {
+        return lastEdges;
+    }
+
+    public int lastDrawnCount() {
+        return lastDrawn;
+    }
+
+    public boolean lastBundled() {
+        return lastBundled;
+    }
+
+    public void render(Surface g, Snapshot s, int cols, int sqSize) {
+        int regions = s.regionCount();
+        int edges = 0;
+        for (int f = 0; f < regions; f++) {
+            BitSet bs = s.incoming(f);
+            if (bs != null) {
+                edges += bs.cardinality();
+            }
+        }
+        lastEdges = edges;
+        lastDrawn = 0;
+        lastBundled = edges > bundleThreshold;
+        if (edges == 0) {
+            return;
+        }
+
+        g.setForeground(Colors.REFERENCE);
+        if (lastBundled) {
+            renderBundles(g, s, cols, sqSize);
+        } else {
+            renderEdges(g, s, cols, sqSize);
+        }
+    }
+
+    private void renderEdges(Surface g, Snapshot s, int cols, int sqSize) {
+        int regions = s.regionCount();
+        int drawn = 0;
+        float[] line = lines[0];
+        outer:
+        for (int f = 0; f < regions; f++) {
+            BitSet bs = s.incoming(f);
+            if (bs == null) {
+                continue;
+            }
+            float fx = centerX(f, cols, sqSize);
+            float fy = centerY(f, cols, sqSize);
+            for (int t = bs.nextSetBit(0); t >= 0 && t < regions; t = bs.nextSetBit(t + 1)) {
+                if (drawn == edgeBudget) {
+                    break outer;
+                }
+                line = add(0, drawn, fx, fy, centerX(t, cols, sqSize), centerY(t, cols, sqSize));
+                drawn++;
+            }
+        }
+        g.setLineWidth(1);
+        g.drawLines(line, drawn);
+        lastDrawn = drawn;
+    }
+
+    private void renderBundles(Surface g, Snapshot s, int cols, int sqSize) {
+        int regions = s.regionCount();
+        int blockSize = (regions + MAX_BLOCKS - 1) / MAX_BLOCKS;
+        int blocks = (regions + blockSize - 1) / blockSize;
+
+        int cells = blocks * blocks;
+        if (weights.length < cells) {
+            weights = new int[cells];
+        } else {
+            Arrays.fill(weights, 0, cells, 0);
+        }
+
+        int max = 0;
+        for (int f = 0; f < regions; f++) {
+            BitSet bs = s.incoming(f);
+            if (bs == null) {
+                continue;
+            }
+            int row = (f / blockSize) * blocks;
+            for (int t = bs.nextSetBit(0); t >= 0 && t < regions; t = bs.nextSetBit(t + 1)) {
+                int w = ++weights[row + t / blockSize];
+                if (w > max) {
+                    max = w;
+                }
+            }
+        }
+
+        // One batch per line width, so the whole overlay is at most MAX_LINE_WIDTH draw calls
+        int[] counts = new int[MAX_LINE_WIDTH];
+        double scale = (MAX_LINE_WIDTH - 1) / Math.log(max + 1);
+        int drawn = 0;
+        outer:
+        for (int fb = 0; fb < blocks; fb++) {
+            for (int tb = 0; tb < blocks; tb++) {
+                int w = weights[fb * blocks + tb];
+                if (w == 0) {
+                    continue;
+                }
+                if (drawn == edgeBudget) {
+                    break outer;
+                }
+                int width = (int) (Math.log(w) * scale);
+                int from = blockCenter(fb, blockSize, regions);
+                int to = blockCenter(tb, blockSize, regions);
+                add(width, counts[width]++, centerX(from, cols, sqSize), centerY(from, cols, sqSize),
+                        centerX(to, cols, sqSize), centerY(to, cols, sqSize));
+                drawn++;
+            }
+        }
+        g.setAlpha(BUNDLE_ALPHA);
+        for (int i = 0; i < MAX_LINE_WIDTH; i++) {
+            if (counts[i] > 0) {
+                g.setLineWidth(i + 1);
+                g.drawLines(lines[i], counts[i]);
+            }
+        }
+        g.setAlpha(255);
+        g.setLineWidth(1);
+        lastDrawn = drawn;
+    }
+
+    /**
+     * Stores line {@code n} of the batch for {@code width}, growing it as needed.
+     */
+    private float[] add(int width, int n, float x1, float y1, float x2, float y2) {
+        float[] line = lines[width];
+        int i = n * 4;
+        if (line.length < i + 4) {
+            line = lines[width] = Arrays.copyOf(line, Math.max(i + 4, line.length * 2));
+        }
+        line[i] = x1;
+        line[i + 1] = y1;
+        line[i + 2] = x2;
+        line[i + 3] = y2;
+        return line;
+    }
+
+    private static int blockCenter(int block, int blockSize, int regions) {
+        return Math.min(block * blockSize + blockSize / 2, regions - 1);
+    }
+
+    private static float centerX(int region, int cols, int sqSize) {
+        return (region % cols + 0.5f) * sqSize;
+    }
+
+    private static float centerY(int region, int cols, int sqSize) {
+        return (region / cols + 0.5f) * sqSize;
+    }
+
+}
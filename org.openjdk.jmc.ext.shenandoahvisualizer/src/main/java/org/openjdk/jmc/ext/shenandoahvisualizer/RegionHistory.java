@@ -0,0 +1,227 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.util.Arrays;
+
+/**
+ * Rolling statistics per region, one primitive array per statistic indexed by region
+ * number: allocation churn, how often the region was in the collection set, when its
+ * state last changed and its live ratio at the end of the last few cycles. Only the
+ * regions in a snapshot's change set are touched, so folding in a sample costs
+ * O(changed regions). Time dependent values decay when they are read. Accessed from
+ * the UI thread only.
+ */
+public class RegionHistory {
+
+    /**
+     * What the region map is colored by.
+     */
+    public enum Mode {
+        STATE("State"),
+        CHURN("Allocation Churn"),
+        CSET_COUNT("Collection Set Count"),
+        AGE("Time Since Change"),
+        LIVE_TREND("Live Trend"),
+        ;
+
+        private final String label;
+
+        Mode(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+
+        /**
+         * True if the colors of regions that did not change drift anyway, with time or
+         * with the scale set by other regions, so the map needs a full repaint now and then.
+         */
+        public boolean drifts() {
+            return this == CHURN || this == AGE || this == CSET_COUNT;
+        }
+    }
+
+    // Cycles the live trend looks back
+    public static final int TREND_CYCLES = 8;
+
+    // Churn halves every CHURN_HALF_LIFE ms, and is full scale at CHURN_SCALE percent of a region
+    private static final double CHURN_HALF_LIFE = 10_000;
+    private static final double CHURN_SCALE = 1000;
+    // Regions that changed within AGE_SCALE ms are hottest, log scale beyond
+    private static final double AGE_SCALE = 10 * 60_000;
+
+    private static final int[] HEAT = new int[256];
+    private static final int[] TREND = new int[256];
+
+    static {
+        for (int l = 0; l < 256; l++) {
+            // White over yellow to red
+            HEAT[l] = l < 128 ? 0xFFFF00 | (255 - 2 * l) : 0xFF0000 | ((255 - l) * 2 << 8);
+            // Blue for dying, white for steady, red for growing
+            int d = Math.abs(l - 128) * 2;
+            TREND[l] = l < 128 ? ((255 - d) << 16) | ((255 - d) << 8) | 0xFF : 0xFF0000 | ((255 - d) << 8) | (255 - d);
+        }
+    }
+
+    private final int regionCount;
+    private final long[] lastWord;
+    private final double[] churn;
+    private final long[] churnTime;
+    private final int[] csetCount;
+    private final long[] lastChange;
+    // Live ratio in percent per region and cycle, a ring of TREND_CYCLES per region
+    private final byte[] liveRatios;
+    private final long[] liveCycle;
+    private final byte[] liveHead;
+    private final byte[] liveCount;
+    private int maxCsetCount;
+    // False until a snapshot set the baseline lastWord is compared against
+    private boolean seeded;
+
+    public RegionHistory(int regionCount) {
+        this.regionCount = regionCount;
+        lastWord = new long[regionCount];
+        churn = new double[regionCount];
+        churnTime = new long[regionCount];
+        csetCount = new int[regionCount];
+        lastChange = new long[regionCount];
+        liveRatios = new byte[regionCount * TREND_CYCLES];
+        liveCycle = new long[regionCount];
+        liveHead = new byte[regionCount];
+        liveCount = new byte[regionCount];
+    }
+
+    public int regionCount() {
+        return regionCount;
+    }
+
+    /**
+     * Folds in the regions that changed in {@code s}. {@code cycle} is the number of
+     * completed cycles, live ratios are kept per cycle. The first snapshot after creation
+     * or {@link #clear()} only records every region as it is, since the heap it lands in
+     * is usually populated already.
+     */
+    public void update(Snapshot s, long cycle) {
+        if (!seeded) {
+            for (int i = 0; i < regionCount; i++) {
+                lastWord[i] = s.data(i);
+            }
+            seeded = true;
+            return;
+        }
+        long now = s.vmTime();
+        for (int i = s.nextChanged(0); i >= 0; i = s.nextChanged(i + 1)) {
+            long before = lastWord[i];
+            long after = s.data(i);
+            lastWord[i] = after;
+
+            int grown = RegionStat.usedPercent(after) - RegionStat.usedPercent(before);
+            if (grown > 0) {
+                churn[i] = churn(i, now) + grown;
+                churnTime[i] = now;
+            }
+
+            RegionState from = RegionStat.state(before);
+            RegionState to = RegionStat.state(after);
+            if (from != to) {
+                lastChange[i] = now;
+                if (isCset(to) && !isCset(from)) {
+                    maxCsetCount = Math.max(maxCsetCount, ++csetCount[i]);
+                }
+            }
+
+            int live = RegionStat.livePercent(after);
+            if (live != RegionStat.livePercent(before)) {
+                int used = RegionStat.usedPercent(after);
+                recordLive(i, cycle, used == 0 ? 0 : Math.min(100, live * 100 / used));
+            }
+        }
+    }
+
+    private static boolean isCset(RegionState state) {
+        return state == RegionState.CSET || state == RegionState.PINNED_CSET;
+    }
+
+    /**
+     * Keeps the latest live ratio of every cycle, overwriting the one of the current cycle.
+     */
+    private void recordLive(int i, long cycle, int ratio) {
+        int count = liveCount[i];
+        if (count == 0 || liveCycle[i] != cycle) {
+            liveCycle[i] = cycle;
+            liveHead[i] = (byte) ((liveHead[i] + 1) % TREND_CYCLES);
+            if (count < TREND_CYCLES) {
+                liveCount[i] = (byte) (count + 1);
+            }
+        }
+        liveRatios[i * TREND_CYCLES + liveHead[i]] = (byte) ratio;
+    }
+
+    public void clear() {
+        Arrays.fill(churn, 0D);
+        Arrays.fill(csetCount, 0);
+        Arrays.fill(lastChange, 0L);
+        Arrays.fill(liveCount, (byte) 0);
+        maxCsetCount = 0;
+        seeded = false;
+    }
+
+    /**
+     * Percent of the region allocated recently, decayed to {@code now}.
+     */
+    public double churn(int i, long now) {
+        double c = churn[i];
+        return c == 0 ? 0 : c * Math.pow(0.5, Math.max(0, now - churnTime[i]) / CHURN_HALF_LIFE);
+    }
+
+    public int csetCount(int i) {
+        return csetCount[i];
+    }
+
+    /**
+     * Milliseconds since the state of the region changed, -1 if it never did.
+     */
+    public long timeSinceChange(int i, long now) {
+        return lastChange[i] == 0 ? -1 : Math.max(0, now - lastChange[i]);
+    }
+
+    /**
+     * Change of the live ratio, in percentage points, from the oldest to the newest of
+     * the last {@link #TREND_CYCLES} cycles the region was marked in.
+     */
+    public int liveTrend(int i) {
+        int count = liveCount[i];
+        if (count < 2) {
+            return 0;
+        }
+        int newest = liveHead[i];
+        int oldest = (newest - count + 1 + TREND_CYCLES) % TREND_CYCLES;
+        return liveRatios[i * TREND_CYCLES + newest] - liveRatios[i * TREND_CYCLES + oldest];
+    }
+
+    /**
+     * Color of region {@code i} in {@code mode} at {@code now}, as 0xRRGGBB.
+     */
+    public int color(int i, Mode mode, long now) {
+        switch (mode) {
+            case CHURN:
+                return HEAT[level(Math.log1p(churn(i, now)) / Math.log1p(CHURN_SCALE))];
+            case CSET_COUNT:
+                return HEAT[maxCsetCount == 0 ? 0 : level(1D * csetCount[i] / maxCsetCount)];
+            case AGE: {
+                long age = timeSinceChange(i, now);
+                return HEAT[age < 0 ? 0 : level(1 - Math.log1p(age) / Math.log1p(AGE_SCALE))];
+            }
+            case LIVE_TREND:
+                return TREND[level((liveTrend(i) + 100) / 200D)];
+            default:
+                return Colors.WHITE;
+        }
+    }
+
+    private static int level(double fraction) {
+        return (int) Math.round(Math.max(0, Math.min(1, fraction)) * 255);
+    }
+
+}
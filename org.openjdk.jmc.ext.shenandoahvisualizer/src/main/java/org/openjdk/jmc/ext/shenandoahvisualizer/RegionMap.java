@@ -0,0 +1,88 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+/**
+ * Lays out regions as a grid of square cells filling a {@code width} by {@code height}
+ * area, row by row, and paints them onto a {@link Surface}.
+ */
+public final class RegionMap {
+
+    private RegionMap() {
+    }
+
+    /**
+     * Distance between the origins of neighbouring cells, in pixels.
+     */
+    public static int pitch(int width, int height, int regionCount) {
+        return Math.max(1, (int) Math.sqrt(1D * width * height / regionCount));
+    }
+
+    public static int columns(int width, int pitch) {
+        return Math.max(1, width / pitch);
+    }
+
+    /**
+     * Paints all regions of {@code s}.
+     */
+    public static void render(Surface g, Snapshot s, int width, int height) {
+        render(g, s, width, height, null, RegionHistory.Mode.STATE, 0L);
+    }
+
+    /**
+     * Paints all regions of {@code s}, colored by {@code mode} of {@code heat} at {@code now}
+     * unless the mode is {@link RegionHistory.Mode#STATE}.
+     */
+    public static void render(Surface g, Snapshot s, int width, int height,
+                              RegionHistory heat, RegionHistory.Mode mode, long now) {
+        int pitch = pitch(width, height, s.regionCount());
+        int cols = columns(width, pitch);
+        for (int i = 0; i < s.regionCount(); i++) {
+            renderCell(g, s, i, cols, pitch, heat, mode, now);
+        }
+    }
+
+    /**
+     * Paints the regions whose bit is set in {@code regions} and clears the bits.
+     */
+    public static void render(Surface g, Snapshot s, int width, int height, long[] regions) {
+        render(g, s, width, height, regions, null, RegionHistory.Mode.STATE, 0L);
+    }
+
+    /**
+     * Paints the regions whose bit is set in {@code regions} like
+     * {@link #render(Surface, Snapshot, int, int, RegionHistory, RegionHistory.Mode, long)}
+     * and clears the bits.
+     */
+    public static void render(Surface g, Snapshot s, int width, int height, long[] regions,
+                              RegionHistory heat, RegionHistory.Mode mode, long now) {
+        int pitch = pitch(width, height, s.regionCount());
+        int cols = columns(width, pitch);
+        for (int w = 0; w < regions.length; w++) {
+            long bits = regions[w];
+            regions[w] = 0L;
+            while (bits != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (i >= s.regionCount()) {
+                    break;
+                }
+                renderCell(g, s, i, cols, pitch, heat, mode, now);
+            }
+        }
+    }
+
+    private static void renderCell(Surface g, Snapshot s, int i, int cols, int pitch,
+                                   RegionHistory heat, RegionHistory.Mode mode, long now) {
+        int cellSize = pitch - 2;
+        int x = (i % cols) * pitch;
+        int y = (i / cols) * pitch;
+        if (mode == RegionHistory.Mode.STATE || heat == null || i >= heat.regionCount()) {
+            s.get(i).render(g, x, y, cellSize, cellSize);
+            return;
+        }
+        g.setBackground(heat.color(i, mode, now));
+        g.fillRectangle(x, y, cellSize, cellSize);
+        g.setForeground(Colors.BORDER);
+        g.drawRectangle(x, y, cellSize, cellSize);
+    }
+
+}
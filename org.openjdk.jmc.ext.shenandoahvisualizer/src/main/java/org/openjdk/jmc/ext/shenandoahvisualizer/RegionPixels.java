@@ -0,0 +1,334 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.util.Arrays;
+
+import static org.openjdk.jmc.ext.shenandoahvisualizer.Colors.*;
+
+/**
+ * Paints the region grid of {@link RegionMap} straight into a 24 bit RGB pixel buffer,
+ * such as the data of an SWT {@code ImageData} with a direct {@code 0xFF0000, 0xFF00, 0xFF}
+ * palette. Meant for fine grids, where a few GC calls per cell cost more than the cell:
+ * all rows between the top and bottom border of a cell are the same, so one row is
+ * built from precomputed level widths and copied to the others. Cells of 3 pixels and
+ * more come out exactly as {@link RegionStat#render} draws them on a {@link RasterSurface};
+ * smaller cells have no room for borders and are filled with the cell contents instead.
+ * Larger cells should go through {@link RegionStat#render}.
+ */
+public final class RegionPixels {
+
+    /**
+     * Cells with at least this pitch are drawn as vectors, with borders.
+     */
+    public static final int VECTOR_PITCH = 10;
+
+    private static final int LEVELS = 128;
+
+    private final byte[] data;
+    private final int bytesPerLine;
+    private final int width;
+    private final int height;
+
+    // Layout the tables below were built for
+    private int regionCount = -1;
+    private int pitch;
+    private int columns;
+    private boolean bordered;
+    // Inside of a cell, and the pixels it covers with its border
+    private int inner;
+    private int cell;
+    // Pixels covered by a level of 0 to 127 percent, rounded like RegionStat#render
+    private final int[] levelWidth = new int[LEVELS];
+    private int[] line = new int[0];
+    private byte[] row = new byte[0];
+    private byte[] borderRow = new byte[0];
+
+    // Bounds of the pixels painted since the last call to takeDirty, empty if x0 >= x1
+    private int dirtyX0 = Integer.MAX_VALUE;
+    private int dirtyY0 = Integer.MAX_VALUE;
+    private int dirtyX1;
+    private int dirtyY1;
+
+    public RegionPixels(byte[] data, int bytesPerLine, int width, int height) {
+        this.data = data;
+        this.bytesPerLine = bytesPerLine;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * True if a grid with this pitch is better drawn into pixels than through a {@link Surface}.
+     */
+    public static boolean suits(int pitch) {
+        return pitch < VECTOR_PITCH;
+    }
+
+    public boolean paintsInto(byte[] data) {
+        return this.data == data;
+    }
+
+    /**
+     * Clears the buffer and paints all regions of {@code s}.
+     */
+    public void render(Snapshot s) {
+        render(s, null, RegionHistory.Mode.STATE, 0L);
+    }
+
+    /**
+     * Clears the buffer and paints all regions of {@code s}, colored by {@code mode} of
+     * {@code heat} at {@code now} unless the mode is {@link RegionHistory.Mode#STATE}.
+     */
+    public void render(Snapshot s, RegionHistory heat, RegionHistory.Mode mode, long now) {
+        layout(s.regionCount());
+        Arrays.fill(data, (byte) 0xFF);
+        for (int i = 0; i < s.regionCount(); i++) {
+            renderCell(s, i, heat, mode, now);
+        }
+        touch(0, 0, width, height);
+    }
+
+    /**
+     * Stores the bounds of the pixels painted since the last call in {@code bounds}, as
+     * x, y, width and height, and forgets them. Returns false if nothing was painted.
+     */
+    public boolean takeDirty(int[] bounds) {
+        if (dirtyX0 >= dirtyX1) {
+            return false;
+        }
+        bounds[0] = dirtyX0;
+        bounds[1] = dirtyY0;
+        bounds[2] = dirtyX1 - dirtyX0;
+        bounds[3] = dirtyY1 - dirtyY0;
+        dirtyX0 = Integer.MAX_VALUE;
+        dirtyY0 = Integer.MAX_VALUE;
+        dirtyX1 = 0;
+        dirtyY1 = 0;
+        return true;
+    }
+
+    private void touch(int x, int y, int w, int h) {
+        dirtyX0 = Math.min(dirtyX0, x);
+        dirtyY0 = Math.min(dirtyY0, y);
+        dirtyX1 = Math.max(dirtyX1, x + w);
+        dirtyY1 = Math.max(dirtyY1, y + h);
+    }
+
+    /**
+     * Paints the regions whose bit is set in {@code regions} and clears the bits. Returns
+     * the number of regions painted.
+     */
+    public int render(Snapshot s, long[] regions) {
+        return render(s, regions, null, RegionHistory.Mode.STATE, 0L);
+    }
+
+    /**
+     * Paints the regions whose bit is set in {@code regions} like
+     * {@link #render(Snapshot, RegionHistory, RegionHistory.Mode, long)} and clears the bits.
+     * Returns the number of regions painted.
+     */
+    public int render(Snapshot s, long[] regions, RegionHistory heat, RegionHistory.Mode mode, long now) {
+        layout(s.regionCount());
+        int painted = 0;
+        for (int w = 0; w < regions.length; w++) {
+            long bits = regions[w];
+            regions[w] = 0L;
+            while (bits != 0) {
+                int i = (w << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                if (i >= s.regionCount()) {
+                    break;
+                }
+                renderCell(s, i, heat, mode, now);
+                painted++;
+            }
+        }
+        return painted;
+    }
+
+    private void layout(int regionCount) {
+        if (regionCount == this.regionCount) {
+            return;
+        }
+        this.regionCount = regionCount;
+        pitch = RegionMap.pitch(width, height, regionCount);
+        columns = RegionMap.columns(width, pitch);
+        // Like RegionMap, a border around pitch - 2 pixels, leaving a one pixel gap
+        bordered = pitch > 2;
+        inner = bordered ? pitch - 2 : pitch;
+        cell = bordered ? pitch - 1 : pitch;
+        for (int p = 0; p < LEVELS; p++) {
+            levelWidth[p] = (int) (inner * (p / 100F));
+        }
+        line = new int[cell];
+        row = new byte[cell * 3];
+        borderRow = new byte[cell * 3];
+        Arrays.fill(line, BORDER);
+        toBytes(borderRow);
+    }
+
+    private void renderCell(Snapshot s, int i, RegionHistory heat, RegionHistory.Mode mode, long now) {
+        if (mode == RegionHistory.Mode.STATE || heat == null || i >= heat.regionCount()) {
+            renderCell(s.data(i), i);
+        } else {
+            Arrays.fill(line, WHITE);
+            fill(0, inner, heat.color(i, mode, now), 255);
+            paint(i, false);
+        }
+    }
+
+    private void renderCell(long word, int i) {
+        RegionState state = RegionStat.state(word);
+        Arrays.fill(line, WHITE);
+        switch (state) {
+            case REGULAR: {
+                int tlab = RegionStat.tlabPercent(word);
+                int gclab = RegionStat.gclabPercent(word);
+                int shared = RegionStat.sharedPercent(word);
+                if (tlab > 0 || gclab > 0 || shared > 0) {
+                    // Faint while less than half of the region is live
+                    int alpha = RegionStat.livePercent(word) < 50 ? 100 : 255;
+                    int lx = stripe(0, levelWidth[tlab], TLAB_ALLOC, TLAB_ALLOC_BORDER, alpha);
+                    lx = stripe(lx, levelWidth[gclab], GCLAB_ALLOC, GCLAB_ALLOC_BORDER, alpha);
+                    stripe(lx, levelWidth[shared], SHARED_ALLOC, SHARED_ALLOC_BORDER, alpha);
+                }
+                break;
+            }
+            case PINNED:
+                fill(0, levelWidth[RegionStat.usedPercent(word)], LIVE_PINNED, 255);
+                break;
+            case CSET:
+            case PINNED_CSET:
+            case HUMONGOUS:
+            case PINNED_HUMONGOUS: {
+                fill(0, levelWidth[RegionStat.usedPercent(word)], USED, 255);
+                int live = levelWidth[RegionStat.livePercent(word)];
+                fill(0, live, RegionStat.selectLive(state), 255);
+                edge(live, LIVE_BORDER, 255);
+                break;
+            }
+            case EMPTY_UNCOMMITTED:
+                fill(0, inner, LIVE_COMMITTED, 255);
+                break;
+            default:
+                break;
+        }
+        paint(i, state == RegionState.TRASH);
+    }
+
+    /**
+     * Copies the row built in {@code line} to the rows of cell {@code i}, between its
+     * top and bottom border.
+     */
+    private void paint(int i, boolean crossed) {
+        int x = (i % columns) * pitch;
+        int y = (i / columns) * pitch;
+        int w = Math.min(cell, width - x);
+        int h = Math.min(cell, height - y);
+        if (w <= 0 || h <= 0) {
+            return;
+        }
+        if (bordered) {
+            line[0] = BORDER;
+            line[inner] = BORDER;
+        }
+        toBytes(row);
+
+        int offset = y * bytesPerLine + x * 3;
+        for (int r = 0; r < h; r++, offset += bytesPerLine) {
+            byte[] src = bordered && (r == 0 || r == inner) ? borderRow : row;
+            System.arraycopy(src, 0, data, offset, w * 3);
+        }
+        if (crossed) {
+            // The cross of a trash region, from corner to corner of the border
+            int first = bordered ? 1 : 0;
+            int last = bordered ? inner : cell - 1;
+            offset = y * bytesPerLine + x * 3;
+            for (int r = 0; r < h; r++, offset += bytesPerLine) {
+                if (r >= first && r <= last - first) {
+                    set(offset, r, w, BLACK);
+                    set(offset, last - r, w, BLACK);
+                }
+            }
+        }
+        touch(x, y, w, h);
+    }
+
+    /**
+     * An allocation stripe with its border, {@code count} pixels from {@code from} on.
+     * Returns where the next one starts.
+     */
+    private int stripe(int from, int count, int rgb, int border, int alpha) {
+        if (count <= 0) {
+            return from;
+        }
+        fill(from, count, rgb, alpha);
+        edge(from, border, alpha);
+        edge(from + count, border, alpha);
+        return from + count;
+    }
+
+    /**
+     * Draws {@code count} pixels of the inside of the cell from {@code from} on.
+     */
+    private void fill(int from, int count, int rgb, int alpha) {
+        int to = Math.min(inner, from + count);
+        if (alpha == 255) {
+            Arrays.fill(line, from, Math.max(from, to), rgb);
+            return;
+        }
+        // Mostly over white, blend once per run of the same color
+        int under = -1;
+        int blended = 0;
+        for (int x = from; x < to; x++) {
+            if (line[x] != under) {
+                under = line[x];
+                blended = blend(rgb, under, alpha);
+            }
+            line[x] = blended;
+        }
+    }
+
+    /**
+     * Draws a vertical line at {@code x}, which only cells with borders have room for.
+     */
+    private void edge(int x, int rgb, int alpha) {
+        if (bordered && x < cell) {
+            line[x] = blend(rgb, line[x], alpha);
+        }
+    }
+
+    private void toBytes(byte[] dst) {
+        for (int x = 0, b = 0; x < cell; x++, b += 3) {
+            int rgb = line[x];
+            dst[b] = (byte) (rgb >>> 16);
+            dst[b + 1] = (byte) (rgb >>> 8);
+            dst[b + 2] = (byte) rgb;
+        }
+    }
+
+    private void set(int offset, int x, int w, int rgb) {
+        if (x >= 0 && x < w) {
+            int b = offset + x * 3;
+            data[b] = (byte) (rgb >>> 16);
+            data[b + 1] = (byte) (rgb >>> 8);
+            data[b + 2] = (byte) rgb;
+        }
+    }
+
+    /**
+     * {@code rgb} drawn with {@code alpha} over {@code under}, rounded like {@link RasterSurface}.
+     */
+    static int blend(int rgb, int under, int alpha) {
+        if (alpha == 255) {
+            return rgb;
+        }
+        int r = mix((rgb >>> 16) & 0xFF, (under >>> 16) & 0xFF, alpha);
+        int g = mix((rgb >>> 8) & 0xFF, (under >>> 8) & 0xFF, alpha);
+        int b = mix(rgb & 0xFF, under & 0xFF, alpha);
+        return (r << 16) | (g << 8) | b;
+    }
+
+    private static int mix(int src, int dst, int alpha) {
+        return (src * alpha + dst * (255 - alpha) + 127) / 255;
+    }
+
+}
@@ -1,9 +1,5 @@
 package org.openjdk.jmc.ext.shenandoahvisualizer;
 
-import org.eclipse.swt.SWT;
-import org.eclipse.swt.graphics.GC;
-import org.eclipse.swt.graphics.Color;
-
 import java.util.BitSet;
 import java.util.EnumSet;
 
@@ -21,16 +17,24 @@ public class RegionStat {
     private static final int SHARED_SHIFT = 28;
     private static final int FLAGS_SHIFT  = 58;
 
-    private final RegionState state;
-    private final BitSet incoming;
-    private final float liveLvl;
-    private final float usedLvl;
-    private final float tlabLvl;
-    private final float gclabLvl;
-    private final float sharedLvl;
+    // Not final: snapshots reuse a single instance as a view over their region arrays
+    private RegionState state;
+    private float liveLvl;
+    private float usedLvl;
+    private float tlabLvl;
+    private float gclabLvl;
+    private float sharedLvl;
+
+    // The matrix row is only decoded when somebody asks for it
+    private String matrix;
+    private String decodedMatrix;
+    private BitSet incoming;
+
+    RegionStat() {
+        this.state = RegionState.EMPTY_UNCOMMITTED;
+    }
 
     public RegionStat(float usedLvl, float liveLvl, float tlabLvl, float gclabLvl, float sharedLvl, RegionState state) {
-        this.incoming = null;
         this.usedLvl = usedLvl;
         this.liveLvl = liveLvl;
         this.tlabLvl = tlabLvl;
@@ -41,33 +45,100 @@ public class RegionStat {
 
 
     public RegionStat(long data, String matrix) {
-        usedLvl  = ((data >>> USED_SHIFT)  & PERCENT_MASK) / 100F;
-        liveLvl  = ((data >>> LIVE_SHIFT)  & PERCENT_MASK) / 100F;
-        tlabLvl  = ((data >>> TLAB_SHIFT)  & PERCENT_MASK) / 100F;
-        gclabLvl = ((data >>> GCLAB_SHIFT) & PERCENT_MASK) / 100F;
-        sharedLvl = ((data >>> SHARED_SHIFT) & PERCENT_MASK) / 100F;
-
-        long stat = (data >>> FLAGS_SHIFT) & FLAGS_MASK;
-        state = RegionState.fromOrdinal((int) stat);
-
-        if (!matrix.isEmpty()) {
-            this.incoming = new BitSet();
-            int idx = 0;
-            for (char c : matrix.toCharArray()) {
-                c = (char) (c - 32);
-                incoming.set(idx++, (c & (1 << 0)) > 0);
-                incoming.set(idx++, (c & (1 << 1)) > 0);
-                incoming.set(idx++, (c & (1 << 2)) > 0);
-                incoming.set(idx++, (c & (1 << 3)) > 0);
-                incoming.set(idx++, (c & (1 << 4)) > 0);
-                incoming.set(idx++, (c & (1 << 5)) > 0);
+        wrap(data, matrix);
+    }
+
+    RegionStat wrap(long data, String matrix) {
+        usedLvl  = usedLvl(data);
+        liveLvl  = liveLvl(data);
+        tlabLvl  = tlabLvl(data);
+        gclabLvl = gclabLvl(data);
+        sharedLvl = sharedLvl(data);
+        state = state(data);
+        this.matrix = matrix;
+        return this;
+    }
+
+    /**
+     * Decodes an encoded matrix row into {@code into}: every character carries six
+     * bits, offset by 32 to keep it printable.
+     */
+    static BitSet decodeMatrix(String matrix, BitSet into) {
+        into.clear();
+        int idx = 0;
+        for (int i = 0; i < matrix.length(); i++) {
+            int c = matrix.charAt(i) - 32;
+            for (int b = 0; b < 6; b++, idx++) {
+                if ((c & (1 << b)) != 0) {
+                    into.set(idx);
+                }
+            }
+        }
+        return into;
+    }
+
+    /**
+     * Inverse of {@link #decodeMatrix}, for a row of {@code regions} bits.
+     */
+    static String encodeMatrix(BitSet row, int regions) {
+        char[] chars = new char[(regions + 5) / 6];
+        for (int c = 0; c < chars.length; c++) {
+            int v = 0;
+            for (int b = 0; b < 6; b++) {
+                if (row.get(c * 6 + b)) {
+                    v |= 1 << b;
+                }
             }
-        } else {
-            this.incoming = null;
+            chars[c] = (char) (v + 32);
         }
+        return new String(chars);
+    }
+
+    static float usedLvl(long data) {
+        return usedPercent(data) / 100F;
+    }
+
+    static float liveLvl(long data) {
+        return livePercent(data) / 100F;
+    }
+
+    static float tlabLvl(long data) {
+        return tlabPercent(data) / 100F;
     }
 
-    private org.eclipse.swt.graphics.Color selectLive(RegionState s) {
+    static float gclabLvl(long data) {
+        return gclabPercent(data) / 100F;
+    }
+
+    static float sharedLvl(long data) {
+        return sharedPercent(data) / 100F;
+    }
+
+    static int usedPercent(long data) {
+        return (int) ((data >>> USED_SHIFT) & PERCENT_MASK);
+    }
+
+    static int livePercent(long data) {
+        return (int) ((data >>> LIVE_SHIFT) & PERCENT_MASK);
+    }
+
+    static int tlabPercent(long data) {
+        return (int) ((data >>> TLAB_SHIFT) & PERCENT_MASK);
+    }
+
+    static int gclabPercent(long data) {
+        return (int) ((data >>> GCLAB_SHIFT) & PERCENT_MASK);
+    }
+
+    static int sharedPercent(long data) {
+        return (int) ((data >>> SHARED_SHIFT) & PERCENT_MASK);
+    }
+
+    static RegionState state(long data) {
+        return RegionState.fromOrdinal((int) ((data >>> FLAGS_SHIFT) & FLAGS_MASK));
+    }
+
+    static int selectLive(RegionState s) {
         switch (s) {
             case CSET:
                 return LIVE_CSET;
@@ -91,8 +162,8 @@ public class RegionStat {
         }
     }
 
-	public void render(GC g, int x, int y, int width, int height) {
-		g.setBackground(g.getDevice().getSystemColor(SWT.COLOR_WHITE));
+	public void render(Surface g, int x, int y, int width, int height) {
+		g.setBackground(WHITE);
 		g.fillRectangle(x, y, width, height);
 
 		switch (state) {
@@ -170,7 +241,7 @@ public class RegionStat {
 				break;
 			}
 			case TRASH:{
-				g.setForeground(g.getDevice().getSystemColor(SWT.COLOR_BLACK));
+				g.setForeground(BLACK);
 				g.drawLine(x, y, x + width, y + height);
 				g.drawLine(x, y + height, x + width, y);
 				break;
@@ -196,13 +267,15 @@ public class RegionStat {
         if (Float.compare(that.gclabLvl, gclabLvl) != 0) return false;
         if (Float.compare(that.sharedLvl, sharedLvl) != 0) return false;
         if (!state.equals(that.state)) return false;
-        return incoming != null ? incoming.equals(that.incoming) : that.incoming == null;
+        BitSet bs = incoming();
+        return bs != null ? bs.equals(that.incoming()) : that.incoming() == null;
     }
 
     @Override
     public int hashCode() {
         int result = state.hashCode();
-        result = 31 * result + (incoming != null ? incoming.hashCode() : 0);
+        BitSet bs = incoming();
+        result = 31 * result + (bs != null ? bs.hashCode() : 0);
         result = 31 * result + (liveLvl != +0.0f ? Float.floatToIntBits(liveLvl) : 0);
         result = 31 * result + (usedLvl != +0.0f ? Float.floatToIntBits(usedLvl) : 0);
         result = 31 * result + (tlabLvl != +0.0f ? Float.floatToIntBits(tlabLvl) : 0);
@@ -235,6 +308,13 @@ public class RegionStat {
     }
 
     public BitSet incoming() {
+        if (matrix == null || matrix.isEmpty()) {
+            return null;
+        }
+        if (!matrix.equals(decodedMatrix)) {
+            incoming = decodeMatrix(matrix, incoming == null ? new BitSet() : incoming);
+            decodedMatrix = matrix;
+        }
         return incoming;
     }
 
@@ -0,0 +1,241 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Publishes the aggregates of every consumed snapshot as plain attributes through the
+ * platform MBean server of the Mission Control process, not of the JVM being
+ * visualized. A console connected to that JVM does not see the bean. To chart the
+ * attributes or put triggers on them, open a console on the JVM running Mission Control
+ * itself, listed as such in the JVM Browser, or attach any other JMX client to it.
+ */
+public class RegionStats implements RegionStatsMXBean {
+
+    static final String DOMAIN = "org.openjdk.jmc.ext.shenandoahvisualizer";
+
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+    private static final RegionState[] STATES = RegionState.values();
+    private static final Phase[] PHASES = Phase.values();
+
+    private final String target;
+    private ObjectName name;
+
+    private long timestamp;
+    private Phase phase = Phase.UNKNOWN;
+    private int regionCount;
+    private long regionSize;
+    private long total;
+    private long used;
+    private long live;
+    private long committed;
+    private long trash;
+    private long collectionSet;
+    private long humongous;
+    private long largestFree;
+    private double fragmentation;
+    private final int[] states = new int[STATES.length];
+
+    private long cycles;
+    private long phaseStart;
+    private final long[] phaseTime = new long[PHASES.length];
+
+    public RegionStats(String target) {
+        this.target = target;
+    }
+
+    /**
+     * Registers this bean in the platform MBean server of this process. Returns false
+     * if that failed, the visualizer works without it.
+     */
+    public synchronized boolean register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName n = new ObjectName(DOMAIN + ":type=RegionStats,target=" + ObjectName.quote(target)
+                    + ",id=" + SEQUENCE.incrementAndGet());
+            server.registerMBean(this, n);
+            name = n;
+            return true;
+        } catch (JMException e) {
+            return false;
+        }
+    }
+
+    public synchronized void unregister() {
+        if (name == null) {
+            return;
+        }
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch (JMException e) {
+            // Already gone
+        }
+        name = null;
+    }
+
+    /**
+     * Takes over the aggregates of {@code s}. Phase time is attributed to the phase
+     * of the previous sample, up to the publication time of this one.
+     */
+    public synchronized void update(Snapshot s) {
+        long time = s.vmTime();
+        if (timestamp != 0 && time > timestamp) {
+            phaseTime[phase.ordinal()] += time - timestamp;
+        }
+        if (s.phase() != phase) {
+            if (s.phase() == Phase.MARKING) {
+                cycles++;
+            }
+            phaseStart = time;
+        }
+        timestamp = time;
+        phase = s.phase();
+        regionCount = s.regionCount();
+        regionSize = s.regionSize() * 1024;
+        total = s.total() * 1024;
+        used = s.used() * 1024;
+        live = s.live() * 1024;
+        committed = s.committed() * 1024;
+        trash = s.trash() * 1024;
+        collectionSet = s.collectionSet() * 1024;
+        humongous = s.humongous() * 1024;
+        largestFree = s.largestFree() * 1024;
+        fragmentation = s.fragmentation();
+        for (RegionState st : STATES) {
+            states[st.ordinal()] = s.stateCount(st);
+        }
+    }
+
+    /**
+     * Forgets the phase times, e.g. after switching to another source.
+     */
+    public synchronized void reset() {
+        timestamp = 0;
+        phase = Phase.UNKNOWN;
+        cycles = 0;
+        for (int i = 0; i < phaseTime.length; i++) {
+            phaseTime[i] = 0;
+        }
+    }
+
+    @Override
+    public String getTarget() {
+        return target;
+    }
+
+    @Override
+    public synchronized long getTimestamp() {
+        return timestamp;
+    }
+
+    @Override
+    public synchronized String getPhase() {
+        return phase.name();
+    }
+
+    @Override
+    public synchronized int getRegionCount() {
+        return regionCount;
+    }
+
+    @Override
+    public synchronized long getRegionSize() {
+        return regionSize;
+    }
+
+    @Override
+    public synchronized long getTotal() {
+        return total;
+    }
+
+    @Override
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    @Override
+    public synchronized long getLive() {
+        return live;
+    }
+
+    @Override
+    public synchronized long getCommitted() {
+        return committed;
+    }
+
+    @Override
+    public synchronized long getTrash() {
+        return trash;
+    }
+
+    @Override
+    public synchronized long getCollectionSet() {
+        return collectionSet;
+    }
+
+    @Override
+    public synchronized long getHumongous() {
+        return humongous;
+    }
+
+    @Override
+    public synchronized long getLargestFree() {
+        return largestFree;
+    }
+
+    @Override
+    public synchronized double getFragmentation() {
+        return fragmentation;
+    }
+
+    @Override
+    public synchronized long getCycles() {
+        return cycles;
+    }
+
+    @Override
+    public synchronized long getCurrentPhaseTime() {
+        return timestamp - phaseStart;
+    }
+
+    @Override
+    public synchronized long getIdleTime() {
+        return phaseTime[Phase.IDLE.ordinal()];
+    }
+
+    @Override
+    public synchronized long getMarkingTime() {
+        return phaseTime[Phase.MARKING.ordinal()];
+    }
+
+    @Override
+    public synchronized long getEvacuationTime() {
+        return phaseTime[Phase.EVACUATING.ordinal()];
+    }
+
+    @Override
+    public synchronized long getUpdateRefsTime() {
+        return phaseTime[Phase.UPDATE_REFS.ordinal()];
+    }
+
+    @Override
+    public synchronized long getTraversalTime() {
+        return phaseTime[Phase.TRAVERSAL.ordinal()];
+    }
+
+    @Override
+    public synchronized Map<String, Integer> getRegionStates() {
+        Map<String, Integer> result = new LinkedHashMap<>();
+        for (RegionState st : STATES) {
+            result.put(st.name(), states[st.ordinal()]);
+        }
+        return result;
+    }
+
+}
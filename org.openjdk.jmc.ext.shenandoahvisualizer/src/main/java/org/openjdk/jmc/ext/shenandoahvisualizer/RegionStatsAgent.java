@@ -0,0 +1,222 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+
+/**
+ * Small standalone agent that runs next to a Shenandoah JVM, reads its region counters
+ * locally and streams them to a {@link RemoteDataProvider}. Only depends on the JDK, so
+ * it can be started from the plugin jar:
+ *
+ * <pre>
+ * java -cp shenandoahvisualizer.jar org.openjdk.jmc.ext.shenandoahvisualizer.RegionStatsAgent &lt;pid&gt; [port] [interval ms]
+ * </pre>
+ *
+ * A {@code synthetic://...} id instead of the pid serves a {@link SyntheticCounterSource}.
+ *
+ * The stream starts with a header (magic, version, region count, region size),
+ * followed by one frame whenever the VM published new data: a type byte, the payload
+ * length, then the payload holding the wall clock publication time, the raw GC status
+ * and the words encoded by {@link FrameCodec}. The first frame is a keyframe, all later
+ * ones are deltas, so the bandwidth follows the number of changed regions. One client
+ * is served at a time.
+ */
+public class RegionStatsAgent implements Runnable, Closeable {
+
+    static final int MAGIC = 0x53485241; // "SHRA"
+    static final int VERSION = 1;
+
+    public static final int DEFAULT_PORT = 7071;
+    public static final long DEFAULT_INTERVAL = 5;
+
+    // Pause after a failed accept, which tends to fail again right away
+    private static final long ACCEPT_BACKOFF = 1_000;
+
+    private final CounterSource source;
+    private final ServerSocket server;
+    private final long interval;
+    private final int regionCount;
+
+    private final long[] words;
+    private final long[] previous;
+    private final long[] changed;
+
+    private final ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+    private final DataOutputStream payload = new DataOutputStream(payloadBytes);
+
+    private volatile Socket client;
+    private volatile boolean closed;
+    private volatile long bytesSent;
+    private volatile long framesSent;
+
+    public RegionStatsAgent(CounterSource source, ServerSocket server, long interval) {
+        this.source = source;
+        this.server = server;
+        this.interval = Math.max(1, interval);
+        this.regionCount = source.maxRegions();
+        this.words = new long[regionCount];
+        this.previous = new long[regionCount];
+        this.changed = new long[(regionCount + 63) >>> 6];
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: RegionStatsAgent <pid>|synthetic://... [port] [interval ms]");
+            System.exit(1);
+        }
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        long interval = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_INTERVAL;
+
+        CounterSource source;
+        if (args[0].startsWith(SyntheticCounterSource.PREFIX)) {
+            source = SyntheticCounterSource.parse(args[0]);
+        } else {
+            File file = MappedRegionCounters.find(Integer.parseInt(args[0]));
+            if (file == null) {
+                System.err.println("No hsperfdata file found for " + args[0]);
+                System.exit(1);
+            }
+            source = new MappedRegionCounters(file);
+        }
+        RegionStatsAgent agent = new RegionStatsAgent(source, new ServerSocket(port), interval);
+        System.out.println("Serving Shenandoah regions of " + args[0] + " on port " + port);
+        agent.run();
+    }
+
+    /**
+     * Accepts clients one after another until {@link #close()} is called or the server
+     * socket is closed.
+     */
+    @Override
+    public void run() {
+        while (!closed) {
+            Socket accepted;
+            try {
+                accepted = server.accept();
+            } catch (IOException e) {
+                if (closed || server.isClosed()) {
+                    return;
+                }
+                // Out of file descriptors or the like, try again later instead of spinning
+                try {
+                    Thread.sleep(ACCEPT_BACKOFF);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                continue;
+            }
+            try (Socket s = accepted) {
+                client = s;
+                s.setTcpNoDelay(true);
+                serve(new DataOutputStream(new BufferedOutputStream(s.getOutputStream())));
+            } catch (IOException e) {
+                // Client went away or the agent was closed, wait for the next one
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                client = null;
+            }
+        }
+    }
+
+    private void serve(DataOutputStream out) throws IOException, InterruptedException {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(regionCount);
+        out.writeLong(source.regionSize());
+
+        long frequency = source.frequency();
+        VmClock clock = frequency > 0 ? new VmClock(frequency) : null;
+        long lastTimestamp = 0;
+        long lastStatus = 0;
+        boolean settled = false;
+        boolean first = true;
+        int sentStatus = 0;
+
+        while (!closed) {
+            long now = System.currentTimeMillis();
+            long ts = source.timestamp();
+            int status = (int) source.status();
+
+            // Same settling as PerfDataProvider: read once more after the timestamp moved
+            boolean same = clock != null && !first && ts == lastTimestamp && status == lastStatus;
+            if (!same || !settled) {
+                settled = same;
+                lastTimestamp = ts;
+                lastStatus = status;
+                source.read(words);
+                long time = clock != null ? clock.toWallClock(ts, now) : now;
+                if (first) {
+                    send(out, FrameCodec.KEYFRAME, time, status);
+                    first = false;
+                    sentStatus = status;
+                } else if (diff() > 0 || status != sentStatus) {
+                    send(out, FrameCodec.DELTA, time, status);
+                    sentStatus = status;
+                }
+            }
+            Thread.sleep(interval);
+        }
+    }
+
+    private int diff() {
+        Arrays.fill(changed, 0L);
+        int count = 0;
+        for (int i = 0; i < regionCount; i++) {
+            if (words[i] != previous[i]) {
+                changed[i >>> 6] |= 1L << i;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void send(DataOutputStream out, byte type, long time, int status) throws IOException {
+        payloadBytes.reset();
+        payload.writeLong(time);
+        payload.writeInt(status);
+        if (type == FrameCodec.KEYFRAME) {
+            FrameCodec.writeKeyframe(payload, words, previous, regionCount);
+        } else {
+            FrameCodec.writeDelta(payload, words, previous, changed);
+        }
+        out.writeByte(type);
+        out.writeInt(payloadBytes.size());
+        payloadBytes.writeTo(out);
+        out.flush();
+        bytesSent += RecordingWriter.RECORD_HEADER_SIZE + payloadBytes.size();
+        framesSent++;
+    }
+
+    /**
+     * Bytes of frames sent to the current and earlier clients, frame headers included,
+     * but not the connection header.
+     */
+    public long bytesSent() {
+        return bytesSent;
+    }
+
+    public long framesSent() {
+        return framesSent;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        Socket s = client;
+        if (s != null) {
+            s.close();
+        }
+        server.close();
+    }
+
+}
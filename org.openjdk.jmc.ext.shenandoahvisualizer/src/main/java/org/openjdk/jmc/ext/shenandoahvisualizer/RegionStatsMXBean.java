@@ -0,0 +1,68 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.util.Map;
+
+/**
+ * Heap aggregates of the JVM a visualizer is attached to, as of its latest sample.
+ * Sizes are in bytes, times in milliseconds.
+ */
+public interface RegionStatsMXBean {
+
+    String getTarget();
+
+    long getTimestamp();
+
+    String getPhase();
+
+    int getRegionCount();
+
+    long getRegionSize();
+
+    long getTotal();
+
+    long getUsed();
+
+    long getLive();
+
+    long getCommitted();
+
+    long getTrash();
+
+    long getCollectionSet();
+
+    long getHumongous();
+
+    /**
+     * Size of the longest run of adjacent empty regions, the largest humongous object
+     * that fits without a collection.
+     */
+    long getLargestFree();
+
+    /**
+     * 0 when all empty regions are adjacent, approaching 1 the more they are scattered.
+     */
+    double getFragmentation();
+
+    /**
+     * Number of GC cycles started since the visualizer connected.
+     */
+    long getCycles();
+
+    long getCurrentPhaseTime();
+
+    long getIdleTime();
+
+    long getMarkingTime();
+
+    long getEvacuationTime();
+
+    long getUpdateRefsTime();
+
+    long getTraversalTime();
+
+    /**
+     * Number of regions per {@link RegionState}.
+     */
+    Map<String, Integer> getRegionStates();
+
+}
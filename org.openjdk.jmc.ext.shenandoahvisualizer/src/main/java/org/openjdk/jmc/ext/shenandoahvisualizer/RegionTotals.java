@@ -0,0 +1,84 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+/**
+ * Heap-wide sums over the region data words, kept in percent-of-a-region units so
+ * that a region's contribution can be subtracted again exactly when its word changes.
+ * The allocation counters only ever grow: they sum up the increases of the per-region
+ * TLAB, GCLAB and shared allocation levels since the first sample.
+ */
+final class RegionTotals {
+
+    long used;
+    long live;
+    long committed;
+    long trash;
+    long collectionSet;
+    long humongous;
+
+    long tlabAllocated;
+    long gclabAllocated;
+    long sharedAllocated;
+
+    void add(long data) {
+        accumulate(data, 1);
+    }
+
+    void remove(long data) {
+        accumulate(data, -1);
+    }
+
+    /**
+     * Counts what was allocated in a region whose word went from {@code before} to
+     * {@code after}. A drop means the region was recycled in between, so all of its
+     * current level was allocated since.
+     */
+    void allocated(long before, long after) {
+        tlabAllocated += grown(RegionStat.tlabPercent(before), RegionStat.tlabPercent(after));
+        gclabAllocated += grown(RegionStat.gclabPercent(before), RegionStat.gclabPercent(after));
+        sharedAllocated += grown(RegionStat.sharedPercent(before), RegionStat.sharedPercent(after));
+    }
+
+    private static int grown(int before, int after) {
+        return after >= before ? after - before : after;
+    }
+
+    private void accumulate(long data, int sign) {
+        int usedPct = RegionStat.usedPercent(data) * sign;
+        int livePct = RegionStat.livePercent(data) * sign;
+
+        used += usedPct;
+        live += livePct;
+
+        switch (RegionStat.state(data)) {
+            case EMPTY_UNCOMMITTED:
+                return;
+            case TRASH:
+                trash += usedPct;
+                break;
+            case CSET:
+            case PINNED_CSET:
+                collectionSet += livePct;
+                break;
+            case HUMONGOUS:
+            case PINNED_HUMONGOUS:
+                humongous += usedPct;
+                break;
+            default:
+                break;
+        }
+        committed += usedPct;
+    }
+
+    void set(RegionTotals other) {
+        used = other.used;
+        live = other.live;
+        committed = other.committed;
+        trash = other.trash;
+        collectionSet = other.collectionSet;
+        humongous = other.humongous;
+        tlabAllocated = other.tlabAllocated;
+        gclabAllocated = other.gclabAllocated;
+        sharedAllocated = other.sharedAllocated;
+    }
+
+}
@@ -0,0 +1,192 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Samples a JVM on another host through a {@link RegionStatsAgent}. A reader thread
+ * applies the incoming frames to a copy of the region words; {@link #snapshot()} only
+ * copies that out, and returns null when no frame arrived since the previous call.
+ */
+public class RemoteDataProvider implements DataProvider {
+
+    static final String PREFIX = "remote://";
+
+    private static final int CONNECT_TIMEOUT = 5_000;
+
+    private final String id;
+    private final Socket socket;
+    private final DataInputStream in;
+    private final int regionCount;
+    private final long regionSize;
+    private final SnapshotBuilder builder;
+
+    // Written by the reader thread, guarded by this
+    private final long[] words;
+    private long time;
+    private int status;
+    private long sequence;
+
+    // Only touched by the sampling thread
+    private long taken = -1;
+
+    private final int maxFrame;
+    private byte[] frame = new byte[256];
+    private volatile Exception failure;
+    private volatile boolean closed;
+
+    /**
+     * Connects to the agent at {@code remote://host:port} and waits for the first frame.
+     */
+    public RemoteDataProvider(String id) throws IOException {
+        this.id = id;
+        String address = id.startsWith(PREFIX) ? id.substring(PREFIX.length()) : id;
+        int colon = address.lastIndexOf(':');
+        if (colon <= 0) {
+            throw new IOException("Expected " + PREFIX + "host:port, got " + id);
+        }
+        String host = address.substring(0, colon);
+        int port;
+        try {
+            port = Integer.parseInt(address.substring(colon + 1));
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid port in " + id);
+        }
+
+        socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), CONNECT_TIMEOUT);
+            socket.setTcpNoDelay(true);
+            socket.setSoTimeout(CONNECT_TIMEOUT);
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+            if (in.readInt() != RegionStatsAgent.MAGIC) {
+                throw new IOException("Not a region stats agent: " + id);
+            }
+            int version = in.readInt();
+            if (version != RegionStatsAgent.VERSION) {
+                throw new IOException("Unsupported agent version: " + version);
+            }
+            regionCount = in.readInt();
+            regionSize = in.readLong();
+            if (regionCount < 0) {
+                throw new IOException("Corrupt region count " + regionCount);
+            }
+            maxFrame = (int) Math.min(Integer.MAX_VALUE,
+                    RecordingReader.maxRecordSize(regionCount) - RecordingWriter.RECORD_HEADER_SIZE);
+            words = new long[regionCount];
+            builder = new SnapshotBuilder(regionCount);
+
+            readFrame();
+            socket.setSoTimeout(0);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        } catch (RuntimeException e) {
+            socket.close();
+            throw new IOException("Corrupt first frame from " + id, e);
+        }
+
+        Thread reader = new Thread(new Runnable() {
+            public void run() {
+                readFrames();
+            }
+        }, "Shenandoah Region Stats Reader " + id);
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    private void readFrames() {
+        try {
+            while (!closed) {
+                readFrame();
+            }
+        } catch (IOException | RuntimeException e) {
+            // A frame that does not decode, e.g. a delta against other words, ends the connection too
+            if (!closed) {
+                failure = e;
+            }
+        }
+    }
+
+    private void readFrame() throws IOException {
+        byte type = in.readByte();
+        int length = in.readInt();
+        if (length < RecordingWriter.PAYLOAD_PREFIX_SIZE || length > maxFrame) {
+            throw new IOException("Corrupt frame of " + length + " bytes");
+        }
+        if (frame.length < length) {
+            frame = new byte[Math.max(length, frame.length * 2)];
+        }
+        in.readFully(frame, 0, length);
+        ByteBuffer payload = ByteBuffer.wrap(frame, 0, length);
+        long t = payload.getLong();
+        int st = payload.getInt();
+        synchronized (this) {
+            if (type == FrameCodec.KEYFRAME) {
+                FrameCodec.readKeyframe(payload, words, regionCount);
+            } else if (type == FrameCodec.DELTA) {
+                FrameCodec.readDelta(payload, words);
+            } else {
+                throw new IOException("Unknown frame type " + type);
+            }
+            time = t;
+            status = st;
+            sequence++;
+        }
+    }
+
+    @Override
+    public Snapshot snapshot() {
+        Exception e = failure;
+        if (e != null) {
+            throw new IllegalStateException("Lost connection to " + id + ": " + e.getMessage(), e);
+        }
+        Snapshot s;
+        long t;
+        int st;
+        synchronized (this) {
+            if (sequence == taken) {
+                return null;
+            }
+            taken = sequence;
+            s = builder.acquire();
+            System.arraycopy(words, 0, s.data, 0, regionCount);
+            t = time;
+            st = status;
+        }
+        Arrays.fill(s.matrix, null);
+        return builder.finish(s, System.currentTimeMillis(), t, regionSize, st);
+    }
+
+    @Override
+    public void release(Snapshot s) {
+        builder.release(s);
+    }
+
+    @Override
+    public boolean hasMatrix() {
+        // The agent does not ship the matrix
+        return false;
+    }
+
+    @Override
+    public void setMatrixEnabled(boolean enabled) {
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing left to clean up on our side
+        }
+    }
+
+}
@@ -33,14 +33,23 @@ import org.eclipse.swt.events.ControlAdapter;
 import org.eclipse.swt.events.ControlEvent;
 import org.eclipse.swt.events.DisposeEvent;
 import org.eclipse.swt.events.DisposeListener;
+import org.eclipse.swt.events.MenuAdapter;
+import org.eclipse.swt.events.MenuEvent;
+import org.eclipse.swt.events.MouseEvent;
+import org.eclipse.swt.events.MouseWheelListener;
 import org.eclipse.swt.events.PaintEvent;
-import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
 import org.eclipse.swt.graphics.GC;
 import org.eclipse.swt.graphics.Image;
+import org.eclipse.swt.graphics.ImageData;
+import org.eclipse.swt.graphics.PaletteData;
 import org.eclipse.swt.graphics.Rectangle;
 import org.eclipse.swt.layout.GridData;
 import org.eclipse.swt.layout.GridLayout;
 import org.eclipse.swt.widgets.*;
+import org.eclipse.jface.dialogs.InputDialog;
+import org.eclipse.jface.window.Window;
 import org.eclipse.ui.IMemento;
 //import org.eclipse.ui.ISelectionListener;
 //import org.eclipse.ui.IViewSite;
@@ -52,9 +61,20 @@ import org.eclipse.ui.forms.widgets.FormToolkit;
 import org.eclipse.ui.forms.widgets.ScrolledForm;
 import org.openjdk.jmc.console.ui.editor.IConsolePageStateHandler;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
@@ -66,13 +86,27 @@ import static org.openjdk.jmc.ext.shenandoahvisualizer.RegionState.*;
 public class ShenandoahVisualizer implements IConsolePageStateHandler {
 	private static final int INITIAL_WIDTH = 1000;
 	private static final int INITIAL_HEIGHT = 800;
-	private static int pid;
-	private static final ScheduledExecutorService sched = Executors.newScheduledThreadPool(1);
-	private static Render render;
-	private static Image image;
-	private static GC g;
-	private static boolean dirty;
-	private static Map<String, RegionStat> items = new LinkedHashMap<>();
+
+	// Shared by all open visualizers, so that a slow sample of one JVM only holds up one thread
+	private static final ScheduledExecutorService sched = Executors.newScheduledThreadPool(
+			Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+				private final AtomicInteger count = new AtomicInteger();
+
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "Shenandoah Visualizer Sampler " + count.incrementAndGet());
+					t.setDaemon(true);
+					return t;
+				}
+			});
+
+	private int pid;
+	private Render render;
+	private Image image;
+	private GC g;
+	private ImageData imageData;
+	// Part of imageData painted since it was last drawn into image
+	private final int[] pixelBounds = new int[4];
+	private final Map<String, RegionStat> items = new LinkedHashMap<>();
 
 	@Inject
 	protected void createPageContent(IManagedForm managedForm, IConnectionHandle connection) throws Exception {
@@ -99,119 +133,297 @@ public class ShenandoahVisualizer implements IConsolePageStateHandler {
 
 	public static class Render implements Runnable {
 		public static final int LINE = 20;
+		static final int RING_CAPACITY = 8;
 
-		DataProvider data;
+		// Where live data comes from, see DataProvider.open
+		String target;
+		volatile DataProvider data;
+		DataProvider live;
+		// Aggregates of the latest consumed snapshot, published as an MBean
+		RegionStats stats;
 		final Group group;
+		final Display display;
 		int regionWidth, regionHeight;
 		int graphWidth, graphHeight;
 
-		final LinkedList<SnapshotView> lastSnapshots;
-		volatile Snapshot snapshot, previousSnapshot;
+		final TimelineHistory history;
+		final TimelinePyramid pyramid = new TimelinePyramid();
+		final CycleDetector cycles = new CycleDetector();
+		final AllocationAnalyzer allocations = new AllocationAnalyzer();
+		Table cycleTable;
+		boolean cyclesChanged;
+		volatile Snapshot snapshot;
+
+		// Timeline zoom, one pixel is 100 ms (a sample at 10 Hz) by default
+		static final double GRAPH_ZOOM_STEP = 1.25;
+		static final double MIN_MILLIS_PER_PIXEL = 10;
+		static final double MAX_MILLIS_PER_PIXEL = 5 * 60_000;
+		double millisPerPixel = 100;
+		// Stack the region counts per state in the lower band instead of the allocation rate
+		volatile boolean showStates;
+
+		// Regions changed by samples that have not been painted into the region image yet
+		long[] pendingChanges;
+		// Set when the whole region image has to be repainted
+		boolean dirty;
+		// Fine grids are painted into pixels, see RegionPixels
+		RegionPixels pixels;
+		// Whether the pixels hold everything painted so far
+		boolean pixelsCurrent;
+		// Per region statistics behind the heatmap modes of the region map
+		RegionHistory regionHistory;
+		RegionHistory.Mode colorMode = RegionHistory.Mode.STATE;
+		// VM time of the last full repaint for modes whose colors drift
+		long lastDriftRepaint;
+		static final long DRIFT_REPAINT_INTERVAL = 1_000;
+		volatile boolean disposed;
+
+		volatile boolean showReferences = true;
+		final ReferenceOverlay references = new ReferenceOverlay();
 
-		public Render(Group outerGroup) throws Exception {
-			this.data = new DataProvider("local://" + pid);
+		// Hand-off from the sampling thread to the UI thread
+		final SnapshotRing ring = new SnapshotRing(RING_CAPACITY);
+		final AtomicBoolean consumerScheduled = new AtomicBoolean();
+		final Runnable consume = new Runnable() {
+			public void run() {
+				consume();
+			}
+		};
+
+		// Sampling reschedules itself, faster while the GC is busy
+		final AdaptiveSampler sampler = new AdaptiveSampler();
+		volatile ScheduledExecutorService scheduler;
+		volatile ScheduledFuture<?> next;
+
+		// Only touched by the sampling thread
+		long lastSampleTime;
+		Phase lastSamplePhase;
+		// Held while a sample is taken, so that the UI thread can swap providers in between
+		final Object samplingLock = new Object();
+
+		// Backpressure: every sample ends up either dropped, coalesced into a later frame or rendered
+		final AtomicLong sampled = new AtomicLong();
+		final AtomicLong skipped = new AtomicLong();
+		final AtomicLong dropped = new AtomicLong();
+		final AtomicLong coalesced = new AtomicLong();
+		final AtomicLong rendered = new AtomicLong();
+
+		// Measures the visualizer itself, shown below the stats on request
+		final Instrumentation instrumentation = new Instrumentation();
+		volatile boolean showInstrumentation;
+
+		// Recording is written from the sampling thread, replay replaces the live source
+		volatile RecordingWriter recorder;
+		volatile String recordingError;
+		// Target that connect is opening, null when there is none
+		volatile String connecting;
+		RecordingPlayer player;
+		Scale scrubber;
+
+		public Render(Group outerGroup, String target) throws Exception {
+			this.target = target;
+			this.live = DataProvider.open(target);
+			this.stats = new RegionStats(target);
+			this.stats.register();
+			this.data = live;
 			this.group = outerGroup;
+			this.display = outerGroup.getDisplay();
 			this.regionHeight = INITIAL_HEIGHT;
 			this.regionWidth = INITIAL_WIDTH;
 			this.graphWidth = INITIAL_WIDTH;
 			this.graphHeight = INITIAL_HEIGHT;
-			this.lastSnapshots = new LinkedList<>();
+			this.history = new TimelineHistory();
 			this.snapshot = data.snapshot();
-			this.previousSnapshot = null;
+			this.pendingChanges = new long[(snapshot.regionCount() + 63) >>> 6];
+			this.snapshot.mergeChanges(pendingChanges);
+			dirty = true;
 		}
 
+		/**
+		 * Sampling side of the pipeline, runs on the scheduler thread. Takes a snapshot
+		 * and publishes it to the ring; the UI thread is only woken up to pick it up.
+		 */
 		@Override
-		public synchronized void run() {
-			Display.getDefault().asyncExec(new Runnable() {
-				public void run() {
-					Snapshot cur = data.snapshot();
-					if (!cur.equals(snapshot)) {
-						previousSnapshot = snapshot;
-						snapshot = cur;
-							lastSnapshots.add(new SnapshotView(cur));
-							
-						if (lastSnapshots.size() > graphWidth) {
-							lastSnapshots.removeFirst();
-						}
-						if (!group.isDisposed()) {
-							group.redraw();
-							group.update();
-						}
-					}
-				
+		public void run() {
+			if (disposed) {
+				return;
+			}
+			long start = System.nanoTime();
+			long allocated = instrumentation.allocatedBytes();
+			long delay;
+			try {
+				synchronized (samplingLock) {
+					delay = sample();
 				}
-			});
+			} catch (RuntimeException e) {
+				delay = sampler.backOff();
+			}
+			instrumentation.stop(Instrumentation.Probe.SAMPLE, start);
+			instrumentation.recordAllocation(allocated);
+			ScheduledExecutorService s = scheduler;
+			if (s != null && !disposed) {
+				next = s.schedule(this, delay, MILLISECONDS);
+			}
 		}
 
-		public synchronized void renderGraph(GC g) {
-			if (lastSnapshots.size() < 2) {
-				return;
+		/**
+		 * Starts sampling on {@code scheduler}. Every sample schedules the next one
+		 * after a delay picked by the {@link AdaptiveSampler}.
+		 */
+		public void start(ScheduledExecutorService scheduler) {
+			this.scheduler = scheduler;
+			next = scheduler.schedule(this, 0, MILLISECONDS);
+		}
+
+		/**
+		 * Returns the delay before the next sample.
+		 */
+		private long sample() {
+			DataProvider provider = data;
+			long start = System.nanoTime();
+			Snapshot cur = provider.snapshot();
+			instrumentation.stop(Instrumentation.Probe.SNAPSHOT, start);
+			sampled.incrementAndGet();
+			if (cur == null) {
+				// The VM has not published anything since the previous sample
+				skipped.incrementAndGet();
+				publish(null);
+				return sampler.unchanged(lastSamplePhase);
 			}
-			int pad = 10; 
-			int bandHeight = (graphHeight - pad) / 2;
-			double stepY = 1D * bandHeight / snapshot.total();
-			
-			int startDiff = graphHeight;
-			int startRaw = graphHeight - bandHeight - pad;
-			
-			g.setBackground(g.getDevice().getSystemColor(SWT.COLOR_WHITE));
-			g.fillRectangle(0, 0, graphWidth, graphHeight);
-
-			g.setBackground(g.getDevice().getSystemColor(SWT.COLOR_BLACK));
-			g.fillRectangle(0, 0, graphWidth, bandHeight);
-			g.fillRectangle(0, bandHeight+ pad, graphWidth, bandHeight);
-
-			long firstTime = lastSnapshots.getFirst().time();
-			long lastTime = lastSnapshots.getLast().time();
-			double stepX = 1D * Math.min(lastSnapshots.size(), graphWidth) / (lastTime - firstTime);
-			for (int i = 0; i < lastSnapshots.size(); i++) {
-				SnapshotView s = lastSnapshots.get(i);
-				int x = (int) Math.round((s.time() - firstTime) * stepX);
-
-				switch (s.phase()) {
-				case IDLE:
-					g.setForeground(Colors.TIMELINE_IDLE);
-					break;
-				case MARKING:
-					g.setForeground(Colors.TIMELINE_MARK);
-					break;
-				case EVACUATING:
-					g.setForeground(Colors.TIMELINE_EVACUATING);
-					break;
-				case UPDATE_REFS:
-					g.setForeground(Colors.TIMELINE_UPDATEREFS);
-					break;
-				case TRAVERSAL:
-					g.setForeground(Colors.TIMELINE_TRAVERSAL);
-					break;
-				default:
-					g.setForeground(g.getDevice().getSystemColor(SWT.COLOR_WHITE));
-				}
-				g.drawRectangle(x, 0, 1, bandHeight);
-				g.drawRectangle(x, bandHeight + pad, 1, bandHeight);
+			if (cur.vmTime() == lastSampleTime && cur.phase() == lastSamplePhase && cur.changedCount() == 0) {
+				long delay = sampler.update(cur.phase(), 0, cur.regionCount());
+				provider.release(cur);
+				publish(null);
+				return delay;
+			}
+			long delay = sampler.update(cur.phase(), cur.changedCount(), cur.regionCount());
+			lastSampleTime = cur.vmTime();
+			lastSamplePhase = cur.phase();
 
-				if(s.used() != 0) {
-					g.setForeground(Colors.USED);
-					g.drawRectangle(x, (int) Math.round(startRaw - s.used() * stepY), 1, 1);
+			RecordingWriter rec = recorder;
+			if (rec != null && provider == live) {
+				try {
+					rec.write(cur);
+				} catch (IOException e) {
+					recordingError = "Recording failed: " + e.getMessage();
+					stopRecording();
 				}
-				if (s.live() != 0) {
-					g.setForeground(Colors.LIVE_REGULAR);
-					g.drawRectangle(x, (int) Math.round(startRaw - s.live() * stepY), 1, 1);
+			}
+
+			publish(cur);
+			return delay;
+		}
+
+		/**
+		 * Hands {@code s} to the UI thread, or retries the snapshot held back while the UI
+		 * thread was a full ring behind if {@code s} is null.
+		 */
+		private void publish(Snapshot s) {
+			Snapshot replaced = ring.publish(s);
+			if (replaced != null) {
+				// Its changes were taken over by s, only the sample itself is lost
+				dropped.incrementAndGet();
+				replaced.builder.release(replaced);
+			}
+			if (ring.size() > 0 && consumerScheduled.compareAndSet(false, true) && !display.isDisposed()) {
+				display.asyncExec(consume);
+			}
+		}
+
+		/**
+		 * UI side of the pipeline. Folds every published snapshot into the history
+		 * and the pending change set, then repaints once for the latest one.
+		 */
+		private void consume() {
+			consumerScheduled.set(false);
+			int taken = 0;
+			synchronized (this) {
+				Snapshot cur;
+				while ((cur = ring.poll()) != null) {
+					taken++;
+					if (cur.regionCount() != snapshot.regionCount()) {
+						pendingChanges = new long[(cur.regionCount() + 63) >>> 6];
+						dirty = true;
+					}
+					data.release(snapshot);
+					snapshot = cur;
+					cur.mergeChanges(pendingChanges);
+					history.add(cur);
+					pyramid.add(cur);
+					stats.update(cur);
+					cyclesChanged |= cycles.add(cur);
+					allocations.add(cur);
+					if (regionHistory == null || regionHistory.regionCount() != cur.regionCount()) {
+						regionHistory = new RegionHistory(cur.regionCount());
+					}
+					regionHistory.update(cur, cycles.completed());
 				}
-				if (s.collectionSet() != 0) {
-					g.setForeground(Colors.LIVE_CSET);
-					g.drawRectangle(x, (int) Math.round(startRaw - s.collectionSet() * stepY), 1, 1);
+				if (colorMode.drifts() && snapshot.vmTime() - lastDriftRepaint >= DRIFT_REPAINT_INTERVAL) {
+					lastDriftRepaint = snapshot.vmTime();
+					dirty = true;
 				}
-				final int smooth = Math.min(10,  i +1);
-				final int mult = 20;
-				
-				SnapshotView ls = lastSnapshots.get(i - smooth +1);
-				g.setForeground(Colors.USED);
-				g.drawRectangle(x, (int) Math.round(startDiff - (s.used() - ls.used()) * stepY * mult / smooth), 1, 1);
 			}
+			if (taken == 0) {
+				return;
+			}
+			coalesced.addAndGet(taken - 1);
+			rendered.incrementAndGet();
+			RecordingPlayer p = player;
+			if (p != null && scrubber != null && !scrubber.isDisposed()) {
+				long span = Math.max(1, p.endTime() - p.startTime());
+				scrubber.setSelection((int) ((snapshot.time() - p.startTime()) * scrubber.getMaximum() / span));
+			}
+			if (cyclesChanged && cycleTable != null && !cycleTable.isDisposed()) {
+				cyclesChanged = false;
+				cycleTable.setItemCount(cycles.size());
+				cycleTable.clearAll();
+			}
+			if (!group.isDisposed()) {
+				group.redraw();
+				group.update();
+			}
+		}
+
+		public synchronized void renderGraph(GC gc) {
+			renderGraph(new SwtSurface(gc));
+		}
+
+		synchronized void renderGraph(Surface g) {
+			TimelineGraph.render(g, history, pyramid, snapshot.total(), millisPerPixel, graphWidth, graphHeight, showStates);
 		}
 
-		public synchronized static void renderLegend(GC g) {
+		/**
+		 * Fills a row of the cycle table, newest cycle first.
+		 */
+		public synchronized void fillCycleRow(TableItem item, int row) {
+			if (row >= cycles.size()) {
+				return;
+			}
+			int i = cycles.size() - 1 - row;
+			final int K = 1024;
+			item.setText(new String[] {
+					String.valueOf(cycles.completed() - row),
+					String.format("%tT", cycles.start(i)),
+					cycles.duration(i) + " ms",
+					cycles.markTime(i) + " ms",
+					cycles.evacTime(i) + " ms",
+					cycles.updateRefsTime(i) + " ms",
+					String.valueOf(cycles.csetRegions(i)),
+					(cycles.reclaimed(i) / K) + " MB",
+					String.format("%+d", cycles.humongousDelta(i)),
+					(cycles.allocationRate(i) / K) + " MB/s"
+			});
+		}
+
+		/**
+		 * Zooms the timeline by {@code steps} mouse wheel notches, positive zooms in.
+		 */
+		public synchronized void zoomGraph(int steps) {
+			double mpp = millisPerPixel * Math.pow(GRAPH_ZOOM_STEP, -steps);
+			millisPerPixel = Math.max(MIN_MILLIS_PER_PIXEL, Math.min(MAX_MILLIS_PER_PIXEL, mpp));
+		}
+
+		public static void renderLegend(Surface g, Map<String, RegionStat> items) {
 			final int sqSize = LINE;
 
 			int i = 1;
@@ -220,50 +432,63 @@ public class ShenandoahVisualizer implements IConsolePageStateHandler {
 				int y = (int) (i * sqSize * 1.5);
 				g.setAlpha(100);
 				items.get(key).render(g, 0, y, sqSize, sqSize);
-				g.setForeground(g.getDevice().getSystemColor(SWT.COLOR_BLACK));
+				g.setForeground(Colors.BLACK);
 				g.setAlpha(255);
-				g.drawString(key, (int) (sqSize * 1.5), (int) (y + sqSize * 0.1), true);
+				g.drawString(key, (int) (sqSize * 1.5), (int) (y + sqSize * 0.1));
 				i++;
 			}
 		}
 
-		public synchronized void renderRegions(GC g) {
-			int area = regionWidth * regionHeight;
-			int sqSize = Math.max(1, (int) Math.sqrt(1D * area / snapshot.regionCount()));
-			int cols = regionWidth / sqSize;
-			int cellSize = sqSize - 2;
-
-			for (int i = 0; i < snapshot.regionCount(); i++) {
-				
-				RegionStat s = snapshot.get(i);
-				RegionStat ls = previousSnapshot.get(i);
-				if (!s.equals(ls) || dirty){
-					int rectx = (i % cols) * sqSize;
-					int recty = (i / cols) * sqSize;
-					s.render(g, rectx, recty, cellSize, cellSize);
-				}
+		public synchronized void renderRegions(GC gc) {
+			Surface g = new SwtSurface(gc);
+			// Only repaint the cells that changed since the last paint, unless the
+			// whole image has to be redrawn
+			if (dirty) {
+				RegionMap.render(g, snapshot, regionWidth, regionHeight, regionHistory, colorMode, snapshot.vmTime());
+				Arrays.fill(pendingChanges, 0L);
+			} else {
+				RegionMap.render(g, snapshot, regionWidth, regionHeight, pendingChanges, regionHistory, colorMode,
+						snapshot.vmTime());
 			}
 			dirty = false;
-			Color BASE = new Color (g.getDevice(), 0, 0, 0);
-			
-			for (int f = 0; f < snapshot.regionCount(); f++) {
-				RegionStat s = snapshot.get(f);
-				BitSet bs = s.incoming();
-				if (bs != null) {
-					for (int t = 0; t < snapshot.regionCount(); t++) {
-						if (bs.get(t)) {
-								int f_rectx = (int) ((f % cols + 0.5) * sqSize);
-								int f_recty = (int) ((f / cols + 0.5) * sqSize);
-								int t_rectx = (int) ((t % cols + 0.5) * sqSize);
-								int t_recty = (int) ((t / cols + 0.5) * sqSize);
-	
-								//g.setAlpha(20);
-								g.setBackground(BASE);
-								g.drawLine(f_rectx, f_recty, t_rectx, t_recty);
-						}
-					}
-				}
+			pixelsCurrent = false;
+		}
+
+		/**
+		 * True if the cells are too small for borders, and the regions are better painted
+		 * through {@link #renderRegions(ImageData)}.
+		 */
+		public synchronized boolean drawsPixels() {
+			return RegionPixels.suits(RegionMap.pitch(regionWidth, regionHeight, snapshot.regionCount()));
+		}
+
+		/**
+		 * Paints the regions straight into {@code data}, a 24 bit direct palette image, and
+		 * stores the bounds of what changed in {@code changed} as x, y, width and height.
+		 * Returns false if nothing changed, so nothing needs to be uploaded.
+		 */
+		public synchronized boolean renderRegions(ImageData data, int[] changed) {
+			if (pixels == null || !pixels.paintsInto(data.data)) {
+				pixels = new RegionPixels(data.data, data.bytesPerLine, data.width, data.height);
+				pixelsCurrent = false;
+			}
+			if (dirty || !pixelsCurrent) {
+				pixels.render(snapshot, regionHistory, colorMode, snapshot.vmTime());
+				Arrays.fill(pendingChanges, 0L);
+				dirty = false;
+				pixelsCurrent = true;
+			} else {
+				pixels.render(snapshot, pendingChanges, regionHistory, colorMode, snapshot.vmTime());
 			}
+			return pixels.takeDirty(changed);
+		}
+
+		public synchronized void renderReferences(GC g) {
+			if (!showReferences) {
+				return;
+			}
+			int sqSize = RegionMap.pitch(regionWidth, regionHeight, snapshot.regionCount());
+			references.render(new SwtSurface(g), snapshot, RegionMap.columns(regionWidth, sqSize), sqSize);
 		}
 
 		public synchronized void renderStats(GC g) {
@@ -293,6 +518,181 @@ public class ShenandoahVisualizer implements IConsolePageStateHandler {
 			g.drawText("Total: " + (snapshot.total() / K) + " MB", 0, 2 * LINE, true);
 			g.drawText("Used: " + (snapshot.used() / K) + " MB", 0, 3 * LINE, true);
 			g.drawText("Live: " + (snapshot.live() / K) + " MB", 0, 4 * LINE, true);
+			g.drawText("Allocating: " + (allocations.tlabRate() / K) + " MB/s TLAB, " + (allocations.gclabRate() / K)
+					+ " MB/s GCLAB, " + (allocations.sharedRate() / K) + " MB/s shared", 0, 5 * LINE, true);
+			g.drawText("Regions: " + snapshot.stateCount(REGULAR) + " regular, "
+					+ (snapshot.stateCount(HUMONGOUS) + snapshot.stateCount(PINNED_HUMONGOUS))
+					+ " humongous, " + (snapshot.stateCount(CSET) + snapshot.stateCount(PINNED_CSET))
+					+ " cset, " + snapshot.stateCount(TRASH) + " trash, " + snapshot.freeRegions() + " free ("
+					+ snapshot.stateCount(EMPTY_UNCOMMITTED) + " uncommitted)", 0, 6 * LINE, true);
+			g.drawText("Largest free: " + (snapshot.largestFree() / K) + " MB (" + snapshot.largestCommittedRun()
+					+ " committed, " + snapshot.largestUncommittedRun() + " uncommitted regions), fragmentation "
+					+ String.format("%.2f", snapshot.fragmentation()), 0, 7 * LINE, true);
+
+			// Early warning: the heap fills up before the GC can finish a cycle
+			long exhaustion = allocations.timeToExhaustion();
+			long remaining = cycles.remainingCycleTime(snapshot.vmTime());
+			if (exhaustion != Long.MAX_VALUE) {
+				if (allocations.atRisk(remaining)) {
+					g.setForeground(g.getDevice().getSystemColor(SWT.COLOR_RED));
+				}
+				g.drawText("Heap full in " + exhaustion + " ms" + (remaining > 0 ? ", GC needs " + remaining + " ms" : ""),
+						0, 8 * LINE, true);
+				g.setForeground(g.getDevice().getSystemColor(SWT.COLOR_BLACK));
+			}
+
+			g.drawText("Samples: " + sampled.get() + ", unchanged: " + skipped.get() + ", rendered: " + rendered.get() + ", coalesced: "
+					+ coalesced.get() + ", dropped: " + dropped.get(), 0, 9 * LINE, true);
+			long interval = sampler.interval();
+			g.drawText("Sampling every " + interval + " ms (" + (1000 / interval) + " Hz, " + sampler.minInterval()
+					+ "-" + sampler.maxInterval() + " ms)", 0, 10 * LINE, true);
+
+			RecordingWriter rec = recorder;
+			if (player != null) {
+				g.drawText("Replaying " + player.reader().file().getName() + " at " + player.speed() + "x", 0, 11 * LINE, true);
+			} else if (rec != null) {
+				g.drawText("Recording to " + rec.file().getName() + " (" + rec.records() + " samples)", 0, 11 * LINE, true);
+			} else if (recordingError != null) {
+				g.drawText(recordingError, 0, 11 * LINE, true);
+			}
+
+			if (showInstrumentation) {
+				int line = 12;
+				for (Instrumentation.Probe p : Instrumentation.Probe.values()) {
+					g.drawText(instrumentation.summary(p), 0, line++ * LINE, true);
+				}
+				Histogram allocations = instrumentation.allocations();
+				g.drawText(String.format("%.1f samples/s, %d KB allocated per sample (p99 %d KB), %d dropped",
+						instrumentation.samplesPerSecond(), allocations.mean() / K, allocations.percentile(99) / K,
+						dropped.get()), 0, line * LINE, true);
+			}
+		}
+
+		/**
+		 * Writes the instrumentation histograms and the backpressure counters as CSV.
+		 */
+		public void exportInstrumentation(File file) throws IOException {
+			try (Writer out = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+				instrumentation.export(out);
+				out.append("\ncounter,value\n");
+				out.append("Samples per second,").append(String.format("%.1f", instrumentation.samplesPerSecond())).append('\n');
+				out.append("Samples,").append(Long.toString(sampled.get())).append('\n');
+				out.append("Unchanged,").append(Long.toString(skipped.get())).append('\n');
+				out.append("Rendered,").append(Long.toString(rendered.get())).append('\n');
+				out.append("Coalesced,").append(Long.toString(coalesced.get())).append('\n');
+				out.append("Dropped,").append(Long.toString(dropped.get())).append('\n');
+			}
+		}
+
+		public synchronized void startRecording(File file) throws IOException {
+			stopRecording();
+			recordingError = null;
+			recorder = new RecordingWriter(file, snapshot.regionCount(), snapshot.regionSize());
+		}
+
+		public void stopRecording() {
+			RecordingWriter rec = recorder;
+			recorder = null;
+			if (rec != null) {
+				try {
+					rec.close();
+				} catch (IOException e) {
+					recordingError = "Recording failed: " + e.getMessage();
+				}
+			}
+		}
+
+		public synchronized void replay(File file) throws IOException {
+			player = new RecordingPlayer(new RecordingReader(file));
+			switchSource(player);
+		}
+
+		public synchronized void stopReplay() {
+			player = null;
+			switchSource(live);
+		}
+
+		public synchronized void setReplaySpeed(double speed) {
+			if (player != null) {
+				player.setSpeed(speed);
+			}
+		}
+
+		/**
+		 * Jumps to a position in the recording being replayed, given as a fraction of its length.
+		 */
+		public synchronized void seekReplay(double fraction) {
+			if (player != null) {
+				synchronized (samplingLock) {
+					player.seek(player.startTime() + (long) ((player.endTime() - player.startTime()) * fraction));
+					ring.clear();
+				}
+				clearTimeline();
+			}
+		}
+
+		public synchronized void nextCycle() {
+			if (player != null) {
+				synchronized (samplingLock) {
+					if (!player.nextCycle()) {
+						return;
+					}
+					ring.clear();
+				}
+				clearTimeline();
+			}
+		}
+
+		public synchronized void previousCycle() {
+			if (player != null) {
+				synchronized (samplingLock) {
+					if (!player.previousCycle()) {
+						return;
+					}
+					ring.clear();
+				}
+				clearTimeline();
+			}
+		}
+
+		/**
+		 * Forgets everything derived from earlier samples, e.g. after a seek. Samples
+		 * still queued in the ring must have been dropped under the sampling lock first,
+		 * together with the seek, or they would be folded in after the clear.
+		 */
+		private void clearTimeline() {
+			history.clear();
+			pyramid.clear();
+			cycles.clear();
+			cyclesChanged = true;
+			allocations.clear();
+			if (regionHistory != null) {
+				regionHistory.clear();
+			}
+		}
+
+		private void switchSource(DataProvider source) {
+			synchronized (samplingLock) {
+				source.setMatrixEnabled(showReferences);
+				data = source;
+				ring.clear();
+			}
+			clearTimeline();
+			stats.reset();
+			dirty = true;
+		}
+
+		public synchronized void setShowReferences(boolean show) {
+			// The matrix is not even read from the VM while the overlay is hidden
+			this.showReferences = show;
+			data.setMatrixEnabled(show);
+		}
+
+		/**
+		 * Sets how much timeline history is kept, at the default sampling rate.
+		 */
+		public synchronized void setRetentionMinutes(int minutes) {
+			history.setRetention(minutes * 60_000L);
 		}
 
 		public synchronized void notifyRegionResized(int width, int height) {
@@ -307,9 +707,118 @@ public class ShenandoahVisualizer implements IConsolePageStateHandler {
 
 		}
 
-		public synchronized void updateDataProvider() throws Exception {
-			this.data = new DataProvider("local://" + pid);
-			this.snapshot = this.data.snapshot();
+		public synchronized void invalidateRegions() {
+			dirty = true;
+		}
+
+		/**
+		 * Colors the region map by state, or by one of the statistics kept per region.
+		 */
+		public synchronized void setColorMode(RegionHistory.Mode mode) {
+			colorMode = mode;
+			dirty = true;
+		}
+
+		/**
+		 * Switches live sampling to {@code target}, e.g. a {@code remote://host:port} agent.
+		 * Opening the provider can take as long as a connect timeout, so it happens on a
+		 * thread of its own rather than in the sampling pool shared by all pages, and the
+		 * provider is swapped in on the UI thread once it is open. Sampling goes on from
+		 * the current provider in the meantime.
+		 */
+		public void connect(final String target) {
+			connecting = target;
+			recordingError = null;
+			Thread opener = new Thread(new Runnable() {
+				public void run() {
+					final DataProvider next;
+					try {
+						next = DataProvider.open(target);
+					} catch (Exception e) {
+						recordingError = "Connecting to " + target + " failed: " + e.getMessage();
+						connecting = null;
+						return;
+					}
+					try {
+						display.asyncExec(new Runnable() {
+							public void run() {
+								connected(target, next);
+							}
+						});
+					} catch (SWTException e) {
+						// The display went away while connecting
+						next.close();
+					}
+				}
+			}, "Shenandoah Visualizer Connect " + target);
+			opener.setDaemon(true);
+			opener.start();
+		}
+
+		private synchronized void connected(String target, DataProvider next) {
+			connecting = null;
+			if (disposed) {
+				next.close();
+				return;
+			}
+			this.target = target;
+			updateDataProvider(next);
+			stats.unregister();
+			stats = new RegionStats(target);
+			stats.register();
+		}
+
+		/**
+		 * True while sampling the JVM of this page through jvmstat.
+		 */
+		public synchronized boolean isLocal() {
+			return target.startsWith(PerfDataProvider.LOCAL_PREFIX);
+		}
+
+		/**
+		 * True while sampling a {@link RegionStatsAgent} over the network. Simulations and
+		 * replays are not remote.
+		 */
+		public synchronized boolean isRemote() {
+			return target.startsWith(RemoteDataProvider.PREFIX);
+		}
+
+		private synchronized void updateDataProvider(DataProvider next) {
+			// No sample may be in flight on the provider closed here or taken from below
+			synchronized (samplingLock) {
+				if (live != null) {
+					live.close();
+				}
+				this.live = next;
+				this.player = null;
+				this.data = live;
+				this.data.setMatrixEnabled(showReferences);
+				// Snapshots of the old provider are of no use any more
+				ring.clear();
+				this.snapshot = this.data.snapshot();
+			}
+			this.pendingChanges = new long[(snapshot.regionCount() + 63) >>> 6];
+			clearTimeline();
+			stats.reset();
+			dirty = true;
+		}
+
+		/**
+		 * Stops recording and detaches from the VM once sampling has been cancelled.
+		 */
+		public synchronized void dispose() {
+			disposed = true;
+			stats.unregister();
+			ScheduledFuture<?> f = next;
+			if (f != null) {
+				f.cancel(false);
+			}
+			stopRecording();
+			synchronized (samplingLock) {
+				if (live != null) {
+					live.close();
+				}
+			}
 		}
 
 		public synchronized boolean isDataNull() {
@@ -323,6 +832,9 @@ public class ShenandoahVisualizer implements IConsolePageStateHandler {
 
 	@Override
 	public void dispose() {
+		if (render != null) {
+			render.dispose();
+		}
 		g.dispose();
 		image.dispose();
 	}
@@ -341,21 +853,48 @@ public class ShenandoahVisualizer implements IConsolePageStateHandler {
 		outerGroup.setBackgroundMode(SWT.INHERIT_FORCE);
 		//Needs a default size, will automatically be resized correctly in the Resize listener
 		image = new Image(Display.getDefault(), 1000, 1000);
+		imageData = newImageData(1000, 1000);
 		
 		
 		g = new GC(image);
-		Colors.device = Display.getDefault();
 		
 		fillLegend();
 		
-		render = new Render(outerGroup);
+		render = new Render(outerGroup, "local://" + pid);
 		createPanels(outerGroup, form);
-		sched.scheduleWithFixedDelay(render, 0, 100, MILLISECONDS);
+		render.start(sched);
 		
 	}
 
 
+	/**
+	 * The part of the 24 bit {@code data} within {@code bounds}, given as x, y, width and height.
+	 */
+	private static ImageData crop(ImageData data, int[] bounds) {
+		if (bounds[0] == 0 && bounds[1] == 0 && bounds[2] == data.width && bounds[3] == data.height) {
+			return data;
+		}
+		ImageData part = new ImageData(bounds[2], bounds[3], data.depth, data.palette);
+		for (int r = 0; r < bounds[3]; r++) {
+			System.arraycopy(data.data, (bounds[1] + r) * data.bytesPerLine + bounds[0] * 3,
+					part.data, r * part.bytesPerLine, bounds[2] * 3);
+		}
+		return part;
+	}
+
+	private static ImageData newImageData(int width, int height) {
+		return new ImageData(width, height, 24, new PaletteData(0xFF0000, 0xFF00, 0xFF));
+	}
+
 	public void fillLegend() {
+		items.putAll(legendItems());
+	}
+
+	/**
+	 * One sample region per legend entry, in display order.
+	 */
+	static Map<String, RegionStat> legendItems() {
+		Map<String, RegionStat> items = new LinkedHashMap<>();
 
 		items.put("Empty Uncommitted", new RegionStat(0.0f, 0.0f, 0.0f, 0.0f, 0.0f, EMPTY_UNCOMMITTED));
 
@@ -388,6 +927,13 @@ public class ShenandoahVisualizer implements IConsolePageStateHandler {
 		items.put("1/3 Live + Pinned", new RegionStat(1.0f, 0.3f, 1f / 3, 0.0f, 0.0f, PINNED));
 
 		items.put("1/3 Live + Pinned CSet", new RegionStat(1.0f, 1f / 3, 0.0f, 0.0f, 0.0f, PINNED_CSET));
+		return items;
+	}
+
+	private void showScrubber(Composite parent, boolean show) {
+		((GridData) render.scrubber.getLayoutData()).exclude = !show;
+		render.scrubber.setVisible(show);
+		parent.layout(true);
 	}
 
 	public void createPanels(Composite parent, ScrolledForm form) {
@@ -399,9 +945,44 @@ public class ShenandoahVisualizer implements IConsolePageStateHandler {
 		graphPanel.setLayoutData(graphData);
 		graphPanel.addPaintListener(new PaintListener() {
 			public void paintControl(PaintEvent e) {
+				long start = System.nanoTime();
 				render.renderGraph(e.gc);
+				render.instrumentation.stop(Instrumentation.Probe.GRAPH, start);
+			}
+		});
+		graphPanel.addMouseWheelListener(new MouseWheelListener() {
+			public void mouseScrolled(MouseEvent e) {
+				render.zoomGraph(e.count);
+				graphPanel.redraw();
+			}
+		});
+
+		Menu graphMenu = new Menu(graphPanel);
+		MenuItem retention = new MenuItem(graphMenu, SWT.CASCADE);
+		retention.setText("History Retention");
+		Menu retentionMenu = new Menu(retention);
+		retention.setMenu(retentionMenu);
+		for (int minutes : new int[] {5, 30, 120}) {
+			MenuItem item = new MenuItem(retentionMenu, SWT.RADIO);
+			item.setText(minutes + " minutes");
+			item.setSelection(minutes * 60_000L == TimelineHistory.DEFAULT_RETENTION);
+			item.addSelectionListener(new SelectionAdapter() {
+				public void widgetSelected(SelectionEvent e) {
+					if (item.getSelection()) {
+						render.setRetentionMinutes(minutes);
+					}
+				}
+			});
+		}
+		MenuItem showStates = new MenuItem(graphMenu, SWT.CHECK);
+		showStates.setText("Show Region States");
+		showStates.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				render.showStates = showStates.getSelection();
+				graphPanel.redraw();
 			}
 		});
+		graphPanel.setMenu(graphMenu);
 
 		Canvas statusPanel = new Canvas(parent, SWT.NO_BACKGROUND);
 		GridData statusData = new GridData(GridData.FILL, GridData.FILL, false, false);
@@ -409,9 +990,79 @@ public class ShenandoahVisualizer implements IConsolePageStateHandler {
 		statusPanel.setLayoutData(statusData);
 		statusPanel.addPaintListener(new PaintListener() {
 			public void paintControl(PaintEvent e) {
+				long start = System.nanoTime();
 				render.renderStats(e.gc);
+				render.instrumentation.stop(Instrumentation.Probe.STATS, start);
 			}
 		});
+
+		Menu statusMenu = new Menu(statusPanel);
+		MenuItem fastest = new MenuItem(statusMenu, SWT.CASCADE);
+		fastest.setText("Fastest Sampling");
+		Menu fastestMenu = new Menu(fastest);
+		fastest.setMenu(fastestMenu);
+		for (long interval : new long[] {1, 5, 20, 100}) {
+			MenuItem item = new MenuItem(fastestMenu, SWT.RADIO);
+			item.setText("Every " + interval + " ms");
+			item.setSelection(interval == AdaptiveSampler.DEFAULT_MIN_INTERVAL);
+			item.addSelectionListener(new SelectionAdapter() {
+				public void widgetSelected(SelectionEvent e) {
+					if (item.getSelection()) {
+						render.sampler.setBounds(interval, render.sampler.maxInterval());
+					}
+				}
+			});
+		}
+		MenuItem slowest = new MenuItem(statusMenu, SWT.CASCADE);
+		slowest.setText("Slowest Sampling");
+		Menu slowestMenu = new Menu(slowest);
+		slowest.setMenu(slowestMenu);
+		for (long interval : new long[] {100, 1_000, 2_000, 5_000}) {
+			MenuItem item = new MenuItem(slowestMenu, SWT.RADIO);
+			item.setText("Every " + interval + " ms");
+			item.setSelection(interval == AdaptiveSampler.DEFAULT_MAX_INTERVAL);
+			item.addSelectionListener(new SelectionAdapter() {
+				public void widgetSelected(SelectionEvent e) {
+					if (item.getSelection()) {
+						render.sampler.setBounds(render.sampler.minInterval(), interval);
+					}
+				}
+			});
+		}
+		new MenuItem(statusMenu, SWT.SEPARATOR);
+		MenuItem showInstrumentation = new MenuItem(statusMenu, SWT.CHECK);
+		showInstrumentation.setText("Show Instrumentation");
+		showInstrumentation.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				render.showInstrumentation = showInstrumentation.getSelection();
+				statusPanel.redraw();
+			}
+		});
+		MenuItem exportInstrumentation = new MenuItem(statusMenu, SWT.PUSH);
+		exportInstrumentation.setText("Export Instrumentation...");
+		exportInstrumentation.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				FileDialog dialog = new FileDialog(statusPanel.getShell(), SWT.SAVE);
+				dialog.setFilterExtensions(new String[] {"*.csv"});
+				dialog.setOverwrite(true);
+				String file = dialog.open();
+				if (file != null) {
+					try {
+						render.exportInstrumentation(new File(file));
+					} catch (IOException ex) {
+						render.recordingError = "Export failed: " + ex.getMessage();
+					}
+				}
+			}
+		});
+		MenuItem resetInstrumentation = new MenuItem(statusMenu, SWT.PUSH);
+		resetInstrumentation.setText("Reset Instrumentation");
+		resetInstrumentation.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				render.instrumentation.reset();
+			}
+		});
+		statusPanel.setMenu(statusMenu);
 		Canvas regionsPanel = new Canvas(parent, SWT.NO_BACKGROUND);
 		GridData regionsData = new GridData(GridData.FILL, GridData.FILL, true, true);
 		regionsData.horizontalSpan = 2;
@@ -419,12 +1070,173 @@ public class ShenandoahVisualizer implements IConsolePageStateHandler {
 		regionsPanel.setLayoutData(regionsData);
 		regionsPanel.addPaintListener(new PaintListener() {
 			public void paintControl(PaintEvent e) {
-				render.renderRegions(g);
+				long start = System.nanoTime();
+				if (render.drawsPixels()) {
+					// One upload per frame of the part that changed, instead of a few GC calls per cell
+					if (render.renderRegions(imageData, pixelBounds)) {
+						Image patch = new Image(Display.getDefault(), crop(imageData, pixelBounds));
+						g.drawImage(patch, pixelBounds[0], pixelBounds[1]);
+						patch.dispose();
+					}
+				} else {
+					render.renderRegions(g);
+				}
 				e.gc.drawImage(image, 0, 0, image.getBounds().width, image.getBounds().height,
 						0, 0, regionsPanel.getBounds().width, regionsPanel.getBounds().height);
+				render.renderReferences(e.gc);
+				render.instrumentation.stop(Instrumentation.Probe.REGIONS, start);
 			}
 		});
 		
+		Menu regionsMenu = new Menu(regionsPanel);
+		MenuItem showReferences = new MenuItem(regionsMenu, SWT.CHECK);
+		showReferences.setText("Show Incoming References");
+		showReferences.setSelection(render.showReferences);
+		showReferences.setEnabled(render.data.hasMatrix());
+		showReferences.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				render.setShowReferences(showReferences.getSelection());
+				regionsPanel.redraw();
+			}
+		});
+		MenuItem edgeBudget = new MenuItem(regionsMenu, SWT.CASCADE);
+		edgeBudget.setText("Reference Edge Budget");
+		Menu edgeBudgetMenu = new Menu(edgeBudget);
+		edgeBudget.setMenu(edgeBudgetMenu);
+		for (int budget : new int[] {1_000, ReferenceOverlay.DEFAULT_EDGE_BUDGET, 100_000}) {
+			MenuItem item = new MenuItem(edgeBudgetMenu, SWT.RADIO);
+			item.setText(budget + " lines per frame");
+			item.setSelection(budget == render.references.edgeBudget());
+			item.addSelectionListener(new SelectionAdapter() {
+				public void widgetSelected(SelectionEvent e) {
+					if (item.getSelection()) {
+						render.references.setEdgeBudget(budget);
+						regionsPanel.redraw();
+					}
+				}
+			});
+		}
+		MenuItem colorBy = new MenuItem(regionsMenu, SWT.CASCADE);
+		colorBy.setText("Color By");
+		Menu colorByMenu = new Menu(colorBy);
+		colorBy.setMenu(colorByMenu);
+		for (RegionHistory.Mode mode : RegionHistory.Mode.values()) {
+			MenuItem item = new MenuItem(colorByMenu, SWT.RADIO);
+			item.setText(mode.label());
+			item.setSelection(mode == render.colorMode);
+			item.addSelectionListener(new SelectionAdapter() {
+				public void widgetSelected(SelectionEvent e) {
+					if (item.getSelection()) {
+						render.setColorMode(mode);
+						regionsPanel.redraw();
+					}
+				}
+			});
+		}
+		new MenuItem(regionsMenu, SWT.SEPARATOR);
+		MenuItem agent = new MenuItem(regionsMenu, SWT.PUSH);
+		agent.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				String target = "local://" + pid;
+				if (render.isLocal()) {
+					InputDialog dialog = new InputDialog(regionsPanel.getShell(), "Connect to Agent",
+							"Address of the region stats agent, or synthetic://regions=N,rate=MB/s to simulate a heap",
+							"remote://localhost:" + RegionStatsAgent.DEFAULT_PORT, null);
+					if (dialog.open() != Window.OK) {
+						return;
+					}
+					target = dialog.getValue();
+				}
+				render.connect(target);
+			}
+		});
+
+		new MenuItem(regionsMenu, SWT.SEPARATOR);
+		MenuItem record = new MenuItem(regionsMenu, SWT.PUSH);
+		record.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				if (render.recorder != null) {
+					render.stopRecording();
+					return;
+				}
+				FileDialog dialog = new FileDialog(regionsPanel.getShell(), SWT.SAVE);
+				dialog.setFilterExtensions(new String[] {"*.shrv"});
+				dialog.setOverwrite(true);
+				String file = dialog.open();
+				if (file != null) {
+					try {
+						render.startRecording(new File(file));
+					} catch (IOException ex) {
+						render.recordingError = "Recording failed: " + ex.getMessage();
+					}
+				}
+			}
+		});
+		MenuItem replay = new MenuItem(regionsMenu, SWT.PUSH);
+		replay.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				if (render.player != null) {
+					render.stopReplay();
+					showScrubber(parent, false);
+					return;
+				}
+				FileDialog dialog = new FileDialog(regionsPanel.getShell(), SWT.OPEN);
+				dialog.setFilterExtensions(new String[] {"*.shrv", "*"});
+				String file = dialog.open();
+				if (file != null) {
+					try {
+						render.replay(new File(file));
+						showScrubber(parent, true);
+					} catch (IOException ex) {
+						render.recordingError = "Replay failed: " + ex.getMessage();
+					}
+				}
+			}
+		});
+		MenuItem speed = new MenuItem(regionsMenu, SWT.CASCADE);
+		speed.setText("Replay Speed");
+		Menu speedMenu = new Menu(speed);
+		speed.setMenu(speedMenu);
+		for (double factor : new double[] {0, 0.25, 1, 4, 16, 64}) {
+			MenuItem item = new MenuItem(speedMenu, SWT.RADIO);
+			item.setText(factor == 0 ? "Paused" : factor + "x");
+			item.setSelection(factor == 1);
+			item.addSelectionListener(new SelectionAdapter() {
+				public void widgetSelected(SelectionEvent e) {
+					if (item.getSelection()) {
+						render.setReplaySpeed(factor);
+					}
+				}
+			});
+		}
+		MenuItem nextCycle = new MenuItem(regionsMenu, SWT.PUSH);
+		nextCycle.setText("Next GC Cycle");
+		nextCycle.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				render.nextCycle();
+			}
+		});
+		MenuItem previousCycle = new MenuItem(regionsMenu, SWT.PUSH);
+		previousCycle.setText("Previous GC Cycle");
+		previousCycle.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				render.previousCycle();
+			}
+		});
+		regionsMenu.addMenuListener(new MenuAdapter() {
+			public void menuShown(MenuEvent e) {
+				agent.setText(render.isLocal() ? "Connect to Agent..." : "Back to Local JVM");
+				agent.setEnabled(render.player == null && render.connecting == null);
+				record.setText(render.recorder != null ? "Stop Recording" : "Start Recording...");
+				record.setEnabled(render.player == null);
+				replay.setText(render.player != null ? "Back to Live" : "Replay Recording...");
+				speed.setEnabled(render.player != null);
+				nextCycle.setEnabled(render.player != null);
+				previousCycle.setEnabled(render.player != null);
+			}
+		});
+		regionsPanel.setMenu(regionsMenu);
+
 		regionsPanel.addDisposeListener(new DisposeListener() {
 			public void widgetDisposed(DisposeEvent e) {
 			g.dispose();
@@ -438,9 +1250,43 @@ public class ShenandoahVisualizer implements IConsolePageStateHandler {
 		legendPanel.setLayoutData(legendData);
 		legendPanel.addPaintListener(new PaintListener() {
 			public void paintControl(PaintEvent e) {
-				render.renderLegend(e.gc);
+				Render.renderLegend(new SwtSurface(e.gc), items);
+			}
+		});
+
+		Scale scrubber = new Scale(parent, SWT.HORIZONTAL);
+		GridData scrubberData = new GridData(GridData.FILL, GridData.BEGINNING, true, false);
+		scrubberData.horizontalSpan = 3;
+		scrubberData.exclude = true;
+		scrubber.setLayoutData(scrubberData);
+		scrubber.setVisible(false);
+		scrubber.setMaximum(1000);
+		scrubber.addSelectionListener(new SelectionAdapter() {
+			public void widgetSelected(SelectionEvent e) {
+				render.seekReplay(1D * scrubber.getSelection() / scrubber.getMaximum());
+			}
+		});
+		render.scrubber = scrubber;
+
+		Table cycleTable = new Table(parent, SWT.VIRTUAL | SWT.BORDER | SWT.FULL_SELECTION);
+		GridData cycleData = new GridData(GridData.FILL, GridData.FILL, true, false);
+		cycleData.horizontalSpan = 3;
+		cycleData.heightHint = 120;
+		cycleTable.setLayoutData(cycleData);
+		cycleTable.setHeaderVisible(true);
+		for (String title : new String[] {"Cycle", "Start", "Duration", "Mark", "Evacuation", "Update Refs",
+				"CSet Regions", "Reclaimed", "Humongous", "Allocation Rate"}) {
+			TableColumn column = new TableColumn(cycleTable, SWT.RIGHT);
+			column.setText(title);
+			column.pack();
+		}
+		cycleTable.addListener(SWT.SetData, new Listener() {
+			public void handleEvent(Event e) {
+				TableItem item = (TableItem) e.item;
+				render.fillCycleRow(item, cycleTable.indexOf(item));
 			}
 		});
+		render.cycleTable = cycleTable;
 
 		/*
 		 * An SWT.Resize event isn't called by resizing the form so we manually resize the
@@ -462,11 +1308,12 @@ public class ShenandoahVisualizer implements IConsolePageStateHandler {
 		regionsPanel.addControlListener(new ControlAdapter() {
 			public void controlResized(ControlEvent ev) {
 				render.notifyRegionResized(regionsPanel.getBounds().width, regionsPanel.getBounds().height);
-				dirty = true;
+				render.invalidateRegions();
 				g.dispose();
 				image.dispose();
 				image = new Image(Display.getDefault(), regionsPanel.getBounds().width, regionsPanel.getBounds().height);
 				g = new GC(image);
+				imageData = newImageData(regionsPanel.getBounds().width, regionsPanel.getBounds().height);
 				
 			}
 		});
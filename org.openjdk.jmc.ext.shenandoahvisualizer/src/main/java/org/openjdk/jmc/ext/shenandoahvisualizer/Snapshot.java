@@ -1,38 +1,74 @@
 package org.openjdk.jmc.ext.shenandoahvisualizer;
 
-import java.util.List;
+import java.util.Arrays;
+import java.util.BitSet;
 
+/**
+ * Region data for a single sample, stored column-wise: the raw data word of every
+ * region, its decoded state and its encoded matrix row. Instances are recycled by
+ * the {@link DataProvider} that created them, see {@link DataProvider#release(Snapshot)}.
+ */
 public class Snapshot {
 
-    private final long time;
-    private final long regionSize;
-    private final List<RegionStat> stats;
-    private final Phase phase;
+    private static final RegionState[] STATES = RegionState.values();
 
-    public Snapshot(long time, long regionSize, List<RegionStat> stats, int status) {
+    private long time;
+    private long vmTime;
+    private long regionSize;
+    private Phase phase;
+
+    private final int regionCount;
+    final long[] data;
+    final byte[] states;
+    final String[] matrix;
+    final SnapshotBuilder builder;
+    private final MatrixCache matrixCache;
+    final RegionTotals totals = new RegionTotals();
+    final int[] stateCounts = new int[STATES.length];
+
+    // One bit per region whose data word differs from the previous sample
+    final long[] changed;
+    int changedCount;
+
+    // Longest runs of adjacent empty regions, see SnapshotBuilder
+    int largestFreeRun;
+    int largestCommittedRun;
+    int largestUncommittedRun;
+
+    private final RegionStat view = new RegionStat();
+
+    Snapshot(int regionCount, SnapshotBuilder builder, MatrixCache matrixCache) {
+        this.regionCount = regionCount;
+        this.builder = builder;
+        this.matrixCache = matrixCache;
+        this.data = new long[regionCount];
+        this.states = new byte[regionCount];
+        this.matrix = new String[regionCount];
+        this.changed = new long[(regionCount + 63) >>> 6];
+        this.phase = Phase.UNKNOWN;
+    }
+
+    void reset(long time, long vmTime, long regionSize, int status) {
         this.time = time;
+        this.vmTime = vmTime;
         this.regionSize = regionSize;
-        this.stats = stats;
+        this.phase = toPhase(status);
+    }
 
+    static Phase toPhase(int status) {
         switch (status) {
             case 0x0:
-                this.phase = Phase.IDLE;
-                break;
+                return Phase.IDLE;
             case 0x1:
-                this.phase = Phase.MARKING;
-                break;
+                return Phase.MARKING;
             case 0x2:
-                this.phase = Phase.EVACUATING;
-                break;
+                return Phase.EVACUATING;
             case 0x4:
-                this.phase = Phase.UPDATE_REFS;
-                break;
+                return Phase.UPDATE_REFS;
             case 0x8:
-            	this.phase = Phase.TRAVERSAL;
-            	break;
+                return Phase.TRAVERSAL;
             default:
-                this.phase = Phase.UNKNOWN;
-                break;
+                return Phase.UNKNOWN;
         }
     }
 
@@ -40,14 +76,125 @@ public class Snapshot {
         return phase;
     }
 
+    /**
+     * Returns a view of region {@code i}. The view is shared by all calls on this
+     * snapshot and is only valid until the next call to this method.
+     */
     public RegionStat get(int i) {
-        return stats.get(i);
+        return view.wrap(data[i], matrix[i]);
+    }
+
+    /**
+     * Returns the regions holding references into region {@code i}, or null when the
+     * matrix was not sampled. Rows are decoded lazily and shared between snapshots of
+     * the same provider, so the result is only valid until the next call.
+     */
+    public BitSet incoming(int i) {
+        return matrixCache.row(i, matrix[i]);
+    }
+
+    public long data(int i) {
+        return data[i];
+    }
+
+    public RegionState state(int i) {
+        return STATES[states[i]];
+    }
+
+    /**
+     * Returns how many regions are in {@code state}.
+     */
+    public int stateCount(RegionState state) {
+        return stateCounts[state.ordinal()];
+    }
+
+    /**
+     * Returns the number of empty regions, committed or not.
+     */
+    public int freeRegions() {
+        return stateCount(RegionState.EMPTY_COMMITTED) + stateCount(RegionState.EMPTY_UNCOMMITTED);
+    }
+
+    /**
+     * Returns the longest run of adjacent empty regions, committed or not: the largest
+     * humongous object that can be allocated without a collection, in regions.
+     */
+    public int largestFreeRun() {
+        return largestFreeRun;
+    }
+
+    public int largestCommittedRun() {
+        return largestCommittedRun;
+    }
+
+    public int largestUncommittedRun() {
+        return largestUncommittedRun;
+    }
+
+    /**
+     * Returns how scattered the empty regions are, from 0 when they are all adjacent
+     * to close to 1 when no two of them are. 0 when there are none.
+     */
+    public double fragmentation() {
+        int free = freeRegions();
+        return free == 0 ? 0 : 1 - (double) largestFreeRun / free;
     }
 
     public long time() {
         return time;
     }
 
+    /**
+     * Returns when the VM published this data, converted to wall clock time. Same as
+     * {@link #time()} for sources that do not know the VM timestamp.
+     */
+    public long vmTime() {
+        return vmTime;
+    }
+
+    public long regionSize() {
+        return regionSize;
+    }
+
+    public boolean isChanged(int i) {
+        return (changed[i >>> 6] & (1L << i)) != 0;
+    }
+
+    /**
+     * Returns the first region at or after {@code from} that changed since the
+     * previous sample, or -1 if there is none.
+     */
+    public int nextChanged(int from) {
+        if (from >= regionCount) {
+            return -1;
+        }
+        int w = from >>> 6;
+        long bits = changed[w] & (-1L << from);
+        while (true) {
+            if (bits != 0) {
+                return (w << 6) + Long.numberOfTrailingZeros(bits);
+            }
+            if (++w == changed.length) {
+                return -1;
+            }
+            bits = changed[w];
+        }
+    }
+
+    public int changedCount() {
+        return changedCount;
+    }
+
+    /**
+     * ORs the change bits of this snapshot into {@code bits}, which must be at least
+     * {@code (regionCount() + 63) / 64} words long.
+     */
+    public void mergeChanges(long[] bits) {
+        for (int w = 0; w < changed.length; w++) {
+            bits[w] |= changed[w];
+        }
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -56,20 +203,21 @@ public class Snapshot {
         Snapshot snapshot = (Snapshot) o;
 
         if (time != snapshot.time) return false;
-        if (!stats.equals(snapshot.stats)) return false;
-        return phase == snapshot.phase;
+        if (phase != snapshot.phase) return false;
+        if (!Arrays.equals(data, snapshot.data)) return false;
+        return Arrays.equals(matrix, snapshot.matrix);
     }
 
     @Override
     public int hashCode() {
         int result = (int) (time ^ (time >>> 32));
-        result = 31 * result + stats.hashCode();
+        result = 31 * result + Arrays.hashCode(data);
         result = 31 * result + phase.hashCode();
         return result;
     }
 
     public int regionCount() {
-        return stats.size();
+        return regionCount;
     }
 
     public long total() {
@@ -77,54 +225,52 @@ public class Snapshot {
     }
 
     public long used() {
-        long used = 0L;
-        for (RegionStat rs : stats) {
-            used += regionSize * rs.used();
-        }
-        return used;
+        return scale(totals.used);
     }
 
     public long committed() {
-        long r = 0L;
-        for (RegionStat rs : stats) {
-            r += (rs.state() == RegionState.EMPTY_UNCOMMITTED) ? 0 : regionSize * rs.used();
-        }
-        return r;
+        return scale(totals.committed);
     }
 
     public long trash() {
-        long r = 0L;
-        for (RegionStat rs : stats) {
-            r += (rs.state() == RegionState.TRASH) ? rs.used() : 0;
-        }
-        return r;
+        return scale(totals.trash);
     }
 
     public long collectionSet() {
-        long used = 0L;
-        for (RegionStat rs : stats) {
-            if (rs.state() == RegionState.CSET || rs.state() == RegionState.PINNED_CSET) {
-                used += regionSize * rs.live();
-            }
-        }
-        return used;
+        return scale(totals.collectionSet);
     }
 
     public long humongous() {
-        long used = 0L;
-        for (RegionStat rs : stats) {
-            if (rs.state() == RegionState.HUMONGOUS || rs.state() == RegionState.PINNED_HUMONGOUS) {
-                used += regionSize * rs.used();
-            }
-        }
-        return used;
+        return scale(totals.humongous);
+    }
+
+    /**
+     * Size of {@link #largestFreeRun()}, in the units of {@link #used()}.
+     */
+    public long largestFree() {
+        return regionSize * largestFreeRun;
     }
 
     public long live() {
-        long live = 0L;
-        for (RegionStat rs : stats) {
-            live += regionSize * rs.live();
-        }
-        return live;
+        return scale(totals.live);
+    }
+
+    /**
+     * Total allocated in TLABs since the source started, in the units of {@link #used()}.
+     */
+    public long tlabAllocated() {
+        return scale(totals.tlabAllocated);
+    }
+
+    public long gclabAllocated() {
+        return scale(totals.gclabAllocated);
+    }
+
+    public long sharedAllocated() {
+        return scale(totals.sharedAllocated);
+    }
+
+    private long scale(long percents) {
+        return regionSize * percents / 100;
     }
 }
@@ -0,0 +1,177 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Turns raw region data words into {@link Snapshot}s for one source of samples:
+ * owns the snapshot pool and the matrix cache, and keeps the previous words so that
+ * states, totals and the change bitmap are only updated for regions that changed.
+ * The same pass measures the runs of empty regions, 64 regions at a time from bitmaps
+ * of the empty ones.
+ */
+final class SnapshotBuilder {
+
+    // Enough for the current snapshot held by the renderer plus a few in flight
+    private static final int POOL_SIZE = 4;
+
+    private static final int EMPTY_UNCOMMITTED = RegionState.EMPTY_UNCOMMITTED.ordinal();
+    private static final int EMPTY_COMMITTED = RegionState.EMPTY_COMMITTED.ordinal();
+
+    private final int regionCount;
+    private final ArrayDeque<Snapshot> pool = new ArrayDeque<>(POOL_SIZE);
+    private final MatrixCache matrixCache;
+
+    // Region words and states as of the previous sample, with the totals over them.
+    // An all-zero word is an empty uncommitted region, which contributes nothing.
+    private final long[] previous;
+    private final byte[] states;
+    private final RegionTotals totals = new RegionTotals();
+    private final int[] stateCounts = new int[RegionState.values().length];
+    // One bit per empty region, like the change bitmap
+    private final long[] committedFree;
+    private final long[] uncommittedFree;
+    private final Runs freeRuns = new Runs();
+    private final Runs committedRuns = new Runs();
+    private final Runs uncommittedRuns = new Runs();
+
+    SnapshotBuilder(int regionCount) {
+        this.regionCount = regionCount;
+        this.matrixCache = new MatrixCache(regionCount);
+        this.previous = new long[regionCount];
+        this.states = new byte[regionCount];
+        this.stateCounts[RegionState.EMPTY_UNCOMMITTED.ordinal()] = regionCount;
+        this.committedFree = new long[(regionCount + 63) >>> 6];
+        this.uncommittedFree = new long[(regionCount + 63) >>> 6];
+        for (int c = 0; c < regionCount; c++) {
+            uncommittedFree[c >>> 6] |= 1L << c;
+        }
+    }
+
+    int regionCount() {
+        return regionCount;
+    }
+
+    /**
+     * Returns a snapshot whose {@code data} (and, if wanted, {@code matrix}) the
+     * caller fills in before passing it to {@link #finish}.
+     */
+    synchronized Snapshot acquire() {
+        Snapshot s = pool.poll();
+        return s != null ? s : new Snapshot(regionCount, this, matrixCache);
+    }
+
+    synchronized void release(Snapshot s) {
+        if (s != null && s.builder == this && pool.size() < POOL_SIZE) {
+            pool.push(s);
+        }
+    }
+
+    Snapshot finish(Snapshot s, long time, long vmTime, long regionSize, int status) {
+        long[] words = s.data;
+
+        // Only regions whose word moved since the last sample touch the totals
+        long[] changed = s.changed;
+        Arrays.fill(changed, 0L);
+        int changedCount = 0;
+        freeRuns.clear();
+        committedRuns.clear();
+        uncommittedRuns.clear();
+        for (int b = 0; b < changed.length; b++) {
+            int end = Math.min(regionCount, (b + 1) << 6);
+            for (int c = b << 6; c < end; c++) {
+                long w = words[c];
+                long p = previous[c];
+                if (w != p) {
+                    totals.remove(p);
+                    totals.add(w);
+                    totals.allocated(p, w);
+                    int state = RegionStat.state(w).ordinal();
+                    stateCounts[states[c]]--;
+                    stateCounts[state]++;
+                    states[c] = (byte) state;
+                    previous[c] = w;
+                    long bit = 1L << c;
+                    changed[b] |= bit;
+                    changedCount++;
+                    committedFree[b] = state == EMPTY_COMMITTED ? committedFree[b] | bit : committedFree[b] & ~bit;
+                    uncommittedFree[b] = state == EMPTY_UNCOMMITTED ? uncommittedFree[b] | bit : uncommittedFree[b] & ~bit;
+                }
+            }
+            int n = end - (b << 6);
+            freeRuns.add(committedFree[b] | uncommittedFree[b], n);
+            committedRuns.add(committedFree[b], n);
+            uncommittedRuns.add(uncommittedFree[b], n);
+        }
+        s.changedCount = changedCount;
+        s.largestFreeRun = freeRuns.largest;
+        s.largestCommittedRun = committedRuns.largest;
+        s.largestUncommittedRun = uncommittedRuns.largest;
+        System.arraycopy(states, 0, s.states, 0, regionCount);
+        System.arraycopy(stateCounts, 0, s.stateCounts, 0, stateCounts.length);
+        s.totals.set(totals);
+        s.reset(time, vmTime, regionSize, status);
+        return s;
+    }
+
+    /**
+     * Longest run of set bits over a sequence of bitmap words.
+     */
+    static final class Runs {
+        // Set bits at the end of the words added so far
+        int run;
+        int largest;
+
+        void clear() {
+            run = 0;
+            largest = 0;
+        }
+
+        /**
+         * Appends the lowest {@code n} bits of {@code bits}, higher bits must be clear.
+         */
+        void add(long bits, int n) {
+            long all = n == 64 ? -1L : (1L << n) - 1;
+            if (bits == all) {
+                run += n;
+            } else if (bits == 0) {
+                run = 0;
+            } else {
+                // The run going on continues into the lowest bits, a new one may start at the highest
+                run += Long.numberOfTrailingZeros(~bits);
+                largest = Math.max(largest, run);
+                longer(bits);
+                run = Long.numberOfLeadingZeros(~(bits << (64 - n)));
+            }
+            largest = Math.max(largest, run);
+        }
+
+        /**
+         * Raises {@code largest} to the longest run within {@code bits}. With {@code y}
+         * having a bit set where {@code h} set bits start, doubling {@code h} shows
+         * in a few steps whether there is any run longer than {@code largest}.
+         */
+        private void longer(long bits) {
+            int need = largest + 1;
+            if (need > 64) {
+                return;
+            }
+            long y = bits;
+            int h = 1;
+            while (h < need && y != 0) {
+                int step = Math.min(h, need - h);
+                y &= y >>> step;
+                h += step;
+            }
+            if (y == 0) {
+                return;
+            }
+            while ((y & (y >>> 1)) != 0) {
+                y &= y >>> 1;
+                h++;
+            }
+            largest = h;
+        }
+    }
+
+}
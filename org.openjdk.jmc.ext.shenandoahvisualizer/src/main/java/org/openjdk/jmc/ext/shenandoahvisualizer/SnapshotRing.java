@@ -0,0 +1,114 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded single-producer/single-consumer queue handing snapshots from the
+ * sampling thread to the UI thread without locking either of them. While the
+ * consumer is a full ring behind, the producer keeps the newest snapshot back
+ * instead of losing its changes, see {@link #publish(Snapshot)}.
+ */
+public class SnapshotRing {
+
+    private final AtomicReferenceArray<Snapshot> slots;
+    private final int mask;
+
+    // Next slot to write, only advanced by the producer
+    private final AtomicLong head = new AtomicLong();
+    // Next slot to read, only advanced by the consumer
+    private final AtomicLong tail = new AtomicLong();
+
+    // Newest snapshot that did not fit, only touched by the producer
+    private Snapshot pending;
+
+    public SnapshotRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    public int capacity() {
+        return mask + 1;
+    }
+
+    /**
+     * Producer side. Returns false, leaving ownership with the caller, when the
+     * consumer has fallen a full ring behind.
+     */
+    public boolean offer(Snapshot s) {
+        long h = head.get();
+        if (h - tail.get() > mask) {
+            return false;
+        }
+        slots.lazySet((int) (h & mask), s);
+        head.lazySet(h + 1);
+        return true;
+    }
+
+    /**
+     * Producer side. Publishes {@code s}, or keeps it back while the ring is full. A
+     * snapshot kept back is published by the next call once there is room, or replaced
+     * by the next snapshot, which then takes over its change bits so that the consumer
+     * still repaints every region that changed. Call with null to retry publishing the
+     * snapshot kept back when nothing new was sampled. Returns the snapshot replaced,
+     * which the caller recycles, or null.
+     */
+    public Snapshot publish(Snapshot s) {
+        Snapshot replaced = null;
+        if (s != null && pending != null) {
+            if (pending.regionCount() == s.regionCount()) {
+                long[] changed = s.changed;
+                long[] carried = pending.changed;
+                int count = 0;
+                for (int w = 0; w < changed.length; w++) {
+                    changed[w] |= carried[w];
+                    count += Long.bitCount(changed[w]);
+                }
+                s.changedCount = count;
+            }
+            replaced = pending;
+            pending = null;
+        }
+        Snapshot next = s != null ? s : pending;
+        if (next != null) {
+            pending = offer(next) ? null : next;
+        }
+        return replaced;
+    }
+
+    /**
+     * Recycles everything published or kept back, e.g. when the source changes. Only
+     * safe while the producer is paused.
+     */
+    public void clear() {
+        Snapshot s;
+        while ((s = poll()) != null) {
+            s.builder.release(s);
+        }
+        if (pending != null) {
+            pending.builder.release(pending);
+            pending = null;
+        }
+    }
+
+    /**
+     * Consumer side. Returns the oldest published snapshot, or null if there is none.
+     */
+    public Snapshot poll() {
+        long t = tail.get();
+        if (t == head.get()) {
+            return null;
+        }
+        int idx = (int) (t & mask);
+        Snapshot s = slots.get(idx);
+        slots.lazySet(idx, null);
+        tail.lazySet(t + 1);
+        return s;
+    }
+
+    public int size() {
+        return (int) (head.get() - tail.get());
+    }
+
+}
@@ -15,7 +15,7 @@ public class SnapshotView {
     public SnapshotView(Snapshot s) {
         time = s.time();
         phase = s.phase();
-        total = total();
+        total = s.total();
         committed = s.committed();
         used = s.used();
         live = s.live();
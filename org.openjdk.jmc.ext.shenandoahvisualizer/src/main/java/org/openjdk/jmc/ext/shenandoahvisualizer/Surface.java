@@ -0,0 +1,42 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+/**
+ * The few drawing primitives the region map, legend and timeline need, so that they
+ * can be drawn without a display. Colors are 0xRRGGBB ints from {@link Colors}.
+ * Rectangle outlines and lines follow SWT semantics: an outline of width {@code w}
+ * covers {@code w + 1} pixels.
+ */
+public interface Surface {
+
+    void setForeground(int rgb);
+
+    void setBackground(int rgb);
+
+    /**
+     * Sets the opacity of everything drawn afterwards, 0 to 255.
+     */
+    void setAlpha(int alpha);
+
+    void fillRectangle(int x, int y, int width, int height);
+
+    void drawRectangle(int x, int y, int width, int height);
+
+    void drawLine(int x1, int y1, int x2, int y2);
+
+    /**
+     * Sets the width of lines drawn afterwards, in pixels.
+     */
+    void setLineWidth(int width);
+
+    /**
+     * Draws {@code count} lines given as x1, y1, x2, y2 in {@code points}, batched into
+     * a single native call where the surface can.
+     */
+    void drawLines(float[] points, int count);
+
+    /**
+     * Draws text with a transparent background. Surfaces without fonts skip it.
+     */
+    void drawString(String text, int x, int y);
+
+}
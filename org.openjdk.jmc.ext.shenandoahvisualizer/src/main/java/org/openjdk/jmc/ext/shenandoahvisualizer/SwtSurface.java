@@ -0,0 +1,107 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.eclipse.swt.graphics.Color;
+import org.eclipse.swt.graphics.GC;
+import org.eclipse.swt.graphics.Path;
+import org.eclipse.swt.widgets.Display;
+
+/**
+ * {@link Surface} on top of an SWT {@link GC}. Colors are created once per RGB value
+ * and shared, they are only used from the UI thread and disposed with the display.
+ */
+public class SwtSurface implements Surface {
+
+    private static final Map<Integer, Color> COLORS = new HashMap<>();
+
+    private final GC gc;
+
+    public SwtSurface(GC gc) {
+        this.gc = gc;
+    }
+
+    static Color color(int rgb) {
+        Color c = COLORS.get(rgb);
+        if (c == null) {
+            Display display = Display.getDefault();
+            if (COLORS.isEmpty()) {
+                display.disposeExec(new Runnable() {
+                    public void run() {
+                        disposeColors();
+                    }
+                });
+            }
+            c = new Color(display, (rgb >> 16) & 0xFF, (rgb >> 8) & 0xFF, rgb & 0xFF);
+            COLORS.put(rgb, c);
+        }
+        return c;
+    }
+
+    static void disposeColors() {
+        for (Color c : COLORS.values()) {
+            c.dispose();
+        }
+        COLORS.clear();
+    }
+
+    public GC gc() {
+        return gc;
+    }
+
+    @Override
+    public void setForeground(int rgb) {
+        gc.setForeground(color(rgb));
+    }
+
+    @Override
+    public void setBackground(int rgb) {
+        gc.setBackground(color(rgb));
+    }
+
+    @Override
+    public void setAlpha(int alpha) {
+        gc.setAlpha(alpha);
+    }
+
+    @Override
+    public void fillRectangle(int x, int y, int width, int height) {
+        gc.fillRectangle(x, y, width, height);
+    }
+
+    @Override
+    public void drawRectangle(int x, int y, int width, int height) {
+        gc.drawRectangle(x, y, width, height);
+    }
+
+    @Override
+    public void drawLine(int x1, int y1, int x2, int y2) {
+        gc.drawLine(x1, y1, x2, y2);
+    }
+
+    @Override
+    public void setLineWidth(int width) {
+        gc.setLineWidth(width);
+    }
+
+    @Override
+    public void drawLines(float[] points, int count) {
+        Path path = new Path(gc.getDevice());
+        try {
+            for (int i = 0; i < count * 4; i += 4) {
+                path.moveTo(points[i], points[i + 1]);
+                path.lineTo(points[i + 2], points[i + 3]);
+            }
+            gc.drawPath(path);
+        } finally {
+            path.dispose();
+        }
+    }
+
+    @Override
+    public void drawString(String text, int x, int y) {
+        gc.drawString(text, x, y, true);
+    }
+
+}
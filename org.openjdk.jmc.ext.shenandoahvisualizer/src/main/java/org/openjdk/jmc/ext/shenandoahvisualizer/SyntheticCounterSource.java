@@ -0,0 +1,614 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Simulated Shenandoah heap publishing region counters like the VM does, for load
+ * testing without a live JVM. The model is scripted: mutators allocate at a fixed rate
+ * into TLABs and shared space, plus the odd humongous object. Once free regions run low
+ * a cycle starts: marking computes live data region by region, evacuation copies the live
+ * data of garbage-heavy regions into GCLABs, and at the end of update references the
+ * collection set turns into trash, which is recycled once the cycle is over. When
+ * evacuation runs out of free regions the cycle degenerates into a pause that finishes
+ * it, and into a full compaction if that does not free anything.
+ * <p>
+ * The model advances in steps of the publication interval, driven by the wall clock
+ * whenever {@link #timestamp()} is read. The counters seen through {@link #status()} and
+ * {@link #read(long[])} only change at that point, so they always belong together.
+ */
+public class SyntheticCounterSource implements CounterSource {
+
+    static final String PREFIX = "synthetic://";
+
+    public static final int DEFAULT_REGIONS = 2048;
+    // In KB, like the region size the VM publishes
+    public static final long DEFAULT_REGION_SIZE = 1024;
+    // In MB per second
+    public static final long DEFAULT_ALLOCATION_RATE = 512;
+    public static final long DEFAULT_INTERVAL = 10;
+    // Matrix rows grow with the region count, larger heaps are simulated without them
+    public static final int MAX_MATRIX_REGIONS = 8192;
+
+    private static final long FREQUENCY = 1_000_000_000L;
+    // Falling further behind the wall clock than this skips time instead of catching up
+    private static final long MAX_LAG = 1000;
+    private static final float AGING = 0.7f;
+    // Regions with at least this percentage of garbage go into the collection set
+    private static final int GARBAGE_THRESHOLD = 60;
+
+    // Raw state codes as published by the VM, see RegionState.fromOrdinal
+    private static final byte EMPTY_UNCOMMITTED = 0;
+    private static final byte EMPTY_COMMITTED = 1;
+    private static final byte REGULAR = 2;
+    private static final byte HUMONGOUS_START = 3;
+    private static final byte HUMONGOUS_CONT = 4;
+    private static final byte CSET = 5;
+    private static final byte TRASH = 7;
+
+    private static final int IDLE = 0x0;
+    private static final int MARKING = 0x1;
+    private static final int EVACUATING = 0x2;
+    private static final int UPDATE_REFS = 0x4;
+
+    private final int regions;
+    private final long regionSize;
+    private final long interval;
+    private final boolean realTime;
+    private final Random random;
+    // Matrix rows draw from their own generator, so that a seed gives the same heap
+    // whether or not the reference overlay is shown
+    private final Random matrixRandom;
+
+    private double allocationRate;
+    private double humongousShare = 0.02;
+    private int triggerFree = 30;
+    private long markTime = 200;
+    private long evacTime = 100;
+    private long updateRefsTime = 80;
+    private int refs;
+
+    // Model, one entry per region, levels in percent
+    private final byte[] state;
+    private final byte[] used;
+    private final byte[] live;
+    private final byte[] tlab;
+    private final byte[] gclab;
+    private final byte[] shared;
+    // Share of the region that survives the next marking
+    private final float[] survival;
+    // Taken for allocation since the cycle started, never part of the collection set
+    private final BitSet fresh;
+    private final BitSet changed;
+    private int free;
+
+    private int phase = IDLE;
+    private long phaseTime;
+    private int marked;
+    private int[] cset = new int[0];
+    private int csetSize;
+    private int evacuated;
+    private boolean evacuationFailed;
+
+    private int freeCursor;
+    private int allocRegion = -1;
+    private int gclabRegion = -1;
+    private double allocationDebt;
+    private long allocationFailures;
+    private long cycles;
+    private long degeneratedCycles;
+
+    private final long start = System.nanoTime();
+    private long simTime;
+
+    // Published counters
+    private final long[] published;
+    private long timestamp;
+    private int status;
+
+    // Matrix rows, rebuilt for the regions that changed since they were last read
+    private final String[] rows;
+    private final BitSet staleRows;
+    private final BitSet row;
+
+    public SyntheticCounterSource(int regions, long regionSize, double allocationRate, long seed) {
+        this(regions, regionSize, allocationRate, DEFAULT_INTERVAL, seed, true);
+    }
+
+    /**
+     * With {@code realTime} false the model only moves on {@link #advance(long)}.
+     */
+    SyntheticCounterSource(int regions, long regionSize, double allocationRate, long interval, long seed,
+            boolean realTime) {
+        this.regions = regions;
+        this.regionSize = regionSize;
+        this.allocationRate = allocationRate;
+        this.interval = Math.max(1, interval);
+        this.realTime = realTime;
+        this.random = new Random(seed);
+        this.matrixRandom = new Random(~seed);
+        state = new byte[regions];
+        used = new byte[regions];
+        live = new byte[regions];
+        tlab = new byte[regions];
+        gclab = new byte[regions];
+        shared = new byte[regions];
+        survival = new float[regions];
+        fresh = new BitSet(regions);
+        changed = new BitSet(regions);
+        free = regions;
+        published = new long[regions];
+        refs = regions <= MAX_MATRIX_REGIONS ? 4 : 0;
+        rows = new String[regions];
+        staleRows = new BitSet(regions);
+        row = new BitSet(regions);
+        publish();
+    }
+
+    /**
+     * Parses {@code synthetic://regions=N,size=KB,rate=MB/s,interval=ms,seed=N}, all
+     * parts optional.
+     */
+    public static SyntheticCounterSource parse(String id) {
+        String spec = id.startsWith(PREFIX) ? id.substring(PREFIX.length()) : id;
+        int regions = DEFAULT_REGIONS;
+        long size = DEFAULT_REGION_SIZE;
+        double rate = DEFAULT_ALLOCATION_RATE;
+        long interval = DEFAULT_INTERVAL;
+        long seed = 0;
+        for (String part : spec.split(",")) {
+            if (part.isEmpty()) {
+                continue;
+            }
+            int eq = part.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Expected key=value, got " + part);
+            }
+            String key = part.substring(0, eq);
+            String value = part.substring(eq + 1);
+            switch (key) {
+                case "regions":
+                    regions = Integer.parseInt(value);
+                    break;
+                case "size":
+                    size = Long.parseLong(value);
+                    break;
+                case "rate":
+                    rate = Double.parseDouble(value);
+                    break;
+                case "interval":
+                    interval = Long.parseLong(value);
+                    break;
+                case "seed":
+                    seed = Long.parseLong(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown setting " + key + " in " + id);
+            }
+        }
+        if (regions <= 0 || size <= 0 || rate < 0) {
+            throw new IllegalArgumentException("Invalid heap in " + id);
+        }
+        return new SyntheticCounterSource(regions, size, rate, interval, seed, true);
+    }
+
+    public synchronized void setAllocationRate(double mbPerSecond) {
+        this.allocationRate = Math.max(0, mbPerSecond);
+    }
+
+    /**
+     * Sets the share of allocation steps that also allocate a humongous object.
+     */
+    public synchronized void setHumongousShare(double share) {
+        this.humongousShare = Math.max(0, Math.min(1, share));
+    }
+
+    /**
+     * Starts a cycle once less than {@code percent} of the regions are free.
+     */
+    public synchronized void setTriggerFree(int percent) {
+        this.triggerFree = Math.max(0, Math.min(100, percent));
+    }
+
+    public synchronized void setCycleTimes(long mark, long evac, long updateRefs) {
+        this.markTime = Math.max(1, mark);
+        this.evacTime = Math.max(1, evac);
+        this.updateRefsTime = Math.max(1, updateRefs);
+    }
+
+    /**
+     * Sets the number of incoming references per non-empty region, 0 for no matrix.
+     */
+    public synchronized void setReferences(int refs) {
+        this.refs = regions <= MAX_MATRIX_REGIONS ? Math.max(0, refs) : 0;
+    }
+
+    public synchronized boolean hasMatrix() {
+        return refs > 0;
+    }
+
+    public synchronized long cycles() {
+        return cycles;
+    }
+
+    /**
+     * Cycles that ran out of regions to evacuate into, included in {@link #cycles()}.
+     */
+    public synchronized long degeneratedCycles() {
+        return degeneratedCycles;
+    }
+
+    /**
+     * Allocations dropped because no region was free.
+     */
+    public synchronized long allocationFailures() {
+        return allocationFailures;
+    }
+
+    @Override
+    public int maxRegions() {
+        return regions;
+    }
+
+    @Override
+    public long regionSize() {
+        return regionSize;
+    }
+
+    @Override
+    public long frequency() {
+        return FREQUENCY;
+    }
+
+    @Override
+    public synchronized long timestamp() {
+        if (realTime) {
+            long now = (System.nanoTime() - start) / 1_000_000;
+            if (now - simTime > MAX_LAG) {
+                simTime = now - interval;
+            }
+            if (now - simTime >= interval) {
+                advance((now - simTime) / interval * interval);
+            }
+        }
+        return timestamp;
+    }
+
+    @Override
+    public synchronized long status() {
+        return status;
+    }
+
+    @Override
+    public synchronized void read(long[] dst) {
+        System.arraycopy(published, 0, dst, 0, regions);
+    }
+
+    /**
+     * Fills {@code dst} with the matrix rows of the published regions.
+     */
+    public synchronized void readMatrix(String[] dst) {
+        for (int i = staleRows.nextSetBit(0); i >= 0; i = staleRows.nextSetBit(i + 1)) {
+            rows[i] = buildRow(i);
+        }
+        staleRows.clear();
+        System.arraycopy(rows, 0, dst, 0, regions);
+    }
+
+    /**
+     * Runs the model for {@code millis}, publishing after every interval.
+     */
+    public synchronized void advance(long millis) {
+        for (long t = 0; t + interval <= millis; t += interval) {
+            step(interval);
+            simTime += interval;
+            publish();
+        }
+    }
+
+    private void step(long dt) {
+        phaseTime += dt;
+        switch (phase) {
+            case IDLE:
+                recycleTrash();
+                if (free * 100L < (long) triggerFree * regions) {
+                    startCycle();
+                }
+                break;
+            case MARKING:
+                mark((int) Math.min(regions, regions * phaseTime / markTime));
+                if (marked == regions) {
+                    chooseCollectionSet();
+                    begin(EVACUATING);
+                }
+                break;
+            case EVACUATING:
+                evacuate((int) Math.min(csetSize, csetSize * phaseTime / evacTime));
+                if (evacuationFailed) {
+                    degenerate();
+                } else if (evacuated == csetSize) {
+                    begin(UPDATE_REFS);
+                }
+                break;
+            case UPDATE_REFS:
+                if (phaseTime >= updateRefsTime) {
+                    for (int k = 0; k < csetSize; k++) {
+                        setState(cset[k], TRASH);
+                    }
+                    csetSize = 0;
+                    cycles++;
+                    begin(IDLE);
+                }
+                break;
+            default:
+                break;
+        }
+        allocate(dt);
+    }
+
+    private void begin(int phase) {
+        this.phase = phase;
+        this.phaseTime = 0;
+    }
+
+    private void startCycle() {
+        fresh.clear();
+        if (allocRegion >= 0) {
+            fresh.set(allocRegion);
+        }
+        gclabRegion = -1;
+        marked = 0;
+        evacuated = 0;
+        evacuationFailed = false;
+        begin(MARKING);
+    }
+
+    /**
+     * Marks the regions up to {@code to}: live data is what survives of the used part,
+     * humongous objects are either entirely live or dead and reclaimed right away.
+     */
+    private void mark(int to) {
+        for (; marked < to; marked++) {
+            int i = marked;
+            if (fresh.get(i)) {
+                continue;
+            }
+            if (state[i] == REGULAR) {
+                setLive(i, Math.round(used[i] * survival[i]));
+                // What survived this time is more likely to die by the next one
+                survival[i] *= AGING;
+            } else if (state[i] == HUMONGOUS_START) {
+                boolean dead = random.nextFloat() > survival[i];
+                int end = i + 1;
+                while (end < regions && state[end] == HUMONGOUS_CONT) {
+                    end++;
+                }
+                for (int r = i; r < end; r++) {
+                    if (dead) {
+                        setLive(r, 0);
+                        setState(r, TRASH);
+                    } else {
+                        setLive(r, used[r]);
+                    }
+                }
+                marked = end - 1;
+            }
+        }
+    }
+
+    private void chooseCollectionSet() {
+        if (cset.length < regions) {
+            cset = new int[regions];
+        }
+        csetSize = 0;
+        for (int i = 0; i < regions; i++) {
+            if (state[i] == REGULAR && !fresh.get(i) && i != allocRegion && used[i] > 0
+                    && (used[i] - live[i]) * 100 >= GARBAGE_THRESHOLD * used[i]) {
+                setState(i, CSET);
+                cset[csetSize++] = i;
+            }
+        }
+    }
+
+    /**
+     * Copies the live data of the collection set regions up to {@code to} into GCLABs.
+     */
+    private void evacuate(int to) {
+        for (; evacuated < to; evacuated++) {
+            int remaining = live[cset[evacuated]];
+            while (remaining > 0) {
+                if (gclabRegion < 0 || used[gclabRegion] >= 100) {
+                    gclabRegion = take();
+                    if (gclabRegion < 0) {
+                        allocationFailures++;
+                        evacuationFailed = true;
+                        return;
+                    }
+                    survival[gclabRegion] = 1;
+                }
+                int n = Math.min(remaining, 100 - used[gclabRegion]);
+                used[gclabRegion] += n;
+                live[gclabRegion] += n;
+                gclab[gclabRegion] += n;
+                changed.set(gclabRegion);
+                remaining -= n;
+            }
+        }
+    }
+
+    /**
+     * Finishes the cycle in a pause after evacuation failed: the collection set regions
+     * evacuated so far are reclaimed right away, the others keep their objects in place.
+     */
+    private void degenerate() {
+        for (int k = 0; k < csetSize; k++) {
+            setState(cset[k], k < evacuated ? TRASH : REGULAR);
+        }
+        csetSize = 0;
+        int before = free;
+        recycleTrash();
+        if (free == before) {
+            compact();
+        }
+        degeneratedCycles++;
+        cycles++;
+        begin(IDLE);
+    }
+
+    /**
+     * Full GC: every marked region shrinks to its live data, copied by the GC, and the
+     * regions without any are freed. Regions allocated during the cycle were not marked
+     * and are kept as they are.
+     */
+    private void compact() {
+        for (int i = 0; i < regions; i++) {
+            if (state[i] != REGULAR || fresh.get(i) || i == allocRegion || i == gclabRegion) {
+                continue;
+            }
+            if (live[i] == 0) {
+                used[i] = tlab[i] = gclab[i] = shared[i] = 0;
+                setState(i, EMPTY_COMMITTED);
+            } else if (used[i] != live[i] || gclab[i] != live[i]) {
+                used[i] = gclab[i] = live[i];
+                tlab[i] = shared[i] = 0;
+                changed.set(i);
+            }
+        }
+    }
+
+    private void recycleTrash() {
+        for (int i = 0; i < regions; i++) {
+            if (state[i] == TRASH) {
+                used[i] = live[i] = tlab[i] = gclab[i] = shared[i] = 0;
+                setState(i, EMPTY_COMMITTED);
+            }
+        }
+    }
+
+    private void allocate(long dt) {
+        allocationDebt += allocationRate * 1024 * dt / 1000 / regionSize * 100;
+        if (random.nextDouble() < humongousShare) {
+            allocationDebt -= allocateHumongous(2 + random.nextInt(4));
+        }
+        while (allocationDebt >= 1) {
+            if (allocRegion < 0 || used[allocRegion] >= 100) {
+                allocRegion = take();
+                if (allocRegion < 0) {
+                    allocationFailures++;
+                    allocationDebt = 0;
+                    return;
+                }
+                // Mostly short lived objects, with a few regions of long lived ones
+                survival[allocRegion] = random.nextInt(4) == 0 ? 0.5f + random.nextFloat() / 2 : random.nextFloat() / 5;
+            }
+            int n = (int) Math.min(allocationDebt, 100 - used[allocRegion]);
+            // A fifth goes to shared allocations, the rest to TLABs
+            int s = n / 5 + (random.nextInt(5) < n % 5 ? 1 : 0);
+            used[allocRegion] += n;
+            tlab[allocRegion] += n - s;
+            shared[allocRegion] += s;
+            changed.set(allocRegion);
+            allocationDebt -= n;
+        }
+    }
+
+    /**
+     * Allocates an object spanning {@code count} free regions in a row, returns its size
+     * in percent of a region or 0 when there is no such run.
+     */
+    private int allocateHumongous(int count) {
+        int run = 0;
+        for (int i = 0; i < regions; i++) {
+            run = isFree(i) ? run + 1 : 0;
+            if (run == count) {
+                int first = i - count + 1;
+                int last = 1 + random.nextInt(100);
+                float alive = random.nextFloat();
+                for (int r = first; r <= i; r++) {
+                    setState(r, r == first ? HUMONGOUS_START : HUMONGOUS_CONT);
+                    used[r] = (byte) (r == i ? last : 100);
+                    shared[r] = used[r];
+                    survival[r] = alive;
+                    if (phase != IDLE) {
+                        fresh.set(r);
+                    }
+                }
+                return (count - 1) * 100 + last;
+            }
+        }
+        allocationFailures++;
+        return 0;
+    }
+
+    private boolean isFree(int i) {
+        return state[i] == EMPTY_UNCOMMITTED || state[i] == EMPTY_COMMITTED;
+    }
+
+    /**
+     * Takes the next free region for allocation, -1 if there is none.
+     */
+    private int take() {
+        if (free == 0) {
+            return -1;
+        }
+        for (int k = 0; k < regions; k++) {
+            int i = freeCursor;
+            freeCursor = freeCursor + 1 == regions ? 0 : freeCursor + 1;
+            if (isFree(i)) {
+                setState(i, REGULAR);
+                if (phase != IDLE) {
+                    fresh.set(i);
+                }
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void setState(int i, byte s) {
+        boolean wasFree = isFree(i);
+        state[i] = s;
+        if (wasFree != isFree(i)) {
+            free += wasFree ? -1 : 1;
+        }
+        changed.set(i);
+    }
+
+    private void setLive(int i, int percent) {
+        if (live[i] != percent) {
+            live[i] = (byte) percent;
+            changed.set(i);
+        }
+    }
+
+    private void publish() {
+        for (int i = changed.nextSetBit(0); i >= 0; i = changed.nextSetBit(i + 1)) {
+            published[i] = ((long) state[i] << 58) | ((long) shared[i] << 28) | ((long) gclab[i] << 21)
+                    | ((long) tlab[i] << 14) | ((long) live[i] << 7) | used[i];
+        }
+        if (refs > 0) {
+            staleRows.or(changed);
+        }
+        changed.clear();
+        status = phase;
+        timestamp = simTime * (FREQUENCY / 1000) + 1;
+    }
+
+    /**
+     * Incoming references of region {@code i}: a few random other non-empty regions.
+     */
+    private String buildRow(int i) {
+        if (isFree(i) || state[i] == TRASH) {
+            return "";
+        }
+        row.clear();
+        for (int k = 0; k < refs; k++) {
+            int from = matrixRandom.nextInt(regions);
+            if (!isFree(from)) {
+                row.set(from);
+            }
+        }
+        return RegionStat.encodeMatrix(row, regions);
+    }
+
+}
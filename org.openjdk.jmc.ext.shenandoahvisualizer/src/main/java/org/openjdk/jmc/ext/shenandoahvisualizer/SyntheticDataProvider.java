@@ -0,0 +1,76 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import java.util.Arrays;
+
+/**
+ * Samples a {@link SyntheticCounterSource} instead of a JVM, opened for ids like
+ * {@code synthetic://regions=100000,rate=4096}, see {@link SyntheticCounterSource#parse}.
+ */
+public class SyntheticDataProvider implements DataProvider {
+
+    private final SyntheticCounterSource source;
+    private final SnapshotBuilder builder;
+    private final VmClock clock;
+
+    private long lastTimestamp = -1;
+    private volatile boolean matrixEnabled = true;
+    private volatile boolean forceRead;
+
+    public SyntheticDataProvider(String id) {
+        this(SyntheticCounterSource.parse(id));
+    }
+
+    public SyntheticDataProvider(SyntheticCounterSource source) {
+        this.source = source;
+        this.builder = new SnapshotBuilder(source.maxRegions());
+        this.clock = new VmClock(source.frequency());
+    }
+
+    public SyntheticCounterSource source() {
+        return source;
+    }
+
+    @Override
+    public Snapshot snapshot() {
+        long now = System.currentTimeMillis();
+        // The simulation publishes atomically, there are no half updated words to wait out
+        long ts = source.timestamp();
+        if (ts == lastTimestamp && !forceRead) {
+            return null;
+        }
+        lastTimestamp = ts;
+        forceRead = false;
+
+        Snapshot s = builder.acquire();
+        source.read(s.data);
+        if (matrixEnabled && source.hasMatrix()) {
+            source.readMatrix(s.matrix);
+        } else {
+            Arrays.fill(s.matrix, null);
+        }
+        return builder.finish(s, now, clock.toWallClock(ts, now), source.regionSize(), (int) source.status());
+    }
+
+    @Override
+    public void release(Snapshot s) {
+        builder.release(s);
+    }
+
+    @Override
+    public boolean hasMatrix() {
+        return source.hasMatrix();
+    }
+
+    @Override
+    public void setMatrixEnabled(boolean enabled) {
+        this.matrixEnabled = enabled;
+        if (enabled) {
+            forceRead = true;
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+
+}
@@ -0,0 +1,229 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+/**
+ * Paints the timeline: the phase as background, the used, live and collection set
+ * levels and the largest free span in the upper band, the allocation rate (or the
+ * region counts per state) and the fragmentation index in the lower one. The window
+ * ends at the latest sample and is {@code width} pixels of {@code millisPerPixel} each.
+ */
+public final class TimelineGraph {
+
+    private static final int PAD = 10;
+    // Exaggeration of the used rate in the lower band, which is the growth per finest
+    // pyramid bucket so that it keeps its scale at every zoom
+    private static final int MULT = 20;
+
+    // Bottom to top order of the region state stack
+    private static final RegionState[] STACK = {
+            RegionState.REGULAR, RegionState.PINNED, RegionState.HUMONGOUS, RegionState.PINNED_HUMONGOUS,
+            RegionState.CSET, RegionState.PINNED_CSET, RegionState.TRASH, RegionState.EMPTY_COMMITTED,
+            RegionState.EMPTY_UNCOMMITTED};
+
+    private TimelineGraph() {
+    }
+
+    /**
+     * Paints {@code history}, or the buckets of {@code pyramid} when zoomed out past its
+     * finest level. {@code total} is the value at the top of the upper band.
+     */
+    public static void render(Surface g, TimelineHistory history, TimelinePyramid pyramid, long total,
+            double millisPerPixel, int width, int height) {
+        render(g, history, pyramid, total, millisPerPixel, width, height, false);
+    }
+
+    /**
+     * Like {@link #render(Surface, TimelineHistory, TimelinePyramid, long, double, int, int)},
+     * with the region counts per state stacked in the lower band instead of the
+     * allocation rate if {@code states} is set.
+     */
+    public static void render(Surface g, TimelineHistory history, TimelinePyramid pyramid, long total,
+            double millisPerPixel, int width, int height, boolean states) {
+        if (history.size() < 2) {
+            return;
+        }
+        int bandHeight = (height - PAD) / 2;
+        double stepY = 1D * bandHeight / total;
+
+        int startDiff = height;
+        int startRaw = height - bandHeight - PAD;
+
+        g.setBackground(Colors.WHITE);
+        g.fillRectangle(0, 0, width, height);
+
+        g.setBackground(Colors.BLACK);
+        g.fillRectangle(0, 0, width, bandHeight);
+        g.fillRectangle(0, bandHeight + PAD, width, bandHeight);
+
+        long lastTime = history.time(history.size() - 1);
+        long firstTime = lastTime - (long) (width * millisPerPixel);
+        double stepX = 1D / millisPerPixel;
+
+        if (states) {
+            renderStates(g, history, firstTime, millisPerPixel, width, bandHeight, startDiff);
+        }
+
+        long rateUnit = pyramid.level(0).duration();
+        if (millisPerPixel >= rateUnit) {
+            renderBuckets(g, pyramid.levelFor(millisPerPixel), rateUnit, firstTime, stepX, bandHeight, startRaw,
+                    startDiff, stepY, states);
+            return;
+        }
+
+        // Zoomed in past the finest bucket, draw the raw samples
+        for (int i = history.indexAt(firstTime); i < history.size(); i++) {
+            int x = (int) Math.round((history.time(i) - firstTime) * stepX);
+            long used = history.used(i);
+            long live = history.live(i);
+            long cset = history.collectionSet(i);
+            long free = history.largestFree(i);
+
+            g.setForeground(color(history.phase(i)));
+            g.drawRectangle(x, 0, 1, bandHeight);
+            if (!states) {
+                g.drawRectangle(x, bandHeight + PAD, 1, bandHeight);
+            }
+
+            if (used != 0) {
+                g.setForeground(Colors.USED);
+                g.drawRectangle(x, (int) Math.round(startRaw - used * stepY), 1, 1);
+            }
+            if (live != 0) {
+                g.setForeground(Colors.LIVE_REGULAR);
+                g.drawRectangle(x, (int) Math.round(startRaw - live * stepY), 1, 1);
+            }
+            if (cset != 0) {
+                g.setForeground(Colors.LIVE_CSET);
+                g.drawRectangle(x, (int) Math.round(startRaw - cset * stepY), 1, 1);
+            }
+            if (free != 0) {
+                g.setForeground(Colors.TIMELINE_FREE);
+                g.drawRectangle(x, (int) Math.round(startRaw - free * stepY), 1, 1);
+            }
+            g.setForeground(Colors.TIMELINE_FRAGMENTATION);
+            g.drawRectangle(x, (int) Math.round(startDiff - history.fragmentation(i) * bandHeight), 1, 1);
+            if (states) {
+                continue;
+            }
+            int smooth = Math.min(10, i + 1);
+            long elapsed = history.time(i) - history.time(i - smooth + 1);
+            if (elapsed <= 0) {
+                continue;
+            }
+            long lastUsed = history.used(i - smooth + 1);
+            g.setForeground(Colors.USED);
+            g.drawRectangle(x, (int) Math.round(startDiff - (used - lastUsed) * stepY * MULT * rateUnit / elapsed), 1, 1);
+        }
+    }
+
+    /**
+     * Stacks the region counts per state in the lower band, one column per pixel from
+     * the first sample at or after the pixel's time. Drawn from the raw samples at any
+     * zoom, so it only reaches back as far as {@code history} does.
+     */
+    private static void renderStates(Surface g, TimelineHistory history, long firstTime, double millisPerPixel,
+            int width, int bandHeight, int startDiff) {
+        int i = history.indexAt(firstTime);
+        for (int x = 0; x < width && i < history.size(); x++) {
+            long to = firstTime + (long) ((x + 1) * millisPerPixel);
+            if (history.time(i) >= to) {
+                // No sample in this column
+                continue;
+            }
+            int regions = 0;
+            for (RegionState st : STACK) {
+                regions += history.stateCount(i, st);
+            }
+            if (regions > 0) {
+                int count = 0;
+                int bottom = startDiff;
+                for (RegionState st : STACK) {
+                    count += history.stateCount(i, st);
+                    int top = startDiff - (int) ((long) count * bandHeight / regions);
+                    if (top < bottom) {
+                        g.setBackground(color(st));
+                        g.fillRectangle(x, top, 1, bottom - top);
+                        bottom = top;
+                    }
+                }
+            }
+            i = history.indexAt(to);
+        }
+    }
+
+    /**
+     * Draws one column per pyramid bucket: the dominant phase as background, the
+     * used min/max range as a bar and the averages as points. The level is picked
+     * so that there is about one bucket per pixel, whatever the zoom. The used rate is
+     * the growth between bucket averages per {@code rateUnit} ms.
+     */
+    private static void renderBuckets(Surface g, TimelinePyramid.Level level, long rateUnit, long firstTime,
+            double stepX, int bandHeight, int startRaw, int startDiff, double stepY, boolean states) {
+        int w = Math.max(1, (int) Math.round(level.duration() * stepX));
+        long lastUsed = -1;
+        long lastStart = 0;
+        for (int i = level.firstAfter(firstTime); i < level.size(); i++) {
+            int x = (int) Math.round((level.start(i) - firstTime) * stepX);
+            long used = level.avg(i, TimelinePyramid.USED);
+            long live = level.avg(i, TimelinePyramid.LIVE);
+            long cset = level.avg(i, TimelinePyramid.CSET);
+            long free = level.avg(i, TimelinePyramid.LARGEST_FREE);
+
+            g.setBackground(color(level.dominantPhase(i)));
+            g.fillRectangle(x, 0, w, bandHeight);
+            if (!states) {
+                g.fillRectangle(x, bandHeight + PAD, w, bandHeight);
+            }
+
+            g.setBackground(Colors.USED);
+            int top = (int) Math.round(startRaw - level.max(i, TimelinePyramid.USED) * stepY);
+            int bottom = (int) Math.round(startRaw - level.min(i, TimelinePyramid.USED) * stepY);
+            g.fillRectangle(x, top, w, Math.max(1, bottom - top));
+            if (live != 0) {
+                g.setBackground(Colors.LIVE_REGULAR);
+                g.fillRectangle(x, (int) Math.round(startRaw - live * stepY), w, 1);
+            }
+            if (cset != 0) {
+                g.setBackground(Colors.LIVE_CSET);
+                g.fillRectangle(x, (int) Math.round(startRaw - cset * stepY), w, 1);
+            }
+            if (free != 0) {
+                g.setBackground(Colors.TIMELINE_FREE);
+                g.fillRectangle(x, (int) Math.round(startRaw - free * stepY), w, 1);
+            }
+            g.setBackground(Colors.TIMELINE_FRAGMENTATION);
+            g.fillRectangle(x, (int) Math.round(startDiff - level.avg(i, TimelinePyramid.FRAGMENTATION) * bandHeight / 1000D),
+                    w, 1);
+            if (lastUsed >= 0 && !states) {
+                // Buckets without samples are skipped, so the previous one may be further back
+                double rate = (double) (used - lastUsed) * rateUnit / (level.start(i) - lastStart);
+                g.setBackground(Colors.USED);
+                g.fillRectangle(x, (int) Math.round(startDiff - rate * stepY * MULT), w, 1);
+            }
+            lastUsed = used;
+            lastStart = level.start(i);
+        }
+    }
+
+    static int color(RegionState state) {
+        // Uncommitted regions are grey on the region map too
+        return state == RegionState.EMPTY_UNCOMMITTED ? Colors.LIVE_COMMITTED : RegionStat.selectLive(state);
+    }
+
+    static int color(Phase phase) {
+        switch (phase) {
+            case IDLE:
+                return Colors.TIMELINE_IDLE;
+            case MARKING:
+                return Colors.TIMELINE_MARK;
+            case EVACUATING:
+                return Colors.TIMELINE_EVACUATING;
+            case UPDATE_REFS:
+                return Colors.TIMELINE_UPDATEREFS;
+            case TRAVERSAL:
+                return Colors.TIMELINE_TRAVERSAL;
+            default:
+                return Colors.WHITE;
+        }
+    }
+
+}
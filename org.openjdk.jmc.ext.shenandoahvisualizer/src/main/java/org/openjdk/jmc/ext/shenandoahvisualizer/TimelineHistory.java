@@ -0,0 +1,263 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+/**
+ * Ring of per-sample totals over the last {@link #retention()} milliseconds of VM
+ * time, stored as one primitive array per series. The ring grows with the sampling
+ * rate up to {@link #MAX_CAPACITY} samples. Index 0 is the oldest retained sample;
+ * every accessor is O(1). Accessed from the UI thread only.
+ */
+public class TimelineHistory {
+
+    public static final long DEFAULT_RETENTION = 30 * 60_000L;
+
+    // 30 minutes at 10 Hz fit in the initial ring; faster sampling grows it up to the
+    // maximum, beyond which the oldest samples go before their time
+    private static final int INITIAL_CAPACITY = 1 << 14;
+    public static final int MAX_CAPACITY = 1 << 18;
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final int STATES = RegionState.values().length;
+
+    private long retention;
+    private int capacity;
+    private int head;
+    private int size;
+
+    private long[] time;
+    private byte[] phase;
+    private long[] used;
+    private long[] live;
+    private long[] collectionSet;
+    private long[] humongous;
+    private long[] trash;
+    private long[] committed;
+    private long[] largestFree;
+    private float[] fragmentation;
+    // Region count per state, STATES entries per sample
+    private int[] stateCounts;
+
+    private long total;
+
+    public TimelineHistory() {
+        this(DEFAULT_RETENTION);
+    }
+
+    public TimelineHistory(long retention) {
+        this.retention = retention;
+        allocate(INITIAL_CAPACITY);
+    }
+
+    private void allocate(int capacity) {
+        this.capacity = capacity;
+        time = new long[capacity];
+        phase = new byte[capacity];
+        used = new long[capacity];
+        live = new long[capacity];
+        collectionSet = new long[capacity];
+        humongous = new long[capacity];
+        trash = new long[capacity];
+        committed = new long[capacity];
+        largestFree = new long[capacity];
+        fragmentation = new float[capacity];
+        stateCounts = new int[capacity * STATES];
+    }
+
+    public void add(Snapshot s) {
+        trim(s.vmTime());
+        if (size == capacity && capacity < MAX_CAPACITY) {
+            resize(capacity * 2);
+        }
+        int slot = (head + size) % capacity;
+        if (size == capacity) {
+            head = (head + 1) % capacity;
+        } else {
+            size++;
+        }
+        time[slot] = s.vmTime();
+        phase[slot] = (byte) s.phase().ordinal();
+        used[slot] = s.used();
+        live[slot] = s.live();
+        collectionSet[slot] = s.collectionSet();
+        humongous[slot] = s.humongous();
+        trash[slot] = s.trash();
+        committed[slot] = s.committed();
+        largestFree[slot] = s.largestFree();
+        fragmentation[slot] = (float) s.fragmentation();
+        for (int st = 0; st < STATES; st++) {
+            stateCounts[slot * STATES + st] = s.stateCounts[st];
+        }
+        total = s.total();
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public long retention() {
+        return retention;
+    }
+
+    /**
+     * Changes how many milliseconds of samples are retained, dropping the ones that
+     * fall out of the shorter window right away.
+     */
+    public void setRetention(long millis) {
+        retention = millis;
+        if (size > 0) {
+            trim(time(size - 1));
+        }
+        // Give back what a longer window, or a faster sampling rate, took
+        int needed = INITIAL_CAPACITY;
+        while (needed < size) {
+            needed *= 2;
+        }
+        if (needed < capacity) {
+            resize(needed);
+        }
+    }
+
+    /**
+     * Drops the samples older than the retention window ending at {@code now}.
+     */
+    private void trim(long now) {
+        long oldest = now - retention;
+        while (size > 0 && time[head] < oldest) {
+            head = head + 1 == capacity ? 0 : head + 1;
+            size--;
+        }
+    }
+
+    /**
+     * Moves the retained samples into arrays of {@code newCapacity}, keeping the most recent ones.
+     */
+    private void resize(int newCapacity) {
+        int keep = Math.min(size, newCapacity);
+        int from = size - keep;
+        long[] t = copy(time, from, keep, newCapacity);
+        byte[] p = new byte[newCapacity];
+        for (int i = 0; i < keep; i++) {
+            p[i] = phase[slot(from + i)];
+        }
+        long[] u = copy(used, from, keep, newCapacity);
+        long[] l = copy(live, from, keep, newCapacity);
+        long[] cs = copy(collectionSet, from, keep, newCapacity);
+        long[] h = copy(humongous, from, keep, newCapacity);
+        long[] tr = copy(trash, from, keep, newCapacity);
+        long[] c = copy(committed, from, keep, newCapacity);
+        long[] lf = copy(largestFree, from, keep, newCapacity);
+        float[] f = new float[newCapacity];
+        int[] sc = new int[newCapacity * STATES];
+        for (int i = 0; i < keep; i++) {
+            f[i] = fragmentation[slot(from + i)];
+            System.arraycopy(stateCounts, slot(from + i) * STATES, sc, i * STATES, STATES);
+        }
+
+        capacity = newCapacity;
+        time = t;
+        phase = p;
+        used = u;
+        live = l;
+        collectionSet = cs;
+        humongous = h;
+        trash = tr;
+        committed = c;
+        largestFree = lf;
+        fragmentation = f;
+        stateCounts = sc;
+        head = 0;
+        size = keep;
+    }
+
+    private long[] copy(long[] src, int from, int count, int newCapacity) {
+        long[] dst = new long[newCapacity];
+        for (int i = 0; i < count; i++) {
+            dst[i] = src[slot(from + i)];
+        }
+        return dst;
+    }
+
+    private int slot(int i) {
+        int s = head + i;
+        return s >= capacity ? s - capacity : s;
+    }
+
+    /**
+     * Heap size as of the latest sample.
+     */
+    public long total() {
+        return total;
+    }
+
+    /**
+     * Returns the index of the first sample taken at or after {@code t}.
+     */
+    public int indexAt(long t) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (time(mid) < t) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    public long time(int i) {
+        return time[slot(i)];
+    }
+
+    public Phase phase(int i) {
+        return PHASES[phase[slot(i)]];
+    }
+
+    public long used(int i) {
+        return used[slot(i)];
+    }
+
+    public long live(int i) {
+        return live[slot(i)];
+    }
+
+    public long collectionSet(int i) {
+        return collectionSet[slot(i)];
+    }
+
+    public long humongous(int i) {
+        return humongous[slot(i)];
+    }
+
+    public long trash(int i) {
+        return trash[slot(i)];
+    }
+
+    public long committed(int i) {
+        return committed[slot(i)];
+    }
+
+    /**
+     * Size of the longest run of empty regions, see {@link Snapshot#largestFree()}.
+     */
+    public long largestFree(int i) {
+        return largestFree[slot(i)];
+    }
+
+    public double fragmentation(int i) {
+        return fragmentation[slot(i)];
+    }
+
+    public int stateCount(int i, RegionState state) {
+        return stateCounts[slot(i) * STATES + state.ordinal()];
+    }
+
+}
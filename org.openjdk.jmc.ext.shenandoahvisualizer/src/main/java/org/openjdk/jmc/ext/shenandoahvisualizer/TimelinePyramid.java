@@ -0,0 +1,225 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+/**
+ * Level-of-detail store for long timelines. Every sample is folded into a bucket
+ * on each of several levels of increasing duration (100 ms, 1 s, 10 s, 1 min by
+ * default); a bucket keeps min/max/sum of used, live, cset and humongous bytes, of
+ * the largest free span and of the fragmentation index in permille, and how many
+ * samples were taken in each phase. Each level is a fixed-size ring, so the
+ * coarser levels reach back hours while memory stays bounded. Accessed from the UI
+ * thread only.
+ */
+public class TimelinePyramid {
+
+    public static final long[] DEFAULT_LEVELS = {100, 1_000, 10_000, 60_000};
+    public static final int DEFAULT_BUCKETS = 4096;
+
+    static final int USED = 0;
+    static final int LIVE = 1;
+    static final int CSET = 2;
+    static final int HUMONGOUS = 3;
+    static final int LARGEST_FREE = 4;
+    static final int FRAGMENTATION = 5;
+    static final int SERIES = 6;
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final Level[] levels;
+
+    public TimelinePyramid() {
+        this(DEFAULT_LEVELS, DEFAULT_BUCKETS);
+    }
+
+    public TimelinePyramid(long[] durations, int buckets) {
+        levels = new Level[durations.length];
+        for (int i = 0; i < durations.length; i++) {
+            levels[i] = new Level(durations[i], buckets);
+        }
+    }
+
+    public void add(Snapshot s) {
+        long time = s.vmTime();
+        int phase = s.phase().ordinal();
+        long used = s.used();
+        long live = s.live();
+        long cset = s.collectionSet();
+        long humongous = s.humongous();
+        long largestFree = s.largestFree();
+        long fragmentation = Math.round(s.fragmentation() * 1000);
+        for (Level l : levels) {
+            l.add(time, phase, used, live, cset, humongous, largestFree, fragmentation);
+        }
+    }
+
+    public void clear() {
+        for (Level l : levels) {
+            l.clear();
+        }
+    }
+
+    public int levelCount() {
+        return levels.length;
+    }
+
+    public Level level(int i) {
+        return levels[i];
+    }
+
+    /**
+     * Returns the finest level whose buckets are at least {@code millisPerPixel} long,
+     * so that drawing it touches roughly one bucket per pixel, or the coarsest level
+     * if none is coarse enough.
+     */
+    public Level levelFor(double millisPerPixel) {
+        for (Level l : levels) {
+            if (l.duration >= millisPerPixel) {
+                return l;
+            }
+        }
+        return levels[levels.length - 1];
+    }
+
+    /**
+     * One resolution of the pyramid. Index 0 is the oldest retained bucket.
+     */
+    public static final class Level {
+
+        private final long duration;
+        private final int capacity;
+
+        private final long[] start;
+        private final int[] count;
+        private final long[] min;
+        private final long[] max;
+        private final long[] sum;
+        private final int[] phases;
+
+        private int head;
+        private int size;
+
+        Level(long duration, int capacity) {
+            this.duration = duration;
+            this.capacity = capacity;
+            this.start = new long[capacity];
+            this.count = new int[capacity];
+            this.min = new long[capacity * SERIES];
+            this.max = new long[capacity * SERIES];
+            this.sum = new long[capacity * SERIES];
+            this.phases = new int[capacity * PHASES.length];
+        }
+
+        void add(long time, int phase, long used, long live, long cset, long humongous, long largestFree,
+                long fragmentation) {
+            long bucketStart = time - Math.floorMod(time, duration);
+            int slot;
+            if (size == 0 || start[slot(size - 1)] != bucketStart) {
+                if (size == capacity) {
+                    head = (head + 1) % capacity;
+                } else {
+                    size++;
+                }
+                slot = slot(size - 1);
+                start[slot] = bucketStart;
+                count[slot] = 0;
+                for (int p = 0; p < PHASES.length; p++) {
+                    phases[slot * PHASES.length + p] = 0;
+                }
+            } else {
+                slot = slot(size - 1);
+            }
+            boolean first = count[slot] == 0;
+            count[slot]++;
+            phases[slot * PHASES.length + phase]++;
+            fold(slot, USED, used, first);
+            fold(slot, LIVE, live, first);
+            fold(slot, CSET, cset, first);
+            fold(slot, HUMONGOUS, humongous, first);
+            fold(slot, LARGEST_FREE, largestFree, first);
+            fold(slot, FRAGMENTATION, fragmentation, first);
+        }
+
+        private void fold(int slot, int series, long v, boolean first) {
+            int i = slot * SERIES + series;
+            if (first) {
+                min[i] = v;
+                max[i] = v;
+                sum[i] = v;
+            } else {
+                if (v < min[i]) min[i] = v;
+                if (v > max[i]) max[i] = v;
+                sum[i] += v;
+            }
+        }
+
+        void clear() {
+            head = 0;
+            size = 0;
+        }
+
+        private int slot(int i) {
+            int s = head + i;
+            return s >= capacity ? s - capacity : s;
+        }
+
+        public long duration() {
+            return duration;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public long start(int i) {
+            return start[slot(i)];
+        }
+
+        public int count(int i) {
+            return count[slot(i)];
+        }
+
+        public long min(int i, int series) {
+            return min[slot(i) * SERIES + series];
+        }
+
+        public long max(int i, int series) {
+            return max[slot(i) * SERIES + series];
+        }
+
+        public long avg(int i, int series) {
+            int s = slot(i);
+            return sum[s * SERIES + series] / count[s];
+        }
+
+        /**
+         * Returns the phase most samples in bucket {@code i} were taken in.
+         */
+        public Phase dominantPhase(int i) {
+            int base = slot(i) * PHASES.length;
+            int best = 0;
+            for (int p = 1; p < PHASES.length; p++) {
+                if (phases[base + p] > phases[base + best]) {
+                    best = p;
+                }
+            }
+            return PHASES[best];
+        }
+
+        /**
+         * Returns the index of the first bucket that ends after {@code time}.
+         */
+        public int firstAfter(long time) {
+            int lo = 0, hi = size;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (start(mid) + duration <= time) {
+                    lo = mid + 1;
+                } else {
+                    hi = mid;
+                }
+            }
+            return lo;
+        }
+
+    }
+
+}
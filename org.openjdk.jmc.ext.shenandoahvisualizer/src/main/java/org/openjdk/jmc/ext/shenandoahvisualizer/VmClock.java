@@ -0,0 +1,30 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+/**
+ * Converts the VM's high resolution timestamps to wall clock milliseconds. The VM
+ * counter starts at an unknown point, so the offset is estimated from when samples
+ * are observed: a sample is never seen before it was published, so the smallest
+ * observed difference between the wall clock and the VM clock is the best estimate.
+ */
+final class VmClock {
+
+    private final double millisPerTick;
+    private long offset = Long.MAX_VALUE;
+    private long last = Long.MIN_VALUE;
+
+    VmClock(long ticksPerSecond) {
+        this.millisPerTick = 1000D / ticksPerSecond;
+    }
+
+    /**
+     * Returns the wall clock time {@code ticks} corresponds to, given that it was
+     * observed at wall clock time {@code now}. Never goes backwards.
+     */
+    long toWallClock(long ticks, long now) {
+        long vmMillis = (long) (ticks * millisPerTick);
+        offset = Math.min(offset, now - vmMillis);
+        last = Math.max(last, vmMillis + offset);
+        return last;
+    }
+
+}
@@ -0,0 +1,56 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AdaptiveSamplerTest {
+
+    private static final int REGIONS = 1000;
+
+    @Test
+    public void backsOffWhileQuietAndSpeedsUpInACycle() {
+        AdaptiveSampler sampler = new AdaptiveSampler(5, 2_000);
+        assertEquals(5, sampler.interval());
+
+        // Doubles on every quiet sample, up to the slowest rate
+        long[] quiet = {10, 20, 40, 80, 160, 320, 640, 1_280, 2_000, 2_000};
+        for (long expected : quiet) {
+            assertEquals(expected, sampler.update(Phase.IDLE, 0, REGIONS));
+        }
+        assertEquals(2_000, sampler.unchanged(Phase.IDLE));
+        assertEquals(2_000, sampler.unchanged(null));
+
+        // A little change halves it, one in a hundred regions is busy
+        assertEquals(1_000, sampler.update(Phase.IDLE, 9, REGIONS));
+        assertEquals(500, sampler.update(Phase.IDLE, 1, REGIONS));
+        assertEquals(5, sampler.update(Phase.IDLE, 10, REGIONS));
+
+        // Any cycle phase samples at the fastest rate, even without changes
+        for (Phase phase : new Phase[] {Phase.MARKING, Phase.EVACUATING, Phase.UPDATE_REFS}) {
+            assertEquals(10, sampler.update(Phase.IDLE, 0, REGIONS));
+            assertEquals(5, sampler.update(phase, 0, REGIONS));
+            assertEquals(5, sampler.unchanged(phase));
+        }
+        // A status that is not understood does not keep it fast
+        assertEquals(10, sampler.update(Phase.UNKNOWN, 0, REGIONS));
+    }
+
+    @Test
+    public void boundsClampTheInterval() {
+        AdaptiveSampler sampler = new AdaptiveSampler(5, 2_000);
+        for (int i = 0; i < 20; i++) {
+            sampler.backOff();
+        }
+        assertEquals(2_000, sampler.interval());
+        sampler.setBounds(50, 500);
+        assertEquals(500, sampler.interval());
+        assertEquals(50, sampler.update(Phase.MARKING, 0, REGIONS));
+
+        // Nonsense bounds are made consistent
+        sampler.setBounds(0, -1);
+        assertEquals(1, sampler.minInterval());
+        assertEquals(1, sampler.maxInterval());
+    }
+
+}
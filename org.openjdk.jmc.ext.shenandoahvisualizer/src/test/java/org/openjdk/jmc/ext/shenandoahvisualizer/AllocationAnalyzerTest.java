@@ -0,0 +1,101 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class AllocationAnalyzerTest {
+
+    private static final int REGIONS = 128;
+    // One percent of a region is one unit of Snapshot.used()
+    private static final long REGION_SIZE = 100;
+
+    private final SnapshotBuilder builder = new SnapshotBuilder(REGIONS);
+    private final long[] words = new long[REGIONS];
+
+    private static long word(int used, int tlab, int gclab, int shared) {
+        return (2L << 58) | ((long) shared << 28) | ((long) gclab << 21) | ((long) tlab << 14) | used;
+    }
+
+    private Snapshot sample(long time) {
+        Snapshot s = builder.acquire();
+        System.arraycopy(words, 0, s.data, 0, REGIONS);
+        return builder.finish(s, time, time, REGION_SIZE, 0);
+    }
+
+    @Test
+    public void totalsCountGrowthPerLab() {
+        words[0] = word(10, 10, 0, 0);
+        words[1] = word(5, 0, 0, 5);
+        words[2] = word(80, 80, 0, 0);
+        Snapshot before = sample(0);
+        long tlab = before.tlabAllocated();
+        long gclab = before.gclabAllocated();
+        long shared = before.sharedAllocated();
+        assertEquals(90, tlab);
+        assertEquals(5, shared);
+        builder.release(before);
+
+        words[0] = word(30, 30, 0, 0);
+        words[1] = word(15, 0, 0, 15);
+        words[3] = word(50, 0, 50, 0);
+        // Recycled and refilled since the last sample
+        words[2] = word(25, 25, 0, 0);
+        Snapshot after = sample(100);
+        assertEquals(20 + 25, after.tlabAllocated() - tlab);
+        assertEquals(50, after.gclabAllocated() - gclab);
+        assertEquals(10, after.sharedAllocated() - shared);
+        builder.release(after);
+
+        // Recycled and left empty, nothing was allocated
+        words[2] = 1L << 58;
+        Snapshot emptied = sample(200);
+        assertEquals(90 + 45, emptied.tlabAllocated());
+        builder.release(emptied);
+    }
+
+    @Test
+    public void ratesFollowTheCountersWithoutGclab() {
+        AllocationAnalyzer analyzer = new AllocationAnalyzer();
+        int samples = 100;
+        for (int k = 0; k < samples; k++) {
+            // Every 100 ms one more region gets 10 units in TLABs, 20 in GCLABs and 5 shared
+            words[k] = word(35, 10, 20, 5);
+            Snapshot s = sample(k * 100L);
+            analyzer.add(s);
+            builder.release(s);
+        }
+        assertEquals(100, analyzer.tlabRate(), 1);
+        assertEquals(200, analyzer.gclabRate(), 2);
+        assertEquals(50, analyzer.sharedRate(), 1);
+        assertEquals(150, analyzer.allocationRate(), 2);
+
+        long free = REGIONS * REGION_SIZE - samples * 35;
+        assertEquals(free * 1000 / 150, analyzer.timeToExhaustion(), free * 1000 / 150 / 50);
+        assertTrue(analyzer.atRisk(analyzer.timeToExhaustion() * 2));
+        assertFalse(analyzer.atRisk(analyzer.timeToExhaustion() / 2));
+    }
+
+    @Test
+    public void noAllocationNeverRunsOut() {
+        AllocationAnalyzer analyzer = new AllocationAnalyzer();
+        for (int i = 0; i < 10; i++) {
+            words[i] = word(50, 50, 0, 0);
+        }
+        for (int k = 0; k < 20; k++) {
+            if (k == 10) {
+                // Recycling regions drops their levels, which is no allocation either
+                for (int i = 0; i < 10; i++) {
+                    words[i] = 1L << 58;
+                }
+            }
+            Snapshot s = sample(k * 100L);
+            analyzer.add(s);
+            builder.release(s);
+        }
+        assertEquals(0, analyzer.allocationRate());
+        assertEquals(Long.MAX_VALUE, analyzer.timeToExhaustion());
+        assertFalse(analyzer.atRisk(1_000));
+    }
+
+}
@@ -0,0 +1,155 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class CycleDetectorTest {
+
+    private static final int REGIONS = 64;
+
+    private static final int IDLE = 0;
+    private static final int MARKING = 1;
+    private static final int EVACUATING = 2;
+    private static final int UPDATE_REFS = 4;
+
+    private final SnapshotBuilder builder = new SnapshotBuilder(REGIONS);
+    private final long[] words = new long[REGIONS];
+
+    /**
+     * Feeds one sample at {@code time} with the given GC status, returning whether it
+     * completed a cycle.
+     */
+    private boolean add(CycleDetector cycles, long time, int status) {
+        Snapshot s = builder.acquire();
+        System.arraycopy(words, 0, s.data, 0, REGIONS);
+        builder.finish(s, time, time, 1024, status);
+        boolean done = cycles.add(s);
+        builder.release(s);
+        return done;
+    }
+
+    /**
+     * Runs a cycle starting at {@code start}, 100 ms per phase, and settles in idle.
+     */
+    private void cycle(CycleDetector cycles, long start) {
+        add(cycles, start - 50, IDLE);
+        add(cycles, start, MARKING);
+        add(cycles, start + 100, EVACUATING);
+        add(cycles, start + 200, UPDATE_REFS);
+        add(cycles, start + 300, IDLE);
+        add(cycles, start + 300 + CycleDetector.IDLE_SETTLE, IDLE);
+    }
+
+    @Test
+    public void normalCycle() {
+        CycleDetector cycles = new CycleDetector();
+        for (int i = 0; i < REGIONS / 2; i++) {
+            words[i] = (2L << 58) | 10;
+        }
+        assertFalse(add(cycles, 0, IDLE));
+        assertFalse(add(cycles, 1_000, MARKING));
+        assertTrue(cycles.inCycle());
+        assertEquals(1_000, cycles.cycleStart());
+        for (int i = 0; i < REGIONS / 2; i++) {
+            words[i] += 10;
+        }
+        assertFalse(add(cycles, 1_200, EVACUATING));
+        assertFalse(add(cycles, 1_250, UPDATE_REFS));
+        assertFalse(add(cycles, 1_300, IDLE));
+        assertFalse("idle has to settle first", add(cycles, 1_350, IDLE));
+        assertTrue(add(cycles, 1_300 + CycleDetector.IDLE_SETTLE, IDLE));
+
+        assertFalse(cycles.inCycle());
+        assertEquals(1, cycles.size());
+        assertEquals(1, cycles.completed());
+        assertEquals(1_000, cycles.start(0));
+        assertEquals(1_300, cycles.end(0));
+        assertEquals(300, cycles.duration(0));
+        assertEquals(200, cycles.markTime(0));
+        assertEquals(50, cycles.evacTime(0));
+        assertEquals(50, cycles.updateRefsTime(0));
+        assertTrue(cycles.allocationRate(0) > 0);
+    }
+
+    @Test
+    public void transientIdleDoesNotSplitTheCycle() {
+        CycleDetector cycles = new CycleDetector();
+        add(cycles, 0, IDLE);
+        add(cycles, 100, MARKING);
+        add(cycles, 200, EVACUATING);
+        assertFalse(add(cycles, 300, IDLE));
+        assertFalse(add(cycles, 305, UPDATE_REFS));
+        assertTrue(cycles.inCycle());
+        assertFalse(add(cycles, 400, IDLE));
+        assertTrue(add(cycles, 400 + CycleDetector.IDLE_SETTLE, IDLE));
+
+        assertEquals(1, cycles.completed());
+        assertEquals(100, cycles.start(0));
+        assertEquals(400, cycles.end(0));
+        assertEquals(100, cycles.markTime(0));
+        assertEquals(100, cycles.evacTime(0));
+        assertEquals(95, cycles.updateRefsTime(0));
+    }
+
+    @Test
+    public void nextMarkingEndsACycleThatNeverSettled() {
+        CycleDetector cycles = new CycleDetector();
+        add(cycles, 0, IDLE);
+        add(cycles, 100, MARKING);
+        add(cycles, 200, EVACUATING);
+        add(cycles, 300, UPDATE_REFS);
+        add(cycles, 400, IDLE);
+        assertTrue(add(cycles, 410, MARKING));
+        assertEquals(400, cycles.end(0));
+        assertTrue(cycles.inCycle());
+        assertEquals(410, cycles.cycleStart());
+
+        // Back to back, without reporting idle in between
+        add(cycles, 500, EVACUATING);
+        assertTrue(add(cycles, 600, MARKING));
+        assertEquals(2, cycles.completed());
+        assertEquals(410, cycles.start(1));
+        assertEquals(600, cycles.end(1));
+    }
+
+    @Test
+    public void clearInTheMiddleOfACycle() {
+        CycleDetector cycles = new CycleDetector();
+        cycle(cycles, 1_000);
+        add(cycles, 2_000, MARKING);
+        add(cycles, 2_100, EVACUATING);
+        cycles.clear();
+        assertFalse(cycles.inCycle());
+        assertEquals(0, cycles.size());
+
+        // A seek lands in the middle of the next cycle, whose start was not seen
+        add(cycles, 5_100, MARKING);
+        assertFalse(cycles.inCycle());
+        add(cycles, 5_200, EVACUATING);
+        add(cycles, 5_300, IDLE);
+        add(cycles, 5_300 + CycleDetector.IDLE_SETTLE, IDLE);
+        assertEquals(0, cycles.completed());
+
+        cycle(cycles, 6_000);
+        assertEquals(1, cycles.completed());
+        assertEquals(6_000, cycles.start(0));
+        assertEquals(300, cycles.duration(0));
+    }
+
+    @Test
+    public void ringKeepsTheMostRecentCycles() {
+        CycleDetector cycles = new CycleDetector(3);
+        for (int c = 0; c < 5; c++) {
+            cycle(cycles, 1_000 * (c + 1));
+        }
+        assertEquals(3, cycles.size());
+        assertEquals(5, cycles.completed());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1_000 * (i + 3), cycles.start(i));
+            assertEquals(300, cycles.duration(i));
+        }
+        assertEquals(300, cycles.averageDuration(10));
+    }
+
+}
@@ -0,0 +1,88 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class FrameCodecTest {
+
+    private static final int REGIONS = 200;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(bytes);
+
+    private ByteBuffer written() {
+        ByteBuffer in = ByteBuffer.wrap(bytes.toByteArray());
+        bytes.reset();
+        return in;
+    }
+
+    @Test
+    public void varintsRoundTripAtTheEdges() throws IOException {
+        long[] values = {0, 1, 127, 128, 16_383, 16_384, Integer.MAX_VALUE, Long.MAX_VALUE, -1, Long.MIN_VALUE};
+        int[] sizes = {1, 1, 1, 2, 2, 3, 5, 9, 10, 10};
+        for (int k = 0; k < values.length; k++) {
+            FrameCodec.writeVarLong(out, values[k]);
+            assertEquals("bytes for " + values[k], sizes[k], bytes.size());
+            ByteBuffer in = written();
+            assertEquals(values[k], FrameCodec.readVarLong(in));
+            assertFalse(in.hasRemaining());
+        }
+    }
+
+    @Test
+    public void keyframesAndDeltasRoundTripFullWords() throws IOException {
+        Random random = new Random(3);
+        long[] words = new long[REGIONS];
+        long[] previous = new long[REGIONS];
+        long[] decoded = new long[REGIONS];
+        for (int i = 0; i < REGIONS; i++) {
+            words[i] = random.nextLong();
+        }
+        words[0] = Long.MIN_VALUE;
+        words[1] = -1;
+
+        FrameCodec.writeKeyframe(out, words, previous, REGIONS);
+        assertEquals(REGIONS * 8, bytes.size());
+        assertArrayEquals(words, previous);
+        FrameCodec.readKeyframe(written(), decoded, REGIONS);
+        assertArrayEquals(words, decoded);
+
+        long[] changed = new long[(REGIONS + 63) >>> 6];
+        for (int frame = 0; frame < 100; frame++) {
+            Arrays.fill(changed, 0L);
+            // The first and last region and both sides of a bitmap word boundary, then random ones
+            int[] regions = frame == 0 ? new int[] {0, 63, 64, REGIONS - 1} : new int[random.nextInt(30)];
+            for (int k = 0; k < regions.length; k++) {
+                int i = frame == 0 ? regions[k] : random.nextInt(REGIONS);
+                // Flipping the sign bit makes the XOR negative, the widest varint
+                words[i] = frame % 2 == 0 ? ~words[i] : random.nextLong();
+                changed[i >>> 6] |= 1L << i;
+            }
+            FrameCodec.writeDelta(out, words, previous, changed);
+            assertArrayEquals(words, previous);
+            ByteBuffer in = written();
+            FrameCodec.readDelta(in, decoded);
+            assertFalse(in.hasRemaining());
+            assertArrayEquals("frame " + frame, words, decoded);
+        }
+    }
+
+    @Test
+    public void emptyDeltaIsOneByte() throws IOException {
+        long[] words = new long[REGIONS];
+        long[] decoded = new long[REGIONS];
+        FrameCodec.writeDelta(out, words, new long[REGIONS], new long[(REGIONS + 63) >>> 6]);
+        assertEquals(1, bytes.size());
+        FrameCodec.readDelta(written(), decoded);
+        assertArrayEquals(words, decoded);
+    }
+
+}
@@ -0,0 +1,82 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class HeapSnapshotExporterTest {
+
+    private static final int REGIONS = 256;
+    private static final int WIDTH = 320;
+    private static final int HEIGHT = 200;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final SnapshotBuilder builder = new SnapshotBuilder(REGIONS);
+    private final long[][] samples = new long[3][REGIONS];
+
+    private Snapshot snapshot(int sample) {
+        Snapshot s = builder.acquire();
+        System.arraycopy(samples[sample], 0, s.data, 0, REGIONS);
+        return builder.finish(s, sample * 1000L, sample * 1000L, 1024, 0);
+    }
+
+    @Test
+    public void pngsMatchTheRegionMapAtEachInterval() throws IOException {
+        for (int i = 0; i < REGIONS; i++) {
+            samples[0][i] = 1L << 58;
+            // Regular regions filling up in TLABs, half live
+            samples[1][i] = i < REGIONS / 2 ? (2L << 58) | (40L << 14) | (20L << 7) | 40 : samples[0][i];
+            // Then humongous at the end
+            samples[2][i] = i >= REGIONS - 16 ? (3L << 58) | (100L << 28) | (100L << 7) | 100 : samples[1][i];
+        }
+        File recording = folder.newFile("heap.shrv");
+        RecordingWriter writer = new RecordingWriter(recording, REGIONS, 1024);
+        for (int k = 0; k < samples.length; k++) {
+            Snapshot s = snapshot(k);
+            writer.write(s);
+            builder.release(s);
+        }
+        writer.close();
+
+        File dir = folder.newFolder("images");
+        HeapSnapshotExporter exporter = new HeapSnapshotExporter(new RecordingReader(recording), WIDTH, HEIGHT);
+        assertEquals(3, exporter.export(dir, 1000));
+
+        RasterSurface expected = new RasterSurface(WIDTH, HEIGHT);
+        int pitch = RegionMap.pitch(WIDTH, HEIGHT, REGIONS);
+        int cols = RegionMap.columns(WIDTH, pitch);
+        int lastX = (REGIONS - 1) % cols * pitch + pitch / 2;
+        int lastY = (REGIONS - 1) / cols * pitch + pitch / 2;
+        int[] lastRegion = new int[samples.length];
+        for (int k = 0; k < samples.length; k++) {
+            File png = new File(dir, "heap-" + k * 1000 + ".png");
+            assertTrue(png + " missing", png.isFile());
+            BufferedImage decoded = ImageIO.read(png);
+            assertEquals(WIDTH, decoded.getWidth());
+            assertEquals(HEIGHT, decoded.getHeight());
+
+            Snapshot s = snapshot(k);
+            expected.clear(Colors.WHITE);
+            RegionMap.render(expected, s, WIDTH, HEIGHT);
+            builder.release(s);
+            for (int y = 0; y < HEIGHT; y++) {
+                for (int x = 0; x < WIDTH; x++) {
+                    assertEquals("sample " + k + " at " + x + "," + y, expected.pixel(x, y), decoded.getRGB(x, y));
+                }
+            }
+            lastRegion[k] = decoded.getRGB(lastX, lastY);
+        }
+        assertEquals("images follow the recording", lastRegion[0], lastRegion[1]);
+        assertNotEquals("images follow the recording", lastRegion[1], lastRegion[2]);
+    }
+
+}
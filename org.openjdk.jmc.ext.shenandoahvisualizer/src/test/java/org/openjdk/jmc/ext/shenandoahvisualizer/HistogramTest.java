@@ -0,0 +1,41 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+
+    @Test
+    public void bucketsCoverTheLongRange() {
+        for (long v = 0; v < 100_000; v++) {
+            int b = Histogram.bucket(v);
+            assertTrue(v <= Histogram.highest(b));
+            assertTrue(b == 0 || v > Histogram.highest(b - 1));
+        }
+        assertEquals(Long.MAX_VALUE, Histogram.highest(Histogram.bucket(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void percentilesWithinThreePercent() {
+        Histogram h = new Histogram();
+        for (long v = 1; v <= 1_000_000; v++) {
+            h.record(v * 1000);
+        }
+        assertEquals(1_000_000, h.count());
+        assertEquals(1_000_000_000L, h.max());
+        assertEquals(500_000_500L, h.mean());
+        assertNear(500_000_000L, h.percentile(50));
+        assertNear(990_000_000L, h.percentile(99));
+        assertEquals(h.max(), h.percentile(100));
+
+        h.reset();
+        assertEquals(0, h.count());
+        assertEquals(0, h.percentile(99));
+    }
+
+    private static void assertNear(long expected, long actual) {
+        assertTrue(actual + " is not near " + expected, actual >= expected && actual <= expected * 1.03);
+    }
+
+}
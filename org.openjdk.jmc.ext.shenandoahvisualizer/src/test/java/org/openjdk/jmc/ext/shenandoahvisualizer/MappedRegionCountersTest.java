@@ -0,0 +1,122 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class MappedRegionCountersTest {
+
+    private static final int REGIONS = 4;
+    private static final int MATRIX_LENGTH = 16;
+
+    private File file;
+    // Data offsets of the matrix rows in the file
+    private final Map<Integer, Integer> matrixOffsets = new HashMap<>();
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("hsperfdata", null);
+        ByteBuffer b = ByteBuffer.allocate(8192);
+        b.putInt(0, 0xcafec0c0);
+        b.put(4, (byte) 0);
+        b.put(5, (byte) 2);
+        b.putInt(24, 64);
+        int entry = 64;
+        int count = 0;
+        entry = putLong(b, entry, "sun.gc.shenandoah.regions.timestamp", 1);
+        entry = putLong(b, entry, "sun.gc.shenandoah.regions.status", 0);
+        entry = putLong(b, entry, "sun.gc.shenandoah.regions.max_regions", REGIONS);
+        entry = putLong(b, entry, "sun.gc.shenandoah.regions.region_size", 1024);
+        count += 4;
+        for (int i = 0; i < REGIONS; i++) {
+            entry = putLong(b, entry, "sun.gc.shenandoah.regions.region." + i + ".data", i);
+            entry = putMatrix(b, entry, i);
+            count += 2;
+        }
+        b.putInt(8, entry);
+        b.putInt(28, count);
+        try (RandomAccessFile f = new RandomAccessFile(file, "rw")) {
+            f.write(b.array(), 0, entry);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private static int putName(ByteBuffer b, int entry, String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.US_ASCII);
+        for (int i = 0; i < bytes.length; i++) {
+            b.put(entry + 20 + i, bytes[i]);
+        }
+        b.putInt(entry + 4, 20);
+        // Name, terminator and padding to 8 bytes
+        return (20 + bytes.length + 1 + 7) & ~7;
+    }
+
+    private static int putLong(ByteBuffer b, int entry, String name, long value) {
+        int data = putName(b, entry, name);
+        b.putInt(entry, data + 8);
+        b.putInt(entry + 8, 0);
+        b.put(entry + 12, (byte) 'J');
+        b.putInt(entry + 16, data);
+        b.putLong(entry + data, value);
+        return entry + data + 8;
+    }
+
+    private int putMatrix(ByteBuffer b, int entry, int region) {
+        int data = putName(b, entry, "sun.gc.shenandoah.regions.region." + region + ".matrix");
+        b.putInt(entry, data + MATRIX_LENGTH);
+        b.putInt(entry + 8, MATRIX_LENGTH);
+        b.put(entry + 12, (byte) 'B');
+        b.putInt(entry + 16, data);
+        matrixOffsets.put(region, entry + data);
+        return entry + data + MATRIX_LENGTH;
+    }
+
+    private void writeMatrix(int region, String row) throws Exception {
+        try (RandomAccessFile f = new RandomAccessFile(file, "rw")) {
+            f.seek(matrixOffsets.get(region));
+            f.write(row.getBytes(StandardCharsets.US_ASCII));
+            f.write(0);
+        }
+    }
+
+    @Test
+    public void readsWordsAndRows() throws Exception {
+        writeMatrix(1, "abc");
+        MappedRegionCounters counters = new MappedRegionCounters(file);
+        assertEquals(REGIONS, counters.maxRegions());
+        long[] words = new long[REGIONS];
+        counters.read(words);
+        assertArrayEquals(new long[] {0, 1, 2, 3}, words);
+        assertTrue(counters.hasMatrix());
+        assertEquals("", counters.matrix(0));
+        assertEquals("abc", counters.matrix(1));
+    }
+
+    @Test
+    public void unchangedRowsKeepTheirString() throws Exception {
+        writeMatrix(2, "hello");
+        MappedRegionCounters counters = new MappedRegionCounters(file);
+        String first = counters.matrix(2);
+        assertEquals("hello", first);
+        assertSame(first, counters.matrix(2));
+
+        writeMatrix(2, "he");
+        assertEquals("he", counters.matrix(2));
+        writeMatrix(2, "hello!");
+        assertEquals("hello!", counters.matrix(2));
+    }
+
+}
@@ -0,0 +1,109 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class RecordingPlayerTest {
+
+    private static final int REGIONS = 64;
+    // A cycle every 10 s for a minute, marking for 2 s and evacuating for 1 s from 3 s on
+    private static final long CYCLE = 10_000;
+    private static final long END = 60_000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private RecordingPlayer player;
+
+    private static int status(long t) {
+        long c = t % CYCLE;
+        return c >= 3_000 && c < 5_000 ? 1 : c >= 5_000 && c < 6_000 ? 2 : 0;
+    }
+
+    @Before
+    public void setUp() throws IOException {
+        File file = folder.newFile();
+        SnapshotBuilder builder = new SnapshotBuilder(REGIONS);
+        RecordingWriter writer = new RecordingWriter(file, REGIONS, 1024, 16);
+        long[] words = new long[REGIONS];
+        for (long t = 0; t <= END; t += 100) {
+            // The used level of region 0 tells the time
+            words[0] = (2L << 58) | (t / 1_000);
+            words[(int) (t / 100) % REGIONS] |= 1L << 58;
+            Snapshot s = builder.acquire();
+            System.arraycopy(words, 0, s.data, 0, REGIONS);
+            builder.finish(s, t, t, 1024, status(t));
+            writer.write(s);
+            builder.release(s);
+        }
+        writer.close();
+        player = new RecordingPlayer(new RecordingReader(file));
+        // Paused, so that the position only moves by seeking
+        player.setSpeed(0);
+    }
+
+    private Snapshot at() {
+        Snapshot s = player.snapshot();
+        assertEquals(s.vmTime() / 1_000, s.data(0) & 0x7F);
+        return s;
+    }
+
+    @Test
+    public void seekLandsOnTheLastRecordAtOrBefore() {
+        assertEquals(0, player.startTime());
+        assertEquals(END, player.endTime());
+        for (long t : new long[] {0, 50, 1_600, 17_777, 33_300, END}) {
+            player.seek(t);
+            Snapshot s = at();
+            assertEquals(t - t % 100, s.vmTime());
+            assertEquals(Snapshot.toPhase(status(s.vmTime())), s.phase());
+            player.release(s);
+        }
+        // Clamped to the recording
+        player.seek(-5_000);
+        assertEquals(0, player.position());
+        player.seek(END + 5_000);
+        assertEquals(END, player.position());
+    }
+
+    @Test
+    public void cycleNavigationJumpsToMarkingStarts() {
+        player.seek(0);
+        for (long start = 3_000; start < END; start += CYCLE) {
+            assertTrue(player.nextCycle());
+            assertEquals(start, player.position());
+            Snapshot s = at();
+            assertEquals(Phase.MARKING, s.phase());
+            player.release(s);
+        }
+        assertFalse("no cycle after the last one", player.nextCycle());
+
+        // From the middle of a cycle, previous goes to the start of the one before
+        player.seek(4 * CYCLE + 4_000);
+        assertTrue(player.previousCycle());
+        assertEquals(3 * CYCLE + 3_000, player.position());
+        assertTrue(player.previousCycle());
+        assertEquals(2 * CYCLE + 3_000, player.position());
+        player.seek(3_000);
+        assertFalse("no cycle before the first one", player.previousCycle());
+    }
+
+    @Test
+    public void seeksToTheNthTransition() {
+        // The third evacuation after 14 s
+        assertTrue(player.seekToTransition(Phase.EVACUATING, 14_000, 3));
+        assertEquals(3 * CYCLE + 5_000, player.position());
+        Snapshot s = at();
+        assertEquals(Phase.EVACUATING, s.phase());
+        player.release(s);
+        assertFalse(player.seekToTransition(Phase.EVACUATING, 14_000, 10));
+    }
+
+}
@@ -0,0 +1,113 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RecordingReaderTest {
+
+    private static final int REGIONS = 200;
+    private static final int RECORDS = 500;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(8);
+    private final long[][] recorded = new long[RECORDS][];
+
+    /**
+     * Records {@link #RECORDS} samples 100 ms apart, a few regions changing in each,
+     * and keeps their words to compare against. Every 5 s a cycle marks for 1 s and
+     * evacuates for 1 s.
+     */
+    private File record(int keyframeInterval) throws IOException {
+        File file = folder.newFile();
+        SnapshotBuilder builder = new SnapshotBuilder(REGIONS);
+        RecordingWriter writer = new RecordingWriter(file, REGIONS, 1024, keyframeInterval);
+        long[] words = new long[REGIONS];
+        for (int k = 0; k < RECORDS; k++) {
+            for (int c = random.nextInt(20); c >= 0; c--) {
+                words[random.nextInt(REGIONS)] = ((long) random.nextInt(10) << 58) | (random.nextLong() >>> 6);
+            }
+            recorded[k] = words.clone();
+            Snapshot s = builder.acquire();
+            System.arraycopy(words, 0, s.data, 0, REGIONS);
+            builder.finish(s, k * 100L, k * 100L, 1024, status(k));
+            writer.write(s);
+            builder.release(s);
+        }
+        writer.close();
+        return file;
+    }
+
+    private static int status(int k) {
+        int t = k % 50;
+        return t < 10 ? 0 : t < 20 ? 1 : t < 30 ? 2 : 0;
+    }
+
+    @Test
+    public void readsRecordsAcrossMappedWindows() throws IOException {
+        File file = record(50);
+        // Windows far smaller than the file, and than a keyframe
+        for (long window : new long[] {RecordingReader.DEFAULT_WINDOW, 4096, 1000}) {
+            RecordingReader reader = new RecordingReader(file, window);
+            assertTrue(file.length() > 10 * window || window == RecordingReader.DEFAULT_WINDOW);
+            for (int k = 0; k < RECORDS; k++) {
+                assertEquals(k * 100L, reader.peekTime());
+                assertTrue(reader.next());
+                assertEquals(k * 100L, reader.time());
+                assertArrayEquals("record " + k + " with window " + window, recorded[k], reader.words());
+            }
+            assertFalse(reader.next());
+            assertEquals(Long.MAX_VALUE, reader.peekTime());
+
+            reader.seek(33_350);
+            assertEquals(33_300, reader.time());
+            assertArrayEquals(recorded[333], reader.words());
+            reader.seek(1_000);
+            assertArrayEquals(recorded[10], reader.words());
+        }
+    }
+
+    @Test
+    public void indexIsRebuiltWhenTheLastRecordIsCutShort() throws IOException {
+        File file = record(50);
+        RecordingIndex written = new RecordingReader(file).index();
+        assertEquals(RECORDS / 50, written.keyframeCount());
+        // Into marking, evacuation and idle per cycle, after the idle start
+        assertEquals(1 + 3 * RECORDS / 50, written.transitionCount());
+        assertEquals(0, written.firstTime());
+        assertEquals((RECORDS - 1) * 100L, written.lastTime());
+
+        // Killed in the middle of writing the last record, before the index was appended
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - RecordingWriter.FOOTER_SIZE);
+            long recordsEnd = raf.length() - RecordingWriter.FOOTER_SIZE - raf.readInt();
+            raf.setLength(recordsEnd - 3);
+        }
+        RecordingReader reader = new RecordingReader(file, 4096);
+        RecordingIndex index = reader.index();
+        assertEquals(written.keyframeCount(), index.keyframeCount());
+        assertEquals(written.transitionCount(), index.transitionCount());
+        assertEquals((RECORDS - 2) * 100L, index.lastTime());
+        for (int i = 0; i < index.transitionCount(); i++) {
+            assertEquals(written.transitionTime(i), index.transitionTime(i));
+            assertEquals(written.transitionOffset(i), index.transitionOffset(i));
+            assertEquals(written.transitionPhase(i), index.transitionPhase(i));
+        }
+        assertEquals(written.keyframeBefore(12_345), index.keyframeBefore(12_345));
+
+        reader.seek(Long.MAX_VALUE);
+        assertEquals((RECORDS - 2) * 100L, reader.time());
+        assertArrayEquals(recorded[RECORDS - 2], reader.words());
+        assertFalse(reader.next());
+    }
+
+}
@@ -0,0 +1,103 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class RegionHistoryTest {
+
+    private static final int REGIONS = 1024;
+
+    @Test
+    public void foldsInCyclesOfASimulatedHeap() {
+        SyntheticCounterSource source = new SyntheticCounterSource(REGIONS, 1024, 512, 10, 1, false);
+        SyntheticDataProvider provider = new SyntheticDataProvider(source);
+        CycleDetector cycles = new CycleDetector();
+        RegionHistory history = new RegionHistory(REGIONS);
+        long now = 0;
+        for (int i = 0; i < 3000; i++) {
+            source.advance(10);
+            Snapshot s = provider.snapshot();
+            cycles.add(s);
+            history.update(s, cycles.completed());
+            now = s.vmTime();
+            provider.release(s);
+        }
+
+        int inCset = 0;
+        int churning = 0;
+        int trending = 0;
+        for (int i = 0; i < REGIONS; i++) {
+            inCset += history.csetCount(i) > 0 ? 1 : 0;
+            churning += history.churn(i, now) > 0 ? 1 : 0;
+            trending += history.liveTrend(i) != 0 ? 1 : 0;
+            assertTrue(Math.abs(history.liveTrend(i)) <= 100);
+        }
+        assertTrue(inCset > 0);
+        assertTrue(churning > 0);
+        assertTrue(trending > 0);
+        assertTrue(history.timeSinceChange(0, now) >= 0);
+
+        history.clear();
+        assertEquals(0, history.csetCount(0));
+        assertEquals(-1, history.timeSinceChange(0, now));
+        assertEquals(Colors.WHITE, history.color(0, RegionHistory.Mode.CSET_COUNT, now));
+    }
+
+    @Test
+    public void startsFromAPopulatedHeap() {
+        SnapshotBuilder builder = new SnapshotBuilder(REGIONS);
+        long[] words = new long[REGIONS];
+        for (int i = 0; i < REGIONS; i++) {
+            // Regular regions 80% used, half of that live
+            words[i] = (2L << 58) | (80L << 14) | (40L << 7) | 80;
+        }
+        RegionHistory history = new RegionHistory(REGIONS);
+        for (int pass = 0; pass < 2; pass++) {
+            Snapshot s = builder.acquire();
+            System.arraycopy(words, 0, s.data, 0, REGIONS);
+            builder.finish(s, 1_000, 1_000, 1024, 0);
+            history.update(s, 0);
+            builder.release(s);
+
+            words[5] += (10L << 14) + 10;
+            s = builder.acquire();
+            System.arraycopy(words, 0, s.data, 0, REGIONS);
+            builder.finish(s, 1_100, 1_100, 1024, 0);
+            history.update(s, 0);
+            builder.release(s);
+
+            for (int i = 0; i < REGIONS; i++) {
+                assertEquals("region " + i, i == 5 ? 10 : 0, history.churn(i, 1_100), 1e-9);
+                assertEquals("region " + i, -1, history.timeSinceChange(i, 1_100));
+                assertEquals(0, history.liveTrend(i));
+            }
+            // A seek lands in the same heap again
+            history.clear();
+            words[5] -= (10L << 14) + 10;
+        }
+    }
+
+    @Test
+    public void churnDecaysWithTime() {
+        SyntheticCounterSource source = new SyntheticCounterSource(REGIONS, 1024, 512, 10, 1, false);
+        SyntheticDataProvider provider = new SyntheticDataProvider(source);
+        RegionHistory history = new RegionHistory(REGIONS);
+        Snapshot s = null;
+        for (int i = 0; i < 10; i++) {
+            source.advance(10);
+            s = provider.snapshot();
+            history.update(s, 0);
+        }
+        int region = 0;
+        while (region < REGIONS && history.churn(region, s.vmTime()) == 0) {
+            region++;
+        }
+        assertTrue(region < REGIONS);
+        double churn = history.churn(region, s.vmTime());
+        assertTrue(churn > 0);
+        assertEquals(churn / 2, history.churn(region, s.vmTime() + 10_000), 1e-9);
+        assertNotEquals(Colors.WHITE, history.color(region, RegionHistory.Mode.CHURN, s.vmTime()));
+    }
+
+}
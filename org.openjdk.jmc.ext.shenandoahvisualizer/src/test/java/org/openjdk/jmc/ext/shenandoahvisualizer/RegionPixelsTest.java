@@ -0,0 +1,129 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RegionPixelsTest {
+
+    private static final int WIDTH = 203;
+    private static final int HEIGHT = 157;
+    private static final int[] STATES = {0, 1, 2, 3, 5, 6, 7, 8, 9};
+
+    private final Random random = new Random(20);
+
+    /**
+     * A region in any state, with levels that add up like the VM reports them.
+     */
+    private long randomWord() {
+        long used = random.nextInt(101);
+        long live = random.nextInt((int) used + 1);
+        long tlab = random.nextInt((int) used + 1);
+        long gclab = random.nextInt((int) (used - tlab) + 1);
+        long shared = used - tlab - gclab;
+        long state = STATES[random.nextInt(STATES.length)];
+        return (state << 58) | (shared << 28) | (gclab << 21) | (tlab << 14) | (live << 7) | used;
+    }
+
+    private static Snapshot snapshot(SnapshotBuilder builder, long[] words, long time) {
+        Snapshot s = builder.acquire();
+        System.arraycopy(words, 0, s.data, 0, words.length);
+        return builder.finish(s, time, time, 1024, 0);
+    }
+
+    private static void assertSamePixels(String what, RasterSurface expected, byte[] data, int bytesPerLine) {
+        for (int y = 0; y < HEIGHT; y++) {
+            for (int x = 0; x < WIDTH; x++) {
+                int b = y * bytesPerLine + x * 3;
+                int rgb = ((data[b] & 0xFF) << 16) | ((data[b + 1] & 0xFF) << 8) | (data[b + 2] & 0xFF);
+                if ((expected.pixel(x, y) & 0xFFFFFF) != rgb) {
+                    fail(what + " at " + x + "," + y + ": expected " + Integer.toHexString(expected.pixel(x, y) & 0xFFFFFF)
+                            + " but was " + Integer.toHexString(rgb));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void sameAsTheVectorPathForCellsWithBorders() {
+        int bytesPerLine = WIDTH * 3 + 1;
+        for (int pitch = 3; pitch < RegionPixels.VECTOR_PITCH; pitch++) {
+            int regions = WIDTH * HEIGHT / (pitch * pitch);
+            while (RegionMap.pitch(WIDTH, HEIGHT, regions) > pitch) {
+                regions++;
+            }
+            assertEquals(pitch, RegionMap.pitch(WIDTH, HEIGHT, regions));
+
+            long[] words = new long[regions];
+            for (int i = 0; i < regions; i++) {
+                words[i] = randomWord();
+            }
+            SnapshotBuilder builder = new SnapshotBuilder(regions);
+            Snapshot s = snapshot(builder, words, 1_000);
+            RasterSurface expected = new RasterSurface(WIDTH, HEIGHT);
+            RegionMap.render(expected, s, WIDTH, HEIGHT);
+            byte[] data = new byte[bytesPerLine * HEIGHT];
+            RegionPixels pixels = new RegionPixels(data, bytesPerLine, WIDTH, HEIGHT);
+            pixels.render(s);
+            assertSamePixels("pitch " + pitch, expected, data, bytesPerLine);
+            int[] bounds = new int[4];
+            assertTrue(pixels.takeDirty(bounds));
+            assertArrayEquals(new int[] {0, 0, WIDTH, HEIGHT}, bounds);
+            assertFalse(pixels.takeDirty(bounds));
+
+            // Repaint a few changed regions on both
+            long[] changed = new long[(regions + 63) >>> 6];
+            long[] changedCopy = new long[changed.length];
+            for (int k = 0; k < 5; k++) {
+                int i = random.nextInt(regions);
+                words[i] = randomWord();
+                changed[i >>> 6] |= 1L << i;
+            }
+            builder.release(s);
+            s = snapshot(builder, words, 2_000);
+            System.arraycopy(changed, 0, changedCopy, 0, changed.length);
+            RegionMap.render(expected, s, WIDTH, HEIGHT, changed);
+            assertEquals(5, pixels.render(s, changedCopy), 5);
+            assertSamePixels("changed at pitch " + pitch, expected, data, bytesPerLine);
+            assertTrue(pixels.takeDirty(bounds));
+            assertTrue(bounds[2] >= pitch - 1 && bounds[3] >= pitch - 1);
+
+            // Heatmap colors
+            RegionHistory heat = new RegionHistory(regions);
+            heat.update(s, 0);
+            RasterSurface heatExpected = new RasterSurface(WIDTH, HEIGHT);
+            RegionMap.render(heatExpected, s, WIDTH, HEIGHT, heat, RegionHistory.Mode.AGE, 3_000);
+            pixels.render(s, heat, RegionHistory.Mode.AGE, 3_000);
+            assertSamePixels("heat at pitch " + pitch, heatExpected, data, bytesPerLine);
+            builder.release(s);
+        }
+    }
+
+    @Test
+    public void dirtyBoundsCoverThePaintedCells() {
+        int regions = 400;
+        int bytesPerLine = WIDTH * 3;
+        int pitch = RegionMap.pitch(WIDTH, HEIGHT, regions);
+        int cols = RegionMap.columns(WIDTH, pitch);
+        SnapshotBuilder builder = new SnapshotBuilder(regions);
+        long[] words = new long[regions];
+        Snapshot s = snapshot(builder, words, 0);
+        RegionPixels pixels = new RegionPixels(new byte[bytesPerLine * HEIGHT], bytesPerLine, WIDTH, HEIGHT);
+        pixels.render(s);
+        int[] bounds = new int[4];
+        pixels.takeDirty(bounds);
+
+        long[] changed = new long[(regions + 63) >>> 6];
+        int a = cols + 2;
+        int b = 3 * cols + 5;
+        changed[a >>> 6] |= 1L << a;
+        changed[b >>> 6] |= 1L << b;
+        assertEquals(2, pixels.render(s, changed));
+        assertTrue(pixels.takeDirty(bounds));
+        assertArrayEquals(new int[] {2 * pitch, pitch, 3 * pitch + pitch - 1, 2 * pitch + pitch - 1}, bounds);
+        builder.release(s);
+    }
+
+}
@@ -0,0 +1,222 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+import static org.junit.Assert.*;
+
+public class RegionStatsAgentTest {
+
+    private static final int REGIONS = 2048;
+
+    private FakeCounters counters;
+    private RegionStatsAgent agent;
+    private RemoteDataProvider provider;
+
+    @Before
+    public void setUp() throws Exception {
+        counters = new FakeCounters(REGIONS);
+        ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        agent = new RegionStatsAgent(counters, server, 1);
+        Thread t = new Thread(agent, "agent");
+        t.setDaemon(true);
+        t.start();
+        provider = new RemoteDataProvider("remote://127.0.0.1:" + server.getLocalPort());
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        provider.close();
+        agent.close();
+    }
+
+    @Test
+    public void firstSnapshotIsTheKeyframe() {
+        Snapshot s = provider.snapshot();
+        assertNotNull(s);
+        assertEquals(REGIONS, s.regionCount());
+        for (int i = 0; i < REGIONS; i++) {
+            assertEquals(counters.word(i), s.data(i));
+        }
+        assertNull("nothing was published since", provider.snapshot());
+    }
+
+    @Test
+    public void deltasCarryOnlyChangedRegions() throws Exception {
+        provider.snapshot();
+        long keyframeBytes = agent.bytesSent();
+
+        counters.publish(1, new int[] {3, 700, 2047});
+        Snapshot s = await();
+        assertEquals(Phase.MARKING, s.phase());
+        assertEquals(3, s.changedCount());
+        assertTrue(s.isChanged(700));
+        for (int i = 0; i < REGIONS; i++) {
+            assertEquals(counters.word(i), s.data(i));
+        }
+
+        long deltaBytes = agent.bytesSent() - keyframeBytes;
+        assertTrue("delta took " + deltaBytes + " bytes", deltaBytes < 64);
+        assertTrue(keyframeBytes > REGIONS * 8);
+    }
+
+    @Test
+    public void statusChangeAloneIsSent() throws Exception {
+        provider.snapshot();
+        counters.publish(2, new int[0]);
+        Snapshot s = await();
+        assertEquals(Phase.EVACUATING, s.phase());
+        assertEquals(0, s.changedCount());
+    }
+
+    @Test
+    public void stopsOnceTheServerSocketIsClosed() throws Exception {
+        ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Thread thread = new Thread(new RegionStatsAgent(counters, server, 1), "idle agent");
+        thread.setDaemon(true);
+        thread.start();
+        server.close();
+        thread.join(5_000);
+        assertFalse("accept loop still running", thread.isAlive());
+    }
+
+    @Test
+    public void badFramesEndTheConnectionWithAnError() throws Exception {
+        // A delta pointing past the last region, and a length no frame of 4 regions can have
+        byte[][] frames = {
+                {FrameCodec.DELTA, 0, 0, 0, 15, 0, 0, 0, 0, 0, 0, 0, 2, 0, 0, 0, 0, 1, 9, 1},
+                {FrameCodec.DELTA, 0x7F, 0, 0, 0},
+        };
+        for (byte[] frame : frames) {
+            RemoteDataProvider bad = new RemoteDataProvider("remote://127.0.0.1:" + serveOnce(frame));
+            try {
+                long deadline = System.currentTimeMillis() + 5_000;
+                while (true) {
+                    try {
+                        bad.snapshot();
+                    } catch (IllegalStateException e) {
+                        break;
+                    }
+                    assertTrue("bad frame went unnoticed", System.currentTimeMillis() < deadline);
+                    Thread.sleep(1);
+                }
+            } finally {
+                bad.close();
+            }
+        }
+    }
+
+    /**
+     * Serves one client a keyframe of 4 regions followed by {@code frame}, and returns the port.
+     */
+    private static int serveOnce(final byte[] frame) throws IOException {
+        final ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try (ServerSocket s = server; Socket client = s.accept()) {
+                    DataOutputStream out = new DataOutputStream(client.getOutputStream());
+                    out.writeInt(RegionStatsAgent.MAGIC);
+                    out.writeInt(RegionStatsAgent.VERSION);
+                    out.writeInt(4);
+                    out.writeLong(1024);
+                    out.writeByte(FrameCodec.KEYFRAME);
+                    out.writeInt(RecordingWriter.PAYLOAD_PREFIX_SIZE + 4 * 8);
+                    out.writeLong(1);
+                    out.writeInt(0);
+                    for (int i = 0; i < 4; i++) {
+                        out.writeLong(1L << 58);
+                    }
+                    out.write(frame);
+                    out.flush();
+                    // Keep the connection open, so that only the frame can end it
+                    client.getInputStream().read();
+                } catch (IOException e) {
+                    // The client went away
+                }
+            }
+        }, "bad agent");
+        thread.setDaemon(true);
+        thread.start();
+        return server.getLocalPort();
+    }
+
+    private Snapshot await() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (System.currentTimeMillis() < deadline) {
+            Snapshot s = provider.snapshot();
+            if (s != null) {
+                return s;
+            }
+            Thread.sleep(1);
+        }
+        throw new AssertionError("No frame received");
+    }
+
+    /**
+     * Regular regions, half used, whose used level is bumped on publish.
+     */
+    static class FakeCounters implements CounterSource {
+
+        private final long[] words;
+        private long timestamp = 1;
+        private long status;
+
+        FakeCounters(int regions) {
+            words = new long[regions];
+            for (int i = 0; i < regions; i++) {
+                words[i] = (2L << 58) | (20L << 7) | 50;
+            }
+        }
+
+        synchronized void publish(long status, int[] regions) {
+            for (int r : regions) {
+                words[r]++;
+            }
+            this.status = status;
+            timestamp += 1_000_000;
+        }
+
+        synchronized long word(int i) {
+            return words[i];
+        }
+
+        @Override
+        public int maxRegions() {
+            return words.length;
+        }
+
+        @Override
+        public long regionSize() {
+            return 1024;
+        }
+
+        @Override
+        public long frequency() {
+            return 1_000_000_000L;
+        }
+
+        @Override
+        public synchronized long timestamp() {
+            return timestamp;
+        }
+
+        @Override
+        public synchronized long status() {
+            return status;
+        }
+
+        @Override
+        public synchronized void read(long[] dst) {
+            System.arraycopy(words, 0, dst, 0, words.length);
+        }
+
+    }
+
+}
@@ -0,0 +1,99 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Set;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.openmbean.TabularData;
+
+import static org.junit.Assert.*;
+
+public class RegionStatsTest {
+
+    private static final int REGIONS = 128;
+    private static final String TARGET = "synthetic://regions=128";
+
+    private final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    private final SnapshotBuilder builder = new SnapshotBuilder(REGIONS);
+    private final long[] words = new long[REGIONS];
+    private RegionStats stats;
+    private ObjectName name;
+
+    @Before
+    public void setUp() throws Exception {
+        stats = new RegionStats(TARGET);
+        assertTrue(stats.register());
+        Set<ObjectName> names = server.queryNames(
+                new ObjectName(RegionStats.DOMAIN + ":type=RegionStats,target=" + ObjectName.quote(TARGET) + ",*"), null);
+        assertEquals(1, names.size());
+        name = names.iterator().next();
+    }
+
+    @After
+    public void tearDown() {
+        stats.unregister();
+        assertFalse(server.isRegistered(name));
+    }
+
+    private Snapshot feed(long vmTime, int status) {
+        Snapshot s = builder.acquire();
+        System.arraycopy(words, 0, s.data, 0, REGIONS);
+        builder.finish(s, vmTime, vmTime, 1024, status);
+        stats.update(s);
+        return s;
+    }
+
+    @Test
+    public void attributesFollowTheSnapshots() throws Exception {
+        for (int i = 0; i < 32; i++) {
+            // Regular regions, i% used and half of that live
+            words[i] = (2L << 58) | ((i / 2L) << 7) | i;
+        }
+        words[40] = 1L << 58;
+        Snapshot s = feed(1_000, 0);
+
+        assertEquals(TARGET, server.getAttribute(name, "Target"));
+        assertEquals("IDLE", server.getAttribute(name, "Phase"));
+        assertEquals(REGIONS, server.getAttribute(name, "RegionCount"));
+        assertEquals(1024L * 1024, server.getAttribute(name, "RegionSize"));
+        assertEquals(s.total() * 1024, server.getAttribute(name, "Total"));
+        assertEquals(s.used() * 1024, server.getAttribute(name, "Used"));
+        assertEquals(s.live() * 1024, server.getAttribute(name, "Live"));
+        assertEquals(s.committed() * 1024, server.getAttribute(name, "Committed"));
+        assertTrue(s.used() > s.live() && s.live() > 0);
+
+        TabularData states = (TabularData) server.getAttribute(name, "RegionStates");
+        assertEquals(32, states.get(new Object[] {"REGULAR"}).get("value"));
+        assertEquals(1, states.get(new Object[] {"EMPTY_COMMITTED"}).get("value"));
+        assertEquals(REGIONS - 33, states.get(new Object[] {"EMPTY_UNCOMMITTED"}).get("value"));
+        builder.release(s);
+    }
+
+    @Test
+    public void phaseTimesAndCyclesAccumulate() throws Exception {
+        builder.release(feed(1_000, 0));
+        builder.release(feed(1_500, 1));
+        builder.release(feed(1_800, 2));
+        builder.release(feed(1_900, 4));
+        builder.release(feed(2_000, 0));
+        builder.release(feed(2_600, 1));
+
+        assertEquals("MARKING", server.getAttribute(name, "Phase"));
+        assertEquals(2L, server.getAttribute(name, "Cycles"));
+        assertEquals(1_100L, server.getAttribute(name, "IdleTime"));
+        assertEquals(300L, server.getAttribute(name, "MarkingTime"));
+        assertEquals(100L, server.getAttribute(name, "EvacuationTime"));
+        assertEquals(100L, server.getAttribute(name, "UpdateRefsTime"));
+        assertEquals(0L, server.getAttribute(name, "CurrentPhaseTime"));
+
+        stats.reset();
+        assertEquals(0L, server.getAttribute(name, "Cycles"));
+        assertEquals(0L, server.getAttribute(name, "IdleTime"));
+    }
+
+}
@@ -1,22 +1,45 @@
-//package org.openjdk.jmc.ext.shenandoahvisualizer;
-//
-//import org.junit.Test;
-//
-//import javax.imageio.ImageIO;
-//import java.awt.*;
-//import java.awt.image.BufferedImage;
-//import java.io.File;
-//import java.io.IOException;
-//
-//public class RenderLegendTest {
-//
-//    @Test
-//    public void test() throws IOException {
-////        BufferedImage img = new BufferedImage(300, 700, BufferedImage.TYPE_INT_RGB);
-////        Graphics2D g = img.createGraphics();
-////        g.setColor(Color.WHITE);
-////        g.fillRect(0, 0, 300, 700);
-////        ShenandoahVisualizer.Render.renderLegend(g);
-////        ImageIO.write(img, "png", new File("legend.png"));
-//    }
-//}
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import org.junit.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.*;
+
+public class RenderLegendTest {
+
+    // Legend entries are squares of Render.LINE pixels, one every 1.5 lines
+    private static int entryY(int entry) {
+        return (int) (entry * ShenandoahVisualizer.Render.LINE * 1.5);
+    }
+
+    @Test
+    public void test() throws IOException {
+        RasterSurface img = new RasterSurface(300, 700);
+        ShenandoahVisualizer.Render.renderLegend(img, ShenandoahVisualizer.legendItems());
+
+        // Empty uncommitted is grey, drawn at reduced alpha over white
+        int uncommitted = img.pixel(10, entryY(1) + 10);
+        assertNotEquals(0xFFFFFFFF, uncommitted);
+        assertEquals((uncommitted >> 16) & 0xFF, uncommitted & 0xFF);
+
+        // Fully live TLAB allocations are opaque
+        assertEquals(0xFF000000 | Colors.TLAB_ALLOC, img.pixel(10, entryY(4) + 10));
+        // Cell border
+        assertEquals(0xFF000000 | Colors.BORDER, img.pixel(0, entryY(4) + 10));
+        // Labels are not drawn on a raster
+        assertEquals(0xFFFFFFFF, img.pixel(100, entryY(4) + 10));
+
+        ByteArrayOutputStream png = new ByteArrayOutputStream();
+        img.writePng(png);
+        BufferedImage decoded = ImageIO.read(new ByteArrayInputStream(png.toByteArray()));
+        assertEquals(300, decoded.getWidth());
+        assertEquals(700, decoded.getHeight());
+        assertEquals(img.pixel(10, entryY(4) + 10), decoded.getRGB(10, entryY(4) + 10));
+        assertEquals(uncommitted, decoded.getRGB(10, entryY(1) + 10));
+    }
+}
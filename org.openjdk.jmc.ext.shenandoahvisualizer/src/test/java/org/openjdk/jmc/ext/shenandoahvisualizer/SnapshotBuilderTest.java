@@ -0,0 +1,100 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class SnapshotBuilderTest {
+
+    // Raw state codes of the region data word
+    private static final long UNCOMMITTED = 0;
+    private static final long COMMITTED = 1;
+    private static final long REGULAR = 2;
+
+    private static long word(long state, int used) {
+        return (state << 58) | used;
+    }
+
+    private static Snapshot build(SnapshotBuilder builder, long... words) {
+        Snapshot s = builder.acquire();
+        System.arraycopy(words, 0, s.data, 0, words.length);
+        return builder.finish(s, 0, 0, 1024, 0);
+    }
+
+    @Test
+    public void measuresFreeRunsInTheBuildingPass() {
+        SnapshotBuilder builder = new SnapshotBuilder(10);
+        Snapshot s = build(builder,
+                word(REGULAR, 50), word(COMMITTED, 0), word(COMMITTED, 0), word(UNCOMMITTED, 0),
+                word(UNCOMMITTED, 0), word(UNCOMMITTED, 0), word(REGULAR, 100), word(COMMITTED, 0),
+                word(REGULAR, 10), word(UNCOMMITTED, 0));
+
+        assertEquals(3, s.stateCount(RegionState.REGULAR));
+        assertEquals(3, s.stateCount(RegionState.EMPTY_COMMITTED));
+        assertEquals(4, s.stateCount(RegionState.EMPTY_UNCOMMITTED));
+        assertEquals(7, s.freeRegions());
+        assertEquals(5, s.largestFreeRun());
+        assertEquals(2, s.largestCommittedRun());
+        assertEquals(3, s.largestUncommittedRun());
+        assertEquals(5 * 1024, s.largestFree());
+        assertEquals(1 - 5 / 7D, s.fragmentation(), 1e-9);
+        builder.release(s);
+
+        // Unchanged regions still count towards the runs of the next sample
+        s = build(builder,
+                word(REGULAR, 50), word(COMMITTED, 0), word(COMMITTED, 0), word(UNCOMMITTED, 0),
+                word(UNCOMMITTED, 0), word(UNCOMMITTED, 0), word(COMMITTED, 0), word(COMMITTED, 0),
+                word(REGULAR, 10), word(UNCOMMITTED, 0));
+        assertEquals(1, s.changedCount());
+        assertEquals(7, s.largestFreeRun());
+        assertEquals(2, s.largestCommittedRun());
+        assertEquals(1 - 7 / 8D, s.fragmentation(), 1e-9);
+    }
+
+    @Test
+    public void fullHeapIsNotFragmented() {
+        SnapshotBuilder builder = new SnapshotBuilder(2);
+        Snapshot s = build(builder, word(REGULAR, 100), word(REGULAR, 100));
+        assertEquals(0, s.freeRegions());
+        assertEquals(0, s.largestFreeRun());
+        assertEquals(0, s.fragmentation(), 0);
+    }
+
+    @Test
+    public void runsMatchACountOverTheStates() {
+        Random random = new Random(1);
+        SnapshotBuilder builder = new SnapshotBuilder(300);
+        for (int sample = 0; sample < 200; sample++) {
+            Snapshot s = builder.acquire();
+            // Long and short runs, across and within the bitmap words
+            int stretch = 1 + random.nextInt(80);
+            for (int i = 0; i < 300; i++) {
+                if (random.nextInt(stretch) == 0) {
+                    s.data[i] = word(random.nextInt(3), random.nextInt(100));
+                } else if (i > 0) {
+                    s.data[i] = s.data[i - 1];
+                }
+            }
+            builder.finish(s, 0, 0, 1024, 0);
+
+            int free = 0, committed = 0, uncommitted = 0;
+            int largestFree = 0, largestCommitted = 0, largestUncommitted = 0;
+            for (int i = 0; i < 300; i++) {
+                RegionState st = s.state(i);
+                free = st == RegionState.EMPTY_COMMITTED || st == RegionState.EMPTY_UNCOMMITTED ? free + 1 : 0;
+                committed = st == RegionState.EMPTY_COMMITTED ? committed + 1 : 0;
+                uncommitted = st == RegionState.EMPTY_UNCOMMITTED ? uncommitted + 1 : 0;
+                largestFree = Math.max(largestFree, free);
+                largestCommitted = Math.max(largestCommitted, committed);
+                largestUncommitted = Math.max(largestUncommitted, uncommitted);
+            }
+            assertEquals(largestFree, s.largestFreeRun());
+            assertEquals(largestCommitted, s.largestCommittedRun());
+            assertEquals(largestUncommitted, s.largestUncommittedRun());
+            builder.release(s);
+        }
+    }
+
+}
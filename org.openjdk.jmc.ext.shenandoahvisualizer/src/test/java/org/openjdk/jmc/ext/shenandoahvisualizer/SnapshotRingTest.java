@@ -0,0 +1,74 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import org.junit.Test;
+
+import java.util.BitSet;
+
+import static org.junit.Assert.*;
+
+public class SnapshotRingTest {
+
+    private static final int REGIONS = 256;
+
+    private final SnapshotBuilder builder = new SnapshotBuilder(REGIONS);
+    private final long[] words = new long[REGIONS];
+
+    /**
+     * Samples the heap after changing {@code region}.
+     */
+    private Snapshot sample(int region) {
+        words[region] = (2L << 58) | (words[region] + 1 & 0x7F);
+        Snapshot s = builder.acquire();
+        System.arraycopy(words, 0, s.data, 0, REGIONS);
+        return builder.finish(s, 0, 0, 1024, 0);
+    }
+
+    @Test
+    public void everyChangeReachesTheConsumerOfAFullRing() {
+        SnapshotRing ring = new SnapshotRing(4);
+        BitSet changed = new BitSet();
+        int replaced = 0;
+        // The consumer is stuck while far more samples come in than fit
+        for (int region = 0; region < 40; region++) {
+            changed.set(region);
+            Snapshot r = ring.publish(sample(region));
+            if (r != null) {
+                replaced++;
+                builder.release(r);
+            }
+        }
+        assertEquals(ring.capacity(), ring.size());
+        assertTrue(replaced > 0);
+
+        // Nothing new is sampled while the consumer catches up
+        long[] pending = new long[(REGIONS + 63) >>> 6];
+        Snapshot last = null;
+        for (int round = 0; round < 3; round++) {
+            Snapshot s;
+            while ((s = ring.poll()) != null) {
+                s.mergeChanges(pending);
+                last = s;
+            }
+            assertNull(ring.publish(null));
+        }
+
+        assertEquals(changed, BitSet.valueOf(pending));
+        for (int i = 0; i < REGIONS; i++) {
+            assertEquals(words[i], last.data(i));
+        }
+    }
+
+    @Test
+    public void clearRecyclesWhatIsHeldBack() {
+        SnapshotRing ring = new SnapshotRing(2);
+        for (int region = 0; region < ring.capacity() + 1; region++) {
+            assertNull(ring.publish(sample(region)));
+        }
+        ring.clear();
+        assertEquals(0, ring.size());
+        assertNull(ring.poll());
+        assertNull(ring.publish(null));
+        assertNull(ring.poll());
+    }
+
+}
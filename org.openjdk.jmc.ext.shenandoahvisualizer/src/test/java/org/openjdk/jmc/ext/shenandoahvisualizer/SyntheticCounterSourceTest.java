@@ -0,0 +1,117 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SyntheticCounterSourceTest {
+
+    private static final int REGIONS = 1024;
+
+    @Test
+    public void cyclesFollowThePhaseScript() {
+        SyntheticCounterSource source = new SyntheticCounterSource(REGIONS, 1024, 512, 10, 1, false);
+        SyntheticDataProvider provider = new SyntheticDataProvider(source);
+        List<Phase> phases = new ArrayList<>();
+        for (int i = 0; i < 3000; i++) {
+            source.advance(10);
+            Snapshot s = provider.snapshot();
+            assertNotNull(s);
+            if (phases.isEmpty() || phases.get(phases.size() - 1) != s.phase()) {
+                phases.add(s.phase());
+            }
+            assertTrue(s.used() <= s.total());
+            assertTrue(s.live() <= s.used());
+            provider.release(s);
+        }
+
+        assertTrue(source.cycles() > 2);
+        for (int i = 1; i < phases.size(); i++) {
+            assertEquals(next(phases.get(i - 1)), phases.get(i));
+        }
+    }
+
+    @Test
+    public void cyclesKeepCompletingWhenEvacuationFails() {
+        // Allocating the whole heap every half second outruns every cycle
+        SyntheticCounterSource source = new SyntheticCounterSource(2048, 1024, 4096, 10, 1, false);
+        SyntheticDataProvider provider = new SyntheticDataProvider(source);
+        long cycles = 0;
+        for (int second = 0; second < 30; second++) {
+            source.advance(1000);
+            Snapshot s = provider.snapshot();
+            assertTrue(s.used() <= s.total());
+            assertTrue(s.live() <= s.used());
+            provider.release(s);
+            if (second % 5 == 4) {
+                assertTrue("no cycle completed by " + second + " s", source.cycles() > cycles);
+                cycles = source.cycles();
+            }
+        }
+        assertTrue(source.degeneratedCycles() > 0);
+        assertTrue(source.allocationFailures() > 0);
+    }
+
+    @Test
+    public void publishesOnlyAfterAnInterval() {
+        SyntheticCounterSource source = new SyntheticCounterSource(REGIONS, 1024, 512, 10, 1, false);
+        SyntheticDataProvider provider = new SyntheticDataProvider(source);
+        assertNotNull(provider.snapshot());
+        assertNull(provider.snapshot());
+        source.advance(5);
+        assertNull(provider.snapshot());
+        source.advance(10);
+        Snapshot s = provider.snapshot();
+        assertNotNull(s);
+        assertTrue(s.changedCount() > 0);
+        assertTrue(s.stateCount(RegionState.REGULAR) > 0);
+    }
+
+    @Test
+    public void sameSeedSameHeapWithOrWithoutTheMatrix() {
+        SyntheticCounterSource shown = new SyntheticCounterSource(REGIONS, 1024, 512, 10, 7, false);
+        SyntheticCounterSource hidden = new SyntheticCounterSource(REGIONS, 1024, 512, 10, 7, false);
+        shown.setReferences(4);
+        hidden.setReferences(4);
+        assertTrue(shown.hasMatrix());
+        String[] rows = new String[REGIONS];
+        long[] a = new long[REGIONS];
+        long[] b = new long[REGIONS];
+        for (int i = 0; i < 1000; i++) {
+            shown.advance(10);
+            hidden.advance(10);
+            shown.readMatrix(rows);
+            shown.read(a);
+            hidden.read(b);
+            assertEquals(shown.status(), hidden.status());
+            assertArrayEquals("step " + i, a, b);
+        }
+        assertTrue(shown.cycles() > 0);
+    }
+
+    @Test
+    public void parsesSettings() {
+        SyntheticCounterSource source = SyntheticCounterSource.parse("synthetic://regions=100000,size=512,rate=4096");
+        assertEquals(100_000, source.maxRegions());
+        assertEquals(512, source.regionSize());
+        assertFalse(source.hasMatrix());
+        assertTrue(SyntheticCounterSource.parse("synthetic://").hasMatrix());
+    }
+
+    private static Phase next(Phase phase) {
+        switch (phase) {
+            case IDLE:
+                return Phase.MARKING;
+            case MARKING:
+                return Phase.EVACUATING;
+            case EVACUATING:
+                return Phase.UPDATE_REFS;
+            default:
+                return Phase.IDLE;
+        }
+    }
+
+}
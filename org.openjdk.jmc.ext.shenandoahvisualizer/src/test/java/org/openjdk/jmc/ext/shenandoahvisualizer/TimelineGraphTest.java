@@ -0,0 +1,67 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TimelineGraphTest {
+
+    private static final int REGIONS = 1000;
+    private static final int SAMPLES = 900;
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 410;
+
+    /**
+     * Height above the bottom of the topmost used rate point in the lower band, per
+     * column from the middle of the graph on.
+     */
+    private static int[] rateHeights(RasterSurface g) {
+        int[] heights = new int[WIDTH / 2 - 10];
+        for (int x = WIDTH / 2; x < WIDTH - 10; x++) {
+            for (int y = HEIGHT / 2; y < HEIGHT; y++) {
+                if ((g.pixel(x, y) & 0xFFFFFF) == Colors.USED) {
+                    heights[x - WIDTH / 2] = HEIGHT - y;
+                    break;
+                }
+            }
+        }
+        return heights;
+    }
+
+    @Test
+    public void allocationRateKeepsItsScaleAcrossZoomLevels() {
+        // One more region is filled every 100 ms
+        SnapshotBuilder builder = new SnapshotBuilder(REGIONS);
+        TimelineHistory history = new TimelineHistory();
+        TimelinePyramid pyramid = new TimelinePyramid(new long[] {100, 200, 400}, 1024);
+        long[] words = new long[REGIONS];
+        for (int i = 0; i < REGIONS; i++) {
+            words[i] = 1L << 58;
+        }
+        for (int k = 0; k < SAMPLES; k++) {
+            words[k] = (2L << 58) | (100L << 14) | 100;
+            Snapshot s = builder.acquire();
+            System.arraycopy(words, 0, s.data, 0, REGIONS);
+            builder.finish(s, k * 100L, k * 100L, 1024, 0);
+            history.add(s);
+            pyramid.add(s);
+            builder.release(s);
+        }
+
+        int[] expected = null;
+        // Raw samples, then each pyramid level
+        for (double millisPerPixel : new double[] {50, 100, 200, 400}) {
+            RasterSurface g = new RasterSurface(WIDTH, HEIGHT);
+            TimelineGraph.render(g, history, pyramid, history.total(), millisPerPixel, WIDTH, HEIGHT);
+            int[] heights = rateHeights(g);
+            if (expected == null) {
+                expected = heights;
+                assertTrue("rate drawn at " + expected[0], expected[0] > 2);
+            }
+            for (int x = 0; x < heights.length; x++) {
+                assertEquals("at " + millisPerPixel + " ms per pixel, column " + x, expected[x], heights[x], 1);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+package org.openjdk.jmc.ext.shenandoahvisualizer;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TimelineHistoryTest {
+
+    private static final int REGIONS = 64;
+
+    private final SnapshotBuilder builder = new SnapshotBuilder(REGIONS);
+
+    private void add(TimelineHistory history, long vmTime) {
+        Snapshot s = builder.acquire();
+        builder.finish(s, vmTime, vmTime, 1024, 0);
+        history.add(s);
+        builder.release(s);
+    }
+
+    @Test
+    public void retainsTheSameTimeAtAnySamplingRate() {
+        for (long interval : new long[] {1, 10, 100, 1000}) {
+            TimelineHistory history = new TimelineHistory(60_000);
+            for (long t = 0; t <= 300_000; t += interval) {
+                add(history, t);
+            }
+            assertEquals(300_000, history.time(history.size() - 1));
+            assertEquals(240_000, history.time(0));
+        }
+    }
+
+    @Test
+    public void keepsTheNewestSamplesBeyondTheMaximumCapacity() {
+        TimelineHistory history = new TimelineHistory(Long.MAX_VALUE / 2);
+        int samples = TimelineHistory.MAX_CAPACITY + 10;
+        for (int t = 0; t < samples; t++) {
+            add(history, t);
+        }
+        assertEquals(TimelineHistory.MAX_CAPACITY, history.size());
+        assertEquals(10, history.time(0));
+        assertEquals(samples - 1, history.time(history.size() - 1));
+    }
+
+    @Test
+    public void shorterRetentionDropsOldSamplesAndMemory() {
+        TimelineHistory history = new TimelineHistory(120 * 60_000L);
+        for (long t = 0; t <= 120 * 60_000L; t += 10) {
+            add(history, t);
+        }
+        int grown = history.capacity();
+        history.setRetention(5 * 60_000L);
+        assertEquals(115 * 60_000L, history.time(0));
+        assertEquals(5 * 60_000L, history.time(history.size() - 1) - history.time(0));
+        assertTrue(history.capacity() < grown);
+        for (int i = 1; i < history.size(); i++) {
+            assertEquals(10, history.time(i) - history.time(i - 1));
+        }
+    }
+
+}